@@ -1,12 +1,18 @@
 package pers.lyc.mybatis.builder;
 
 import java.util.List;
+import java.util.Map;
 
 import org.apache.ibatis.annotations.DeleteProvider;
 import org.apache.ibatis.annotations.InsertProvider;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.SelectProvider;
 import org.apache.ibatis.annotations.UpdateProvider;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
 
+import pers.lyc.mybatis.core.sql.mysql.MySqlBatchUpdate;
 import pers.lyc.mybatis.core.sql.mysql.MySqlDelete;
 import pers.lyc.mybatis.core.sql.mysql.MySqlInsert;
 import pers.lyc.mybatis.core.sql.mysql.MySqlSelect;
@@ -33,6 +39,26 @@ public interface MySqlMapper<T> extends SqlMapper {
 	@SelectProvider(type = MySqlSelectSqlProvider.class)
 	public T selectOne(MySqlSelect<T> sql);
 	
+	/**
+	 * 数据是否存在
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月24日
+	 * @param sql 数据查询语句
+	 * @return 存在时返回1，不存在时返回null
+	 */
+	@SelectProvider(type = MySqlSelectSqlProvider.class)
+	public Integer exists(MySqlSelect<T> sql);
+	
+	/**
+	 * 逐个判断匹配值是否存在
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月25日
+	 * @param sql 数据查询语句，需要包含 field = #{matchedKey} 条件，参数map中需要有匹配值列表matchedKeys
+	 * @return 存在的匹配值下标
+	 */
+	@SelectProvider(type = MySqlSelectSqlProvider.class)
+	public List<Integer> selectMatchedIndex(MySqlSelect<T> sql);
+	
 	/**
 	 * 单字段查询
 	 * @author 林运昌（linyunchang）
@@ -64,13 +90,75 @@ public interface MySqlMapper<T> extends SqlMapper {
 	public List<T> select(MySqlSelect<T> sql);
 	
 	/**
-	 * 新增数据
+	 * 数据流式查询（驱动逐行读取结果，不一次加载全部数据），需要在事务中使用并在事务结束前读取完毕
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月19日
+	 * @param sql 数据查询语句
+	 * @return 
+	 */
+	@SelectProvider(type = MySqlSelectSqlProvider.class)
+	@Options(fetchSize = Integer.MIN_VALUE, resultSetType = ResultSetType.FORWARD_ONLY)
+	public Cursor<T> selectCursor(MySqlSelect<T> sql);
+	
+	/**
+	 * 数据游标查询（服务端游标，每次读取mybatis配置的defaultFetchSize条数据），连接需要开启useCursorFetch=true，需要在事务中使用并在事务结束前读取完毕
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月19日
+	 * @param sql 数据查询语句
+	 * @return 
+	 */
+	@SelectProvider(type = MySqlSelectSqlProvider.class)
+	@Options(resultSetType = ResultSetType.FORWARD_ONLY)
+	public Cursor<T> selectCursorFetch(MySqlSelect<T> sql);
+	
+	/**
+	 * 数据数量统计，最多统计到查询语句limit设置的数量为止
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月17日
+	 * @param sql 数据查询语句，limit为统计上限
+	 * @return 
+	 */
+	@SelectProvider(type = MySqlSelectSqlProvider.class)
+	public int countCapped(MySqlSelect<T> sql);
+	
+	/**
+	 * 查询执行计划
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月17日
+	 * @param sql 数据查询语句
+	 * @return 
+	 */
+	@SelectProvider(type = MySqlSelectSqlProvider.class)
+	public List<Map<String, Object>> explain(MySqlSelect<T> sql);
+	
+	/**
+	 * 聚合查询，每行数据为列别名到值的map
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月23日
+	 * @param sql 数据查询语句，需要设置分组属性或聚合列
+	 * @return 
+	 */
+	@SelectProvider(type = MySqlSelectSqlProvider.class)
+	public List<Map<String, Object>> aggregate(MySqlSelect<T> sql);
+	
+	/**
+	 * 查询数据库允许的最大数据包字节数（max_allowed_packet）
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月1日
+	 * @return 
+	 */
+	@Select("select @@max_allowed_packet")
+	public long selectMaxAllowedPacket();
+	
+	/**
+	 * 新增数据，注册GeneratedKeyInterceptor后自增主键回写到每条数据中
 	 * @author 林运昌（linyunchang）
 	 * @since 2020年6月19日
 	 * @param sql 数据新增语句
 	 * @return 
 	 */
 	@InsertProvider(type = MySqlInsertSqlProvider.class)
+	@Options(useGeneratedKeys = true)
 	public int insert(MySqlInsert<T> sql);
 	
 	/**
@@ -83,6 +171,16 @@ public interface MySqlMapper<T> extends SqlMapper {
 	@UpdateProvider(type = MySqlUpdateSqlProvider.class)
 	public int update(MySqlUpdate<T> sql);
 	
+	/**
+	 * 数据批量更新
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月6日
+	 * @param sql 数据批量更新语句
+	 * @return 
+	 */
+	@UpdateProvider(type = MySqlUpdateSqlProvider.class)
+	public int updateBatch(MySqlBatchUpdate<T> sql);
+	
 	/**
 	 * 数据删除
 	 * @author 林运昌（linyunchang）
@@ -93,4 +191,14 @@ public interface MySqlMapper<T> extends SqlMapper {
 	@DeleteProvider(type = MySqlDeleteSqlProvider.class)
 	public int delete(MySqlDelete<T> sql);
 	
+	/**
+	 * 查询待删除数据的主键
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月7日
+	 * @param sql 数据删除语句
+	 * @return 
+	 */
+	@SelectProvider(type = MySqlDeleteSqlProvider.class)
+	public List<Object> selectDeletePrimaryKey(MySqlDelete<T> sql);
+	
 }
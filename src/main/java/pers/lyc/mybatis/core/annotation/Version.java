@@ -0,0 +1,18 @@
+package pers.lyc.mybatis.core.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 乐观锁版本号，属性类型为Integer或Long，需要同时添加@Column注解。<br>
+ * 按数据对象更新时附加版本号条件并将版本号加1，版本号不一致（数据已被他人修改）时更新失败
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月10日
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Version {
+	
+}
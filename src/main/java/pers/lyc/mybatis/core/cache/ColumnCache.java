@@ -1,6 +1,7 @@
 package pers.lyc.mybatis.core.cache;
 
 import java.io.Serializable;
+import java.lang.reflect.Field;
 
 import pers.lyc.mybatis.core.annotation.Column;
 
@@ -84,6 +85,9 @@ public class ColumnCache implements Serializable {
 	/** 关联表 */
 	private JoinCache joinCache;
 	
+	/** 属性（已设置为可访问，用于快速读取属性值） */
+	private transient Field field;
+	
 	public Column getColumn() {
 		return column;
 	}
@@ -279,5 +283,13 @@ public class ColumnCache implements Serializable {
 	public void setJoinCache(JoinCache joinCache) {
 		this.joinCache = joinCache;
 	}
+
+	public Field getField() {
+		return field;
+	}
+
+	public void setField(Field field) {
+		this.field = field;
+	}
 	
 }
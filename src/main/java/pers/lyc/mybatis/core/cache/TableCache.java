@@ -45,6 +45,9 @@ public class TableCache implements Serializable {
 	/** 表主键类型 */
 	private String primaryKeyType;
 	
+	/** 乐观锁版本号属性 */
+	private String versionKey;
+	
 	/** 表注释 */
 	public String comment;
 	
@@ -143,6 +146,14 @@ public class TableCache implements Serializable {
 		this.primaryKeyType = primaryKeyType;
 	}
 
+	public String getVersionKey() {
+		return versionKey;
+	}
+
+	public void setVersionKey(String versionKey) {
+		this.versionKey = versionKey;
+	}
+
 	public String getComment() {
 		return comment;
 	}
@@ -0,0 +1,71 @@
+package pers.lyc.mybatis.core.enums;
+
+/**
+ * 分页查询的数据总数统计方式
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月17日
+ */
+public enum CountType {
+	NONE("none", "不统计"), CAPPED("capped", "统计到上限为止"), ESTIMATED("estimated", "执行计划估算"), CACHED("cached", "缓存统计结果"), EXACT("exact", "精确统计");
+
+	private Integer code; // 数字代码
+	private String en; // 英文值
+	private String cn; // 中文值
+	private boolean valid; // 是否有效
+
+	/* custom */
+	/** 根据数字代码获取枚举类型 */
+	public static CountType byCode(Integer code) {
+		if (code == null)
+			return null;
+
+		// 遍历查询code对应的枚举对象
+		for (CountType value : CountType.values()) {
+			if (code == value.getCode().intValue()) {
+				// 返回查询结果
+				return value;
+			}
+		}
+		return null;
+	}
+
+	/** 根据英文值获取枚举类型 */
+	public static CountType byEn(String en) {
+		if (en == null || "".equals(en))
+			return null;
+
+		// 遍历查询en对应的枚举对象
+		for (CountType value : CountType.values()) {
+			if (value.getEn().equals(en)) {
+				// 返回查询结果
+				return value;
+			}
+		}
+		return null;
+	}
+
+	/* constructor */
+	private CountType(String en, String cn) {
+		this.code = ordinal();
+		this.en = en;
+		this.cn = cn;
+		this.valid = true;
+	}
+
+	/* getter */
+	public Integer getCode() {
+		return code;
+	}
+
+	public String getEn() {
+		return en;
+	}
+
+	public String getCn() {
+		return cn;
+	}
+
+	public boolean isValid() {
+		return valid;
+	}
+}
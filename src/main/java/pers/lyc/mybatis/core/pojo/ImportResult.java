@@ -0,0 +1,119 @@
+package pers.lyc.mybatis.core.pojo;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文件导入结果，按读取、解析校验、新增三个阶段分别统计处理数量、失败数量及阶段结束耗时（毫秒，从导入开始计算）
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月22日
+ */
+public class ImportResult implements Serializable {
+	private static final long serialVersionUID = 1L;
+	
+	/** 读取的字节数 */
+	private long readBytes;
+	/** 读取的数据行数（不含表头） */
+	private long readLines;
+	/** 读取阶段耗时 */
+	private long readMillis;
+	/** 解析校验通过的数据条数 */
+	private long parsedRows;
+	/** 解析校验失败的数据条数 */
+	private long parseErrors;
+	/** 解析校验阶段耗时 */
+	private long parseMillis;
+	/** 新增成功的数据条数 */
+	private long insertedRows;
+	/** 新增失败的数据条数 */
+	private long insertErrors;
+	/** 新增阶段耗时 */
+	private long insertMillis;
+	/** 失败信息（最多保存部分） */
+	private List<String> errors = new ArrayList<>();
+	
+	public ImportResult() {
+		super();
+	}
+	
+	/** 读取阶段吞吐量（行/秒） */
+	public double getReadThroughput() {
+		return readMillis==0 ? readLines : readLines * 1000.0 / readMillis;
+	}
+	/** 解析校验阶段吞吐量（行/秒） */
+	public double getParseThroughput() {
+		return parseMillis==0 ? parsedRows+parseErrors : (parsedRows+parseErrors) * 1000.0 / parseMillis;
+	}
+	/** 新增阶段吞吐量（行/秒） */
+	public double getInsertThroughput() {
+		return insertMillis==0 ? insertedRows+insertErrors : (insertedRows+insertErrors) * 1000.0 / insertMillis;
+	}
+	
+	public long getReadBytes() {
+		return readBytes;
+	}
+	public void setReadBytes(long readBytes) {
+		this.readBytes = readBytes;
+	}
+	public long getReadLines() {
+		return readLines;
+	}
+	public void setReadLines(long readLines) {
+		this.readLines = readLines;
+	}
+	public long getReadMillis() {
+		return readMillis;
+	}
+	public void setReadMillis(long readMillis) {
+		this.readMillis = readMillis;
+	}
+	public long getParsedRows() {
+		return parsedRows;
+	}
+	public void setParsedRows(long parsedRows) {
+		this.parsedRows = parsedRows;
+	}
+	public long getParseErrors() {
+		return parseErrors;
+	}
+	public void setParseErrors(long parseErrors) {
+		this.parseErrors = parseErrors;
+	}
+	public long getParseMillis() {
+		return parseMillis;
+	}
+	public void setParseMillis(long parseMillis) {
+		this.parseMillis = parseMillis;
+	}
+	public long getInsertedRows() {
+		return insertedRows;
+	}
+	public void setInsertedRows(long insertedRows) {
+		this.insertedRows = insertedRows;
+	}
+	public long getInsertErrors() {
+		return insertErrors;
+	}
+	public void setInsertErrors(long insertErrors) {
+		this.insertErrors = insertErrors;
+	}
+	public long getInsertMillis() {
+		return insertMillis;
+	}
+	public void setInsertMillis(long insertMillis) {
+		this.insertMillis = insertMillis;
+	}
+	public List<String> getErrors() {
+		return errors;
+	}
+	public void setErrors(List<String> errors) {
+		this.errors = errors;
+	}
+	@Override
+	public String toString() {
+		return "ImportResult [readBytes=" + readBytes + ", readLines=" + readLines + ", readMillis=" + readMillis
+				+ ", parsedRows=" + parsedRows + ", parseErrors=" + parseErrors + ", parseMillis=" + parseMillis
+				+ ", insertedRows=" + insertedRows + ", insertErrors=" + insertErrors + ", insertMillis=" + insertMillis + "]";
+	}
+}
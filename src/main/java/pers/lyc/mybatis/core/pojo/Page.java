@@ -6,6 +6,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import pers.lyc.mybatis.core.enums.CountType;
+
 /**
  * 分页数据
  * @author 林运昌（linyunchang）
@@ -37,6 +39,12 @@ public class Page<T> implements Serializable {
 	private String orderBy;
 	/** 是否倒序 */
 	private boolean desc;
+	/** seek分页下一页的游标，没有下一页时为空 */
+	private String cursor;
+	/** 是否有下一页 */
+	private boolean hasNext;
+	/** 数据总数的统计方式 */
+	private CountType countType = CountType.EXACT;
 	
 	public Page() {
 		super();
@@ -160,4 +168,22 @@ public class Page<T> implements Serializable {
 	public void setDesc(boolean desc) {
 		this.desc = desc;
 	}
+	public String getCursor() {
+		return cursor;
+	}
+	public void setCursor(String cursor) {
+		this.cursor = cursor;
+	}
+	public boolean isHasNext() {
+		return hasNext;
+	}
+	public void setHasNext(boolean hasNext) {
+		this.hasNext = hasNext;
+	}
+	public CountType getCountType() {
+		return countType;
+	}
+	public void setCountType(CountType countType) {
+		this.countType = countType;
+	}
 }
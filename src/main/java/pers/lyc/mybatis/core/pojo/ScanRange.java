@@ -0,0 +1,79 @@
+package pers.lyc.mybatis.core.pojo;
+
+import java.io.Serializable;
+
+/**
+ * 按主键范围并发扫描全表时的一个扫描范围，范围为 lowerKey &lt; 主键 &lt;= upperKey（为空表示不限制）。
+ * 扫描过程中记录已处理的最后一个主键，可以序列化保存，任务失败后从该位置继续扫描
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月20日
+ */
+public class ScanRange implements Serializable {
+	private static final long serialVersionUID = 1L;
+	
+	/** 范围序号 */
+	private int index;
+	/** 主键下限（不包含），为空表示不限制 */
+	private Object lowerKey;
+	/** 主键上限（包含），为空表示不限制 */
+	private Object upperKey;
+	/** 已处理的最后一个主键，为空表示尚未开始 */
+	private Object lastKey;
+	/** 已处理数据条数 */
+	private long count;
+	/** 是否已扫描完毕 */
+	private boolean finished;
+	
+	public ScanRange() {
+		super();
+	}
+	
+	public ScanRange(int index, Object lowerKey, Object upperKey) {
+		super();
+		this.index = index;
+		this.lowerKey = lowerKey;
+		this.upperKey = upperKey;
+	}
+	
+	public int getIndex() {
+		return index;
+	}
+	public void setIndex(int index) {
+		this.index = index;
+	}
+	public Object getLowerKey() {
+		return lowerKey;
+	}
+	public void setLowerKey(Object lowerKey) {
+		this.lowerKey = lowerKey;
+	}
+	public Object getUpperKey() {
+		return upperKey;
+	}
+	public void setUpperKey(Object upperKey) {
+		this.upperKey = upperKey;
+	}
+	public Object getLastKey() {
+		return lastKey;
+	}
+	public void setLastKey(Object lastKey) {
+		this.lastKey = lastKey;
+	}
+	public long getCount() {
+		return count;
+	}
+	public void setCount(long count) {
+		this.count = count;
+	}
+	public boolean isFinished() {
+		return finished;
+	}
+	public void setFinished(boolean finished) {
+		this.finished = finished;
+	}
+	@Override
+	public String toString() {
+		return "ScanRange [index=" + index + ", lowerKey=" + lowerKey + ", upperKey=" + upperKey + ", lastKey=" + lastKey
+				+ ", count=" + count + ", finished=" + finished + "]";
+	}
+}
@@ -1,5 +1,6 @@
 package pers.lyc.mybatis.core.sql;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -246,6 +247,45 @@ public abstract class SqlWhere {
 		return this;
 	}
 	
+	/** 
+	 * 限制 (field1, field2, ...) in ((value1, value2, ...), ...)，用于联合主键等多属性组合条件
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月15日
+	 * @param fields 表实体的属性名称数组
+	 * @param values 值列表，每个数组按属性顺序对应一组值
+	 */
+	public SqlWhere andTupleIn(String[] fields, Collection<Object[]> values) {
+		Assert.notEmpty(fields, "属性名称数组不能为空");
+		Assert.notEmpty(values, "值列表不能为空");
+		for ( Object[] value : values ) {
+			if ( value==null || value.length!=fields.length )
+				throw new IllegalArgumentException("每组值的数量需要和属性数量一致");
+		}
+		
+		// 生成并渲染字段部分
+		StringBuilder columns = new StringBuilder("(");
+		for ( int i=0; i<fields.length; i++ ) {
+			if ( i>0 )
+				columns.append(",");
+			columns.append(" "+fields[i]+" ");
+		}
+		columns.append(")");
+		String sql = columns.toString();
+		for ( String field : fields )
+			sql = renderField(sql, field, true);
+		// 参数名称
+		String paramName = "tuple_" + String.join("_", fields);
+		// 添加值部分，每组值再展开一次
+		sql += " in <foreach collection=\"paramMap." + paramName + "\" item=\"tuple\" open=\"(\" separator=\",\" close=\")\">"
+				+ "<foreach collection=\"tuple\" item=\"item\" open=\"(\" separator=\",\" close=\")\">#{item}</foreach></foreach>";
+		// 添加sql
+		andSet.add("(" + sql + ")");
+		// 添加参数
+		paramMap.put(paramName, values);
+		
+		return this;
+	}
+	
 	/** 
 	 * 限制 field not in value
 	 * @author 林运昌（linyunchang）
@@ -820,6 +860,16 @@ public abstract class SqlWhere {
 		return sql;
 	}
 	
+	/**
+	 * 获取参数数据
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月17日
+	 * @return 
+	 */
+	public Map<String, Object> getParamMap() {
+		return paramMap;
+	}
+	
 	/**
 	 * 渲染参数
 	 * @author 林运昌（linyunchang）
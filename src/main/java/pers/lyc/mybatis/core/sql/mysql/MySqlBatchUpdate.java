@@ -0,0 +1,328 @@
+package pers.lyc.mybatis.core.sql.mysql;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.util.Assert;
+
+import cn.hutool.core.util.ReflectUtil;
+import pers.lyc.mybatis.core.cache.ColumnCache;
+import pers.lyc.mybatis.core.cache.TableCache;
+import pers.lyc.mybatis.util.TableCacheUtil;
+
+/**
+ * mysql批量更新语句，按主键将多条不同的数据合并成一条语句更新：<br>
+ * update table set column = case id when ? then ? ... end where id in (...)<br>
+ * 表存在乐观锁版本号（@Version）时版本号加1，并按 (id, version) in (...) 限制版本号。<br>
+ * 累加模式（{@link #increment(String...)}）下按主键累加字段值：column = column + case id when ? then ? ... else 0 end，不处理版本号
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月6日
+ */
+public class MySqlBatchUpdate<T> {
+	
+	/** 表实体类型 */
+	private Class<?> tableCls;
+	/** 自定义要操作的表（对应数据库的表名），表结构需要和表对象类型tableCls对应的数据表一致 */
+	private String tableName;
+	/** 要更新的属性数组，未设置则更新除主键以外的所有字段 */
+	private String[] fields;
+	/** 数据列表 */
+	private List<T> dataList = new ArrayList<>();
+	/** 已添加数据的主键，case语句中重复的主键只有第一个生效，不允许重复 */
+	private Set<Object> primaryKeySet = new HashSet<>();
+	/** 是否累加模式（字段值为增量） */
+	private boolean increment;
+	
+	/**
+	 * 初始化
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月6日
+	 */
+	public MySqlBatchUpdate() {
+		// 判断类型
+		Class<?> cls = getClass();
+		if ( cls==MySqlBatchUpdate.class ) {
+			throw new IllegalArgumentException("请传入表实体类型");
+		}
+		// 获取表实体类型
+		Type type = cls.getGenericSuperclass();
+		if ( type instanceof ParameterizedType ) {
+			ParameterizedType parameterizedType = (ParameterizedType) type;
+			this.tableCls = (Class<?>) parameterizedType.getActualTypeArguments()[0];
+		} else {
+			throw new IllegalArgumentException("请传入表实体类型");
+		}
+	}
+	
+	/**
+	 * 初始化
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月6日
+	 * @param tableCls 表实体类型
+	 */
+	public MySqlBatchUpdate(Class<T> tableCls) {
+		Assert.notNull(tableCls, "表实体类型不能为空");
+		
+		this.tableCls = tableCls;
+	}
+	
+	/**
+	 * 自定义要更新数据的表（对应数据库的表名）
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月6日
+	 * @param tableName 自定义要更新数据的表名（对应数据库的表名）
+	 * @return 
+	 */
+	public MySqlBatchUpdate<T> update(String tableName) {
+		Assert.hasLength(tableName, "自定义要更新数据的表不能为空");
+		
+		this.tableName = tableName;
+		
+		return this;
+	}
+	
+	/**
+	 * 设置要更新的属性，未设置则更新除主键以外的所有字段，属性值为空时更新为空值
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月6日
+	 * @param fields 要更新的属性
+	 * @return 
+	 */
+	public MySqlBatchUpdate<T> fields(String... fields) {
+		// 校验属性
+		if ( fields!=null && fields.length>0 ) {
+			// 获取表缓存信息
+			TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+			for ( String field : fields ) {
+				if ( !tableCache.getColumnCacheMap().containsKey(field) )
+					throw new IllegalArgumentException("属性"+field+"不存在");
+				if ( field.equals(tableCache.getPrimaryKey()) )
+					throw new IllegalArgumentException("不能更新主键"+field);
+				if ( field.equals(tableCache.getVersionKey()) )
+					throw new IllegalArgumentException("版本号"+field+"自动加1，不能单独更新");
+			}
+			this.fields = fields;
+		} else {
+			this.fields = null;
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * 设置为累加模式，数据对象中的字段值作为增量累加到数据库中的值上，需要在添加数据前调用。
+	 * 累加不是用户对数据的修改，不校验也不增加乐观锁版本号
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月14日
+	 * @param fields 要累加的属性，只能是Integer、Long、BigDecimal类型
+	 * @return 
+	 */
+	public MySqlBatchUpdate<T> increment(String... fields) {
+		Assert.notEmpty(fields, "要累加的属性不能为空");
+		
+		// 校验属性
+		fields(fields);
+		// 校验属性类型
+		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+		for ( String field : fields ) {
+			String fieldType = tableCache.getColumnCacheMap().get(field).getFieldType();
+			if ( !"Integer".equals(fieldType) && !"Long".equals(fieldType) && !"BigDecimal".equals(fieldType) )
+				throw new IllegalArgumentException("属性"+field+"不是数值类型，不能累加");
+		}
+		this.increment = true;
+		
+		return this;
+	}
+	
+	/**
+	 * 添加数据
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月6日
+	 * @param data 数据对象，主键不能为空且不能与已添加的数据重复
+	 * @return 
+	 */
+	public MySqlBatchUpdate<T> data(T data) {
+		Assert.notNull(data, "数据不能为空");
+		
+		// 判断数据类型是否正确
+		if ( tableCls!=data.getClass() && !tableCls.isAssignableFrom(data.getClass()) )
+			throw new IllegalArgumentException("数据类型不正确");
+		// 判断主键是否为空
+		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+		String primaryKey = tableCache.getPrimaryKey();
+		Object primaryKeyValue = ReflectUtil.getFieldValue(data, primaryKey);
+		if ( primaryKeyValue==null )
+			throw new IllegalArgumentException(primaryKey + " 不能为空");
+		// 判断主键是否重复
+		if ( primaryKeySet.contains(primaryKeyValue) )
+			throw new IllegalArgumentException(primaryKey + " 重复：" + primaryKeyValue);
+		// 判断乐观锁版本号是否为空
+		String versionKey = tableCache.getVersionKey();
+		if ( !increment && versionKey!=null && ReflectUtil.getFieldValue(data, versionKey)==null )
+			throw new IllegalArgumentException(versionKey + " 不能为空");
+		
+		// 添加到数据列表
+		dataList.add(data);
+		primaryKeySet.add(primaryKeyValue);
+		
+		return this;
+	}
+	
+	/**
+	 * 添加数据列表
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月6日
+	 * @param dataList 数据对象列表，主键不能为空且不能重复
+	 * @return 
+	 */
+	public MySqlBatchUpdate<T> dataList(List<T> dataList) {
+		Assert.notEmpty(dataList, "数据列表不能为空");
+		
+		for ( T data : dataList ) {
+			this.data(data);
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * 设置本次执行的数据列表，数据需已通过data或dataList添加过，用于分批更新时切换批次数据
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月6日
+	 * @param dataList 本批次数据列表
+	 * @return 
+	 */
+	public MySqlBatchUpdate<T> batch(List<T> dataList) {
+		Assert.notNull(dataList, "数据列表不能为空");
+		
+		this.dataList = dataList;
+		
+		return this;
+	}
+	
+	/**
+	 * 获取要更新的字段列表
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月6日
+	 * @return 
+	 */
+	public List<ColumnCache> getUpdateColumnList() {
+		// 获取表缓存信息
+		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+		// 获取字段缓存信息
+		LinkedHashMap<String, ColumnCache> columnCacheMap = tableCache.getColumnCacheMap();
+		// 要更新的字段列表
+		List<ColumnCache> columnCacheList = new ArrayList<>();
+		if ( fields!=null ) {
+			for ( String field : fields ) {
+				columnCacheList.add(columnCacheMap.get(field));
+			}
+		} else {
+			for ( ColumnCache columnCache : columnCacheMap.values() ) {
+				// 主键、版本号不更新
+				if ( columnCache.getFieldName().equals(tableCache.getPrimaryKey()) || columnCache.getFieldName().equals(tableCache.getVersionKey()) )
+					continue;
+				columnCacheList.add(columnCache);
+			}
+		}
+		
+		return columnCacheList;
+	}
+	
+	@Override
+	public String toString() {
+		// 获取表缓存信息
+		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+		// 获取主键字段信息
+		ColumnCache primaryKeyCache = tableCache.getColumnCacheMap().get(tableCache.getPrimaryKey());
+		String primaryKeyColumn = primaryKeyCache.getColumnName();
+		String primaryKeyParam = "#{data." + primaryKeyCache.getFieldName() + "}";
+		// 字段字符串
+		StringBuilder sets = new StringBuilder();
+		// 生成sql语句
+		StringBuilder sql = new StringBuilder("update ");
+		if ( tableName==null )
+			sql.append(tableCache.getTableName());
+		else
+			sql.append(tableName);
+		// 添加要修改的数据
+		for ( ColumnCache columnCache : getUpdateColumnList() ) {
+			// 添加set
+			if ( sets.length()>0 )
+				sets.append(",");
+			else
+				sets.append(" set ");
+			sets.append(columnCache.getColumnName());
+			sets.append("=");
+			// 累加模式在原值上累加，未匹配的主键增量为0
+			if ( increment ) {
+				sets.append(columnCache.getColumnName());
+				sets.append("+");
+			}
+			sets.append("case ");
+			sets.append(primaryKeyColumn);
+			sets.append("<foreach collection=\"dataList\" item=\"data\"> when ");
+			sets.append(primaryKeyParam);
+			sets.append(" then #{data.");
+			sets.append(columnCache.getFieldName());
+			sets.append(increment ? "}</foreach> else 0 end" : "}</foreach> end");
+		}
+		// 获取乐观锁版本号字段信息
+		ColumnCache versionCache = increment || tableCache.getVersionKey()==null ? null : tableCache.getColumnCacheMap().get(tableCache.getVersionKey());
+		// 版本号加1
+		if ( versionCache!=null ) {
+			sets.append(sets.length()>0 ? "," : " set ");
+			sets.append(versionCache.getColumnName());
+			sets.append("=");
+			sets.append(versionCache.getColumnName());
+			sets.append("+1");
+		}
+		sql.append(sets.toString());
+		// 添加主键条件，存在版本号时同时限制版本号
+		sql.append(" where ");
+		if ( versionCache==null ) {
+			sql.append(primaryKeyColumn);
+			sql.append(" in <foreach collection=\"dataList\" item=\"data\" open=\"(\" separator=\",\" close=\")\">");
+			sql.append(primaryKeyParam);
+			sql.append("</foreach>");
+		} else {
+			sql.append("(");
+			sql.append(primaryKeyColumn);
+			sql.append(",");
+			sql.append(versionCache.getColumnName());
+			sql.append(") in <foreach collection=\"dataList\" item=\"data\" open=\"(\" separator=\",\" close=\")\">(");
+			sql.append(primaryKeyParam);
+			sql.append(",#{data.");
+			sql.append(versionCache.getFieldName());
+			sql.append("})</foreach>");
+		}
+		
+		return sql.toString();
+	}
+	
+	public Class<?> getTableCls() {
+		return tableCls;
+	}
+	
+	public String getTableName() {
+		return tableName;
+	}
+	
+	public String[] getFields() {
+		return fields;
+	}
+	
+	public List<T> getDataList() {
+		return dataList;
+	}
+	
+	public boolean isIncrement() {
+		return increment;
+	}
+	
+}
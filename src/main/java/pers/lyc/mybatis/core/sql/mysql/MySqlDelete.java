@@ -2,11 +2,13 @@ package pers.lyc.mybatis.core.sql.mysql;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map.Entry;
 
 import org.springframework.util.Assert;
 
+import pers.lyc.mybatis.core.cache.ColumnCache;
 import pers.lyc.mybatis.core.cache.JoinCache;
 import pers.lyc.mybatis.core.cache.RelatedCache;
 import pers.lyc.mybatis.core.cache.TableCache;
@@ -25,6 +27,10 @@ public class MySqlDelete<T> extends SqlWhere {
 	private String tableName;
 	/** 生效的关联信息 */
 	private LinkedHashMap<String, JoinCache> joinCacheMap = new LinkedHashMap<>();
+	/** 最多删除的数据条数，按主键顺序删除，仅单表删除时生效 */
+	private Integer limit;
+	/** 限定删除的主键值集合，用于关联删除时按主键分批删除 */
+	private Collection<?> primaryKeys;
 	
 	/**
 	 * 初始化
@@ -123,15 +129,84 @@ public class MySqlDelete<T> extends SqlWhere {
 		}
 	}
 
-	@Override
-	public String toString() {
+	/**
+	 * 限制最多删除的数据条数，按主键顺序删除。
+	 * mysql多表删除不支持limit，存在关联条件时需先通过{@link #toSelectPrimaryKeyString()}查询主键再按主键删除；
+	 * 单表删除语句中使用了表别名，需要8.0.16以上版本的mysql
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月7日
+	 * @param limit 最多删除的数据条数，为空则不限制
+	 * @return 
+	 */
+	public MySqlDelete<T> limit(Integer limit) {
+		Assert.isTrue(limit==null || limit>0, "删除数据条数需要大于0");
+		
+		this.limit = limit;
+		
+		return this;
+	}
+	
+	/**
+	 * 限定删除的主键值，与其他条件同时生效
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月7日
+	 * @param primaryKeys 主键值集合，为空则不限定
+	 * @return 
+	 */
+	public MySqlDelete<T> primaryKeys(Collection<?> primaryKeys) {
+		this.primaryKeys = primaryKeys;
+		
+		return this;
+	}
+	
+	/**
+	 * 是否存在关联条件，mysql多表删除不支持limit
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月7日
+	 * @return 
+	 */
+	public boolean hasJoin() {
+		return !joinCacheMap.isEmpty();
+	}
+	
+	/**
+	 * 生成查询待删除数据主键的语句，按主键排序，受limit限制
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月7日
+	 * @return 
+	 */
+	public String toSelectPrimaryKeyString() {
 		// 获取表缓存信息
 		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
-		// 条件字符串
-		StringBuilder where = new StringBuilder();
+		// 获取主键字段信息
+		ColumnCache primaryKeyCache = tableCache.getColumnCacheMap().get(tableCache.getPrimaryKey());
 		// 生成sql语句
-		StringBuilder sql = new StringBuilder("delete ");
-		sql.append(tableCache.getAliasName());
+		StringBuilder sql = new StringBuilder("select distinct ");
+		sql.append(primaryKeyCache.getFullName());
+		// 添加from及关联表
+		appendFrom(sql, tableCache);
+		// 添加条件
+		sql.append(getWhere(tableCache));
+		// 按主键排序
+		sql.append(" order by ");
+		sql.append(primaryKeyCache.getFullName());
+		// 添加limit
+		if ( limit!=null ) {
+			sql.append(" limit ");
+			sql.append(limit);
+		}
+		
+		return sql.toString();
+	}
+	
+	/**
+	 * 添加from及关联表
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月7日
+	 * @param sql sql语句
+	 * @param tableCache 表缓存信息
+	 */
+	private void appendFrom(StringBuilder sql, TableCache tableCache) {
 		// 添加from
 		sql.append(" from ");
 		if ( tableName==null )
@@ -150,6 +225,18 @@ public class MySqlDelete<T> extends SqlWhere {
 			sql.append(" ");
 			sql.append(joinCache.getJoinTableAliasName());
 		}
+	}
+	
+	/**
+	 * 生成条件语句，包含关联关系、and、or条件及限定的主键
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月7日
+	 * @param tableCache 表缓存信息
+	 * @return 
+	 */
+	private String getWhere(TableCache tableCache) {
+		// 条件字符串
+		StringBuilder where = new StringBuilder();
 		// 添加关联关系
 		for ( Entry<String, JoinCache> entry : joinCacheMap.entrySet() ) {
 			// 获取关联关系
@@ -176,10 +263,67 @@ public class MySqlDelete<T> extends SqlWhere {
 				where.append(" or ");
 			where.append(or);
 		}
-		sql.append(where.toString());
+		// 添加限定的主键
+		if ( primaryKeys!=null ) {
+			// 已有条件加括号，避免和or条件混淆
+			if ( where.length()==0 ) {
+				where.append(" where ");
+			} else {
+				where.replace(0, " where ".length(), " where (");
+				where.append(") and ");
+			}
+			where.append(tableCache.getColumnCacheMap().get(tableCache.getPrimaryKey()).getFullName());
+			if ( primaryKeys.isEmpty() )
+				where.append(" in (null)");
+			else
+				where.append(" in <foreach collection=\"primaryKeys\" item=\"item\" open=\"(\" separator=\",\" close=\")\">#{item}</foreach>");
+		}
+		
+		return where.toString();
+	}
+	
+	@Override
+	public String toString() {
+		// 获取表缓存信息
+		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+		// 单表删除限制条数
+		boolean isLimit = limit!=null && joinCacheMap.isEmpty();
+		// 生成sql语句
+		StringBuilder sql = new StringBuilder("delete");
+		if ( !isLimit ) {
+			sql.append(" ");
+			sql.append(tableCache.getAliasName());
+		}
+		// 添加from及关联表
+		appendFrom(sql, tableCache);
+		// 添加条件
+		sql.append(getWhere(tableCache));
+		// 按主键顺序限制删除条数
+		if ( isLimit ) {
+			sql.append(" order by ");
+			sql.append(tableCache.getColumnCacheMap().get(tableCache.getPrimaryKey()).getFullName());
+			sql.append(" limit ");
+			sql.append(limit);
+		}
 		
 		System.out.println(sql.toString());
 		return sql.toString();
 	}
 	
+	public Class<?> getTableCls() {
+		return tableCls;
+	}
+	
+	public String getTableName() {
+		return tableName;
+	}
+	
+	public Integer getLimit() {
+		return limit;
+	}
+	
+	public Collection<?> getPrimaryKeys() {
+		return primaryKeys;
+	}
+	
 }
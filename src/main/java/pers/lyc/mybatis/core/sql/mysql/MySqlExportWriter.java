@@ -0,0 +1,494 @@
+package pers.lyc.mybatis.core.sql.mysql;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import org.springframework.util.Assert;
+
+import cn.hutool.core.util.ReflectUtil;
+import pers.lyc.mybatis.core.cache.ColumnCache;
+import pers.lyc.mybatis.core.cache.RelatedCache;
+import pers.lyc.mybatis.core.cache.TableCache;
+import pers.lyc.mybatis.core.enums.ExportFormat;
+import pers.lyc.mybatis.util.TableCacheUtil;
+
+/**
+ * 查询结果导出编码器，直接从ResultSet按列类型读取字段值，编码成CSV或NDJSON写入可重复使用的直接缓冲区，缓冲区满时写入通道，不创建实体对象。
+ * 枚举字段输出枚举的中文值，数据字典字段输出字典解析结果（未设置字典解析时输出原值）
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月21日
+ */
+public class MySqlExportWriter {
+	
+	/** 默认缓冲区大小 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+	/** 单个字符编码后的最大字节数（json转义控制字符为6字节） */
+	private static final int MAX_CHAR_BYTES = 6;
+	/** 十六进制字符 */
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+	
+	/** 输出通道 */
+	private final WritableByteChannel channel;
+	/** 导出格式 */
+	private final ExportFormat format;
+	/** 输出缓冲区 */
+	private final ByteBuffer buffer;
+	/** 导出列 */
+	private final ExportColumn[] columns;
+	/** 数据字典解析（字典分组、原值 -&gt; 显示值） */
+	private final BiFunction<String, String, String> dictResolver;
+	/** 数据字典解析缓存（字典分组 -&gt; 原值 -&gt; 显示值） */
+	private final Map<String, Map<String, String>> dictCacheMap = new HashMap<>();
+	/** 数字编码缓冲 */
+	private final byte[] digits = new byte[20];
+	/** 已写入的数据条数 */
+	private long count;
+	
+	/**
+	 * 初始化，按结果集的列顺序匹配表实体的字段缓存信息（按字段别名），未匹配的列按字符串输出
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @param tableCls 表实体类型
+	 * @param metaData 结果集元数据
+	 * @param channel 输出通道
+	 * @param format 导出格式
+	 * @param bufferSize 缓冲区大小
+	 * @param dictResolver 数据字典解析（字典分组、原值 -&gt; 显示值），可以为空
+	 * @throws SQLException
+	 */
+	public MySqlExportWriter(Class<?> tableCls, ResultSetMetaData metaData, WritableByteChannel channel, ExportFormat format, int bufferSize, BiFunction<String, String, String> dictResolver) throws SQLException {
+		Assert.notNull(tableCls, "表实体类型不能为空");
+		Assert.notNull(metaData, "结果集元数据不能为空");
+		Assert.notNull(channel, "输出通道不能为空");
+		Assert.notNull(format, "导出格式不能为空");
+		Assert.isTrue(bufferSize>=MAX_CHAR_BYTES*2, "缓冲区过小");
+		
+		this.channel = channel;
+		this.format = format;
+		this.buffer = ByteBuffer.allocateDirect(bufferSize);
+		this.dictResolver = dictResolver;
+		// 获取表缓存信息
+		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+		Map<String, ColumnCache> columnCacheMap = new HashMap<>();
+		for ( ColumnCache columnCache : tableCache.getColumnCacheMap().values() ) {
+			columnCacheMap.put(columnCache.getAliasName(), columnCache);
+		}
+		Map<String, RelatedCache> relatedCacheMap = new HashMap<>();
+		for ( RelatedCache relatedCache : tableCache.getRelatedCacheMap().values() ) {
+			relatedCacheMap.put(relatedCache.getAliasName(), relatedCache);
+		}
+		// 按列顺序生成导出列
+		this.columns = new ExportColumn[metaData.getColumnCount()];
+		for ( int i=0; i<columns.length; i++ ) {
+			String label = metaData.getColumnLabel(i+1);
+			ExportColumn column = new ExportColumn();
+			if ( columnCacheMap.containsKey(label) ) {
+				ColumnCache columnCache = columnCacheMap.get(label);
+				column.name = columnCache.getFieldName();
+				column.fieldType = columnCache.getFieldType();
+				if ( columnCache.getIsEnum() )
+					column.enumLabelMap = toEnumLabelMap(columnCache.getEnumClass(), columnCache.getEnumValueField());
+				if ( columnCache.getIsDict() )
+					column.dictGroupName = columnCache.getDictGroupName();
+			} else if ( relatedCacheMap.containsKey(label) ) {
+				RelatedCache relatedCache = relatedCacheMap.get(label);
+				column.name = relatedCache.getFieldName();
+				column.fieldType = relatedCache.getFieldType();
+				if ( relatedCache.getIsEnum() )
+					column.enumLabelMap = toEnumLabelMap(relatedCache.getEnumClass(), "code");
+				if ( relatedCache.getIsDict() )
+					column.dictGroupName = relatedCache.getDictGroupName();
+			} else {
+				column.name = label;
+			}
+			// json属性名预先编码
+			column.jsonName = ("\"" + column.name.replace("\\", "\\\\").replace("\"", "\\\"") + "\":").getBytes(StandardCharsets.UTF_8);
+			columns[i] = column;
+		}
+	}
+	
+	/**
+	 * 写入表头，CSV格式写入属性名行，NDJSON格式无表头
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @throws IOException
+	 */
+	public void writeHeader() throws IOException {
+		if ( format!=ExportFormat.CSV )
+			return;
+		
+		for ( int i=0; i<columns.length; i++ ) {
+			if ( i>0 )
+				put((byte) ',');
+			putText(columns[i].name);
+		}
+		put((byte) '\n');
+	}
+	
+	/**
+	 * 写入结果集当前行
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @param resultSet 结果集
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void writeRow(ResultSet resultSet) throws SQLException, IOException {
+		if ( format==ExportFormat.NDJSON )
+			put((byte) '{');
+		for ( int i=0; i<columns.length; i++ ) {
+			if ( i>0 )
+				put((byte) ',');
+			if ( format==ExportFormat.NDJSON )
+				put(columns[i].jsonName);
+			writeValue(resultSet, i+1, columns[i]);
+		}
+		if ( format==ExportFormat.NDJSON )
+			put((byte) '}');
+		put((byte) '\n');
+		count++;
+	}
+	
+	/**
+	 * 将缓冲区中的数据写入通道
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		buffer.flip();
+		while ( buffer.hasRemaining() ) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+	
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * 按列类型读取并写入字段值
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @param resultSet 结果集
+	 * @param index 列序号（从1开始）
+	 * @param column 导出列
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	private void writeValue(ResultSet resultSet, int index, ExportColumn column) throws SQLException, IOException {
+		// 枚举、数据字典字段输出显示值
+		if ( column.enumLabelMap!=null || column.dictGroupName!=null ) {
+			String value = resultSet.getString(index);
+			if ( value==null ) {
+				putNull();
+			} else if ( column.enumLabelMap!=null ) {
+				putText(column.enumLabelMap.getOrDefault(value, value));
+			} else {
+				putText(toDictLabel(column.dictGroupName, value));
+			}
+			return;
+		}
+		
+		// 按属性类型读取
+		switch ( column.fieldType==null ? "" : column.fieldType ) {
+			case "Integer":
+			case "Long": {
+				long value = resultSet.getLong(index);
+				if ( resultSet.wasNull() )
+					putNull();
+				else
+					putLong(value);
+				break;
+			}
+			case "BigDecimal": {
+				BigDecimal value = resultSet.getBigDecimal(index);
+				if ( value==null )
+					putNull();
+				else
+					putAscii(value.toPlainString());
+				break;
+			}
+			case "Boolean": {
+				boolean value = resultSet.getBoolean(index);
+				if ( resultSet.wasNull() )
+					putNull();
+				else
+					putAscii(value ? "true" : "false");
+				break;
+			}
+			case "Date": {
+				Timestamp value = resultSet.getTimestamp(index);
+				if ( value==null ) {
+					putNull();
+				} else {
+					if ( format==ExportFormat.NDJSON )
+						put((byte) '"');
+					putDateTime(value.toLocalDateTime());
+					if ( format==ExportFormat.NDJSON )
+						put((byte) '"');
+				}
+				break;
+			}
+			default: {
+				String value = resultSet.getString(index);
+				if ( value==null )
+					putNull();
+				else
+					putText(value);
+			}
+		}
+	}
+	
+	/**
+	 * 获取数据字典显示值，同一字典值只解析一次，未设置字典解析或解析结果为空时返回原值
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @param dictGroupName 字典分组
+	 * @param value 原值
+	 * @return 
+	 */
+	private String toDictLabel(String dictGroupName, String value) {
+		if ( dictResolver==null )
+			return value;
+		
+		String label = dictCacheMap.computeIfAbsent(dictGroupName, k -> new HashMap<>()).computeIfAbsent(value, k -> dictResolver.apply(dictGroupName, k));
+		
+		return label==null ? value : label;
+	}
+	
+	/**
+	 * 写入空值，CSV格式为空字符串，NDJSON格式为null
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @throws IOException
+	 */
+	private void putNull() throws IOException {
+		if ( format==ExportFormat.NDJSON )
+			putAscii("null");
+	}
+	
+	/**
+	 * 写入字符串，CSV格式在包含逗号、引号、换行符时加引号（引号转义为两个引号），NDJSON格式加引号并转义
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @param text 字符串
+	 * @throws IOException
+	 */
+	private void putText(String text) throws IOException {
+		boolean json = format==ExportFormat.NDJSON;
+		// 是否需要加引号
+		boolean quote = json;
+		for ( int i=0; !quote && i<text.length(); i++ ) {
+			char c = text.charAt(i);
+			quote = c==',' || c=='"' || c=='\n' || c=='\r';
+		}
+		if ( quote )
+			put((byte) '"');
+		for ( int i=0; i<text.length(); i++ ) {
+			ensure(MAX_CHAR_BYTES);
+			char c = text.charAt(i);
+			if ( json && (c=='"' || c=='\\') ) {
+				buffer.put((byte) '\\').put((byte) c);
+			} else if ( json && c<0x20 ) {
+				// 控制字符转义
+				switch ( c ) {
+					case '\n': buffer.put((byte) '\\').put((byte) 'n'); break;
+					case '\r': buffer.put((byte) '\\').put((byte) 'r'); break;
+					case '\t': buffer.put((byte) '\\').put((byte) 't'); break;
+					default: buffer.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0').put(HEX[c>>4]).put(HEX[c&0xf]);
+				}
+			} else if ( !json && c=='"' ) {
+				buffer.put((byte) '"').put((byte) '"');
+			} else if ( c<0x80 ) {
+				buffer.put((byte) c);
+			} else if ( c<0x800 ) {
+				buffer.put((byte) (0xc0 | c>>6)).put((byte) (0x80 | c&0x3f));
+			} else if ( Character.isHighSurrogate(c) && i+1<text.length() && Character.isLowSurrogate(text.charAt(i+1)) ) {
+				// 代理对编码成4字节
+				int codePoint = Character.toCodePoint(c, text.charAt(++i));
+				buffer.put((byte) (0xf0 | codePoint>>18)).put((byte) (0x80 | codePoint>>12&0x3f)).put((byte) (0x80 | codePoint>>6&0x3f)).put((byte) (0x80 | codePoint&0x3f));
+			} else if ( Character.isSurrogate(c) ) {
+				// 不成对的代理字符
+				buffer.put((byte) '?');
+			} else {
+				buffer.put((byte) (0xe0 | c>>12)).put((byte) (0x80 | c>>6&0x3f)).put((byte) (0x80 | c&0x3f));
+			}
+		}
+		if ( quote )
+			put((byte) '"');
+	}
+	
+	/**
+	 * 写入ASCII字符串（数字、布尔值等），不转义
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @param text 字符串
+	 * @throws IOException
+	 */
+	private void putAscii(String text) throws IOException {
+		for ( int i=0; i<text.length(); i++ ) {
+			put((byte) text.charAt(i));
+		}
+	}
+	
+	/**
+	 * 写入整数，不创建字符串
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @param value 整数
+	 * @throws IOException
+	 */
+	private void putLong(long value) throws IOException {
+		if ( value==Long.MIN_VALUE ) {
+			putAscii(String.valueOf(value));
+			return;
+		}
+		
+		if ( value<0 ) {
+			put((byte) '-');
+			value = -value;
+		}
+		// 从低位到高位写入数字缓冲
+		int position = digits.length;
+		do {
+			digits[--position] = (byte) ('0' + value%10);
+			value /= 10;
+		} while ( value>0 );
+		ensure(digits.length-position);
+		buffer.put(digits, position, digits.length-position);
+	}
+	
+	/**
+	 * 写入时间，格式yyyy-MM-dd HH:mm:ss
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @param dateTime 时间
+	 * @throws IOException
+	 */
+	private void putDateTime(LocalDateTime dateTime) throws IOException {
+		putDigits(dateTime.getYear(), 4);
+		put((byte) '-');
+		putDigits(dateTime.getMonthValue(), 2);
+		put((byte) '-');
+		putDigits(dateTime.getDayOfMonth(), 2);
+		put((byte) ' ');
+		putDigits(dateTime.getHour(), 2);
+		put((byte) ':');
+		putDigits(dateTime.getMinute(), 2);
+		put((byte) ':');
+		putDigits(dateTime.getSecond(), 2);
+	}
+	
+	/**
+	 * 写入固定位数的数字，不足位数时补0
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @param value 数字
+	 * @param width 位数
+	 * @throws IOException
+	 */
+	private void putDigits(int value, int width) throws IOException {
+		ensure(width);
+		for ( int divisor=(int) Math.pow(10, width-1); divisor>0; divisor/=10 ) {
+			buffer.put((byte) ('0' + value/divisor%10));
+		}
+	}
+	
+	/**
+	 * 写入字节
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @param b 字节
+	 * @throws IOException
+	 */
+	private void put(byte b) throws IOException {
+		ensure(1);
+		buffer.put(b);
+	}
+	
+	/**
+	 * 写入字节数组，超过缓冲区剩余空间时分段写入
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @param bytes 字节数组
+	 * @throws IOException
+	 */
+	private void put(byte[] bytes) throws IOException {
+		int offset = 0;
+		while ( offset<bytes.length ) {
+			ensure(1);
+			int length = Math.min(bytes.length-offset, buffer.remaining());
+			buffer.put(bytes, offset, length);
+			offset += length;
+		}
+	}
+	
+	/**
+	 * 确保缓冲区剩余空间，不足时先写入通道
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @param length 需要的字节数
+	 * @throws IOException
+	 */
+	private void ensure(int length) throws IOException {
+		if ( buffer.remaining()<length )
+			flush();
+	}
+	
+	/**
+	 * 生成枚举值到中文值的映射，枚举没有cn属性时使用枚举名称
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @param enumClass 枚举类型
+	 * @param valueField 枚举值属性
+	 * @return 
+	 */
+	private static Map<String, String> toEnumLabelMap(Class<?> enumClass, String valueField) {
+		Map<String, String> enumLabelMap = new HashMap<>();
+		if ( enumClass==null || !enumClass.isEnum() )
+			return enumLabelMap;
+		
+		boolean hasCn = ReflectUtil.getField(enumClass, "cn")!=null;
+		for ( Object constant : enumClass.getEnumConstants() ) {
+			Object value = ReflectUtil.getFieldValue(constant, valueField);
+			String label = hasCn ? String.valueOf(ReflectUtil.getFieldValue(constant, "cn")) : ((Enum<?>) constant).name();
+			enumLabelMap.put(String.valueOf(value), label);
+		}
+		
+		return enumLabelMap;
+	}
+	
+	/**
+	 * 导出列
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 */
+	private static class ExportColumn {
+		
+		/** 属性名（表头、json属性名） */
+		private String name;
+		/** 预先编码的json属性名（"name":） */
+		private byte[] jsonName;
+		/** 属性类型 */
+		private String fieldType;
+		/** 枚举值 -&gt; 中文值 */
+		private Map<String, String> enumLabelMap;
+		/** 数据字典分组 */
+		private String dictGroupName;
+		
+	}
+	
+}
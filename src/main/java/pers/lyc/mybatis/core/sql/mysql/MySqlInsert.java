@@ -2,11 +2,16 @@ package pers.lyc.mybatis.core.sql.mysql;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.core.util.UuidUtil;
@@ -31,6 +36,10 @@ public class MySqlInsert<T> {
 	private String tableName;
 	/** 数据列表 */
 	private List<T> dataList = new ArrayList<>();
+	/** 是否忽略主键或唯一键重复的数据（insert ignore） */
+	private boolean ignore;
+	/** 主键或唯一键重复时要更新的属性及表达式（on duplicate key update） */
+	private LinkedHashMap<String, String> duplicateKeyUpdateMap = new LinkedHashMap<>();
 	
 	/**
 	 * 初始化
@@ -80,6 +89,99 @@ public class MySqlInsert<T> {
 		return this;
 	}
 	
+	/**
+	 * 忽略主键或唯一键重复的数据（insert ignore），不能和onDuplicateKeyUpdate一起使用
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月5日
+	 * @return 
+	 */
+	public MySqlInsert<T> ignore() {
+		Assert.isTrue(duplicateKeyUpdateMap.isEmpty(), "ignore不能和onDuplicateKeyUpdate一起使用");
+		
+		this.ignore = true;
+		
+		return this;
+	}
+	
+	/**
+	 * 主键或唯一键重复时更新数据（on duplicate key update），更新除主键、自增字段、唯一键字段以外的所有字段为新数据的值，乐观锁版本号在原值上加1
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月5日
+	 * @return 
+	 */
+	public MySqlInsert<T> onDuplicateKeyUpdate() {
+		// 获取表缓存信息
+		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+		// 获取唯一键字段
+		Set<String> uniqueColumnSet = new HashSet<>();
+		for ( String uniqueKey : tableCache.getUniqueKeyList() ) {
+			uniqueColumnSet.addAll(Arrays.asList(uniqueKey.split(",")));
+		}
+		// 添加非键字段
+		for ( ColumnCache columnCache : tableCache.getColumnCacheMap().values() ) {
+			// 主键、自增字段、唯一键字段不更新
+			if ( columnCache.isAutoIncrement() || columnCache.getFieldName().equals(tableCache.getPrimaryKey()) || uniqueColumnSet.contains(columnCache.getColumnName()) )
+				continue;
+			// 乐观锁版本号在原值上加1
+			if ( columnCache.getFieldName().equals(tableCache.getVersionKey()) ) {
+				onDuplicateKeyUpdate(columnCache.getFieldName(), " " + columnCache.getFieldName() + " + 1");
+				continue;
+			}
+			onDuplicateKeyUpdate(columnCache.getFieldName(), " values( " + columnCache.getFieldName() + " )");
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * 主键或唯一键重复时更新数据（on duplicate key update），更新指定属性为新数据的值
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月5日
+	 * @param fields 要更新的属性
+	 * @return 
+	 */
+	public MySqlInsert<T> onDuplicateKeyUpdate(String... fields) {
+		Assert.notEmpty(fields, "要更新的属性不能为空");
+		
+		for ( String field : fields ) {
+			onDuplicateKeyUpdate(field, " values( " + field + " )");
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * 主键或唯一键重复时更新数据（on duplicate key update），属性前后需要有空格
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月5日
+	 * @param field 要更新的属性
+	 * @param expression 更新表达式，如：<br>
+	 * 	&nbsp;&nbsp;&nbsp;&nbsp; views + values( views )<br>
+	 * 	&nbsp;&nbsp;&nbsp;&nbsp; greatest( version , values( version ) )
+	 * @return 
+	 */
+	public MySqlInsert<T> onDuplicateKeyUpdate(String field, String expression) {
+		Assert.hasLength(field, "要更新的属性不能为空");
+		Assert.hasLength(expression, "更新表达式不能为空");
+		Assert.isTrue(!ignore, "onDuplicateKeyUpdate不能和ignore一起使用");
+		
+		// 获取表缓存信息
+		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+		// 获取字段缓存map
+		Map<String, ColumnCache> columnCacheMap = tableCache.getColumnCacheMap();
+		if ( !columnCacheMap.containsKey(field) )
+			throw new IllegalArgumentException("属性"+field+"不存在");
+		// 渲染表达式中的属性为列名
+		expression = " " + expression + " ";
+		for ( ColumnCache columnCache : columnCacheMap.values() ) {
+			expression = expression.replaceAll(" "+columnCache.getFieldName()+" ", " "+columnCache.getColumnName()+" ");
+		}
+		// 设置表达式
+		duplicateKeyUpdateMap.put(field, expression.trim());
+		
+		return this;
+	}
+	
 	/**
 	 * 添加数据
 	 * @author 林运昌（linyunchang）
@@ -100,14 +202,8 @@ public class MySqlInsert<T> {
 	 * @return 
 	 */
 	public MySqlInsert<T> value(T data, boolean clear) {
-		Assert.notNull(data, "数据不能为空");
-		
-		// 判断数据类型是否正确
-		if ( tableCls!=data.getClass() && !tableCls.isAssignableFrom(data.getClass()) ) 
-			throw new IllegalArgumentException("数据类型不正确");
-		
-		// 设置默认值
-		setDefault(data);
+		// 校验数据类型并设置默认值
+		prepare(data);
 		
 		// 清除旧数据列表
 		if ( clear ) {
@@ -153,6 +249,183 @@ public class MySqlInsert<T> {
 		return this;
 	}
 	
+	/**
+	 * 校验数据类型并设置默认值（含当前时间、字符串主键uuid），不添加到数据列表，用于不经过数据列表的新增方式（如load data）
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月4日
+	 * @param data 数据对象
+	 * @return 
+	 */
+	public T prepare(T data) {
+		Assert.notNull(data, "数据不能为空");
+		
+		// 判断数据类型是否正确
+		if ( tableCls!=data.getClass() && !tableCls.isAssignableFrom(data.getClass()) ) 
+			throw new IllegalArgumentException("数据类型不正确");
+		
+		// 设置默认值
+		setDefault(data);
+		
+		return data;
+	}
+	
+	/**
+	 * 设置本次执行的数据列表，数据需已通过value或values添加过（已设置默认值），用于分批新增时切换批次数据
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月1日
+	 * @param dataList 本批次数据列表
+	 * @return 
+	 */
+	public MySqlInsert<T> batch(List<T> dataList) {
+		Assert.notNull(dataList, "数据列表不能为空");
+		
+		this.dataList = dataList;
+		
+		return this;
+	}
+	
+	/**
+	 * 复制新增语句（表实体类型、自定义表名），并使用指定的数据列表，用于多线程并发新增时每个批次使用独立的新增语句
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月3日
+	 * @param dataList 新语句的数据列表，数据需已设置过默认值
+	 * @return 
+	 */
+	@SuppressWarnings("unchecked")
+	public MySqlInsert<T> copy(List<T> dataList) {
+		Assert.notNull(dataList, "数据列表不能为空");
+		
+		// 创建新增语句
+		MySqlInsert<T> sql = new MySqlInsert<T>((Class<T>) tableCls);
+		sql.tableName = tableName;
+		sql.dataList = dataList;
+		sql.ignore = ignore;
+		sql.duplicateKeyUpdateMap = duplicateKeyUpdateMap;
+		
+		return sql;
+	}
+	
+	/**
+	 * 获取新增字段数量（不包含自增字段），即每行数据的参数数量
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月1日
+	 * @return 
+	 */
+	public int getColumnCount() {
+		// 获取表缓存信息
+		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+		// 统计非自增字段数量
+		int count = 0;
+		for ( ColumnCache columnCache : tableCache.getColumnCacheMap().values() ) {
+			if ( !columnCache.isAutoIncrement() )
+				count++;
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * 根据字段定义（类型、长度）估算每行数据在sql语句中的最大字节数
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月1日
+	 * @return 
+	 */
+	public long getRowWidth() {
+		// 获取表缓存信息
+		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+		// 行数据外层括号及分隔符
+		long width = 3;
+		for ( ColumnCache columnCache : tableCache.getColumnCacheMap().values() ) {
+			// 自增字段不添加
+			if ( columnCache.isAutoIncrement() )
+				continue;
+			// 字段长度
+			Integer length = columnCache.getLength();
+			// 根据属性类型估算字段宽度
+			String fieldType = columnCache.getFieldType();
+			if ( "String".equals(fieldType) ) {
+				// 未指定长度的字符串（text等）按1024字节估算，字符串两侧有引号
+				width += (length==null || length==0 ? 1024 : length) + 2;
+			} else if ( "Date".equals(fieldType) ) {
+				width += 28;
+			} else if ( "BigDecimal".equals(fieldType) ) {
+				width += (length==null ? 12 : length) + 2;
+			} else if ( "Boolean".equals(fieldType) ) {
+				width += 1;
+			} else {
+				width += 20;
+			}
+			// 字段分隔符
+			width += 1;
+		}
+		
+		return width;
+	}
+	
+	/**
+	 * 估算单行数据在sql语句中实际占用的字节数
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月1日
+	 * @param data 数据对象
+	 * @return 
+	 */
+	public long getRowSize(T data) {
+		Assert.notNull(data, "数据不能为空");
+		
+		// 获取表缓存信息
+		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+		// 行数据外层括号及分隔符
+		long size = 3;
+		for ( ColumnCache columnCache : tableCache.getColumnCacheMap().values() ) {
+			// 自增字段不添加
+			if ( columnCache.isAutoIncrement() )
+				continue;
+			// 获取属性值
+			Object value = ReflectUtil.getFieldValue(data, columnCache.getFieldName());
+			// 累加字段值大小及分隔符
+			size += getValueSize(value) + 1;
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * 估算字段值在sql语句中占用的字节数
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月1日
+	 * @param value 字段值
+	 * @return 
+	 */
+	private static long getValueSize(Object value) {
+		if ( value==null )
+			return 4;
+		if ( value instanceof String ) {
+			String str = (String) value;
+			// 按utf-8编码计算字节数，两侧有引号
+			long size = 2;
+			for ( int i=0; i<str.length(); i++ ) {
+				char c = str.charAt(i);
+				if ( c<0x80 ) {
+					// 需要转义的字符占两个字节
+					size += (c=='\\' || c=='\'' || c=='"' || c=='\n' || c=='\r' || c==0) ? 2 : 1;
+				} else if ( c<0x800 ) {
+					size += 2;
+				} else {
+					size += 3;
+				}
+			}
+			return size;
+		}
+		if ( value instanceof Date )
+			return 28;
+		if ( value instanceof Boolean )
+			return 1;
+		if ( value instanceof BigDecimal )
+			return ((BigDecimal) value).toPlainString().length();
+		
+		return value.toString().length();
+	}
+	
 	/**
 	 * 设置默认值
 	 * @author 林运昌（linyunchang）
@@ -173,6 +446,12 @@ public class MySqlInsert<T> {
 			// 自增字段不设置默认值
 			if ( columnCache.isAutoIncrement() )
 				continue;
+			// 乐观锁版本号未设置值，则从0开始
+			if ( columnKey.equals(tableCache.getVersionKey()) ) {
+				if ( null==ReflectUtil.getFieldValue(data, columnKey) )
+					ReflectUtil.setFieldValue(data, columnKey, "Long".equals(columnCache.getFieldType()) ? (Object) 0L : (Object) 0);
+				continue;
+			}
 			
 			// 获取字段默认值
 			Object defaultValue = columnCache.getDefaultValue();
@@ -275,7 +554,7 @@ public class MySqlInsert<T> {
 		// 获取表缓存信息
 		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
 		// 生成sql语句
-		StringBuilder sql = new StringBuilder("insert into ");
+		StringBuilder sql = new StringBuilder(ignore ? "insert ignore into " : "insert into ");
 		if ( tableName==null )
 			sql.append(tableCache.getTableName());
 		else 
@@ -289,11 +568,51 @@ public class MySqlInsert<T> {
 		sql.append(getParams());
 		sql.append(")");
 		sql.append("</foreach>");
+		// 主键或唯一键重复时更新数据
+		if ( !duplicateKeyUpdateMap.isEmpty() ) {
+			// 获取字段缓存map
+			Map<String, ColumnCache> columnCacheMap = tableCache.getColumnCacheMap();
+			StringBuilder updates = new StringBuilder();
+			for ( Entry<String, String> entry : duplicateKeyUpdateMap.entrySet() ) {
+				if ( updates.length()>0 )
+					updates.append(",");
+				updates.append(columnCacheMap.get(entry.getKey()).getColumnName());
+				updates.append("=");
+				updates.append(entry.getValue());
+			}
+			sql.append(" on duplicate key update ");
+			sql.append(updates.toString());
+		}
 
 		System.out.println(sql.toString());
 		return sql.toString();
 	}
 	
+	/**
+	 * 生成load data local infile语句，字段顺序和新增语句一致，数据格式为制表符分隔、反斜杠转义、换行符结尾
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月4日
+	 * @return 
+	 */
+	public String toLoadDataString() {
+		// 获取表缓存信息
+		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+		// 生成sql语句
+		StringBuilder sql = new StringBuilder("load data local infile 'mybatis-lyc.tsv' into table ");
+		if ( tableName==null )
+			sql.append(tableCache.getTableName());
+		else 
+			sql.append(tableName);
+		sql.append(" character set utf8mb4");
+		sql.append(" fields terminated by '\\t' escaped by '\\\\'");
+		sql.append(" lines terminated by '\\n'");
+		sql.append("(");
+		sql.append(getColums());
+		sql.append(")");
+		
+		return sql.toString();
+	}
+	
 	public Class<?> getTableCls() {
 		return tableCls;
 	}
@@ -302,4 +621,12 @@ public class MySqlInsert<T> {
 		return dataList;
 	}
 	
+	public boolean isIgnore() {
+		return ignore;
+	}
+	
+	public LinkedHashMap<String, String> getDuplicateKeyUpdateMap() {
+		return duplicateKeyUpdateMap;
+	}
+	
 }
@@ -0,0 +1,160 @@
+package pers.lyc.mybatis.core.sql.mysql;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+import cn.hutool.core.util.ReflectUtil;
+import pers.lyc.mybatis.core.cache.ColumnCache;
+import pers.lyc.mybatis.core.cache.TableCache;
+import pers.lyc.mybatis.util.TableCacheUtil;
+
+/**
+ * load data local infile数据输入流，从迭代器中逐条读取数据，按新增语句的字段顺序编码成制表符分隔的数据行，不落地到磁盘
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月4日
+ */
+public class MySqlLoadDataInputStream<T> extends InputStream {
+	
+	/** 数据新增语句，用于设置默认值 */
+	private MySqlInsert<T> sql;
+	/** 数据迭代器 */
+	private Iterator<T> iterator;
+	/** 要写入的字段列表（不包含自增字段） */
+	private List<ColumnCache> columnCacheList = new ArrayList<>();
+	/** 时间格式 */
+	private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+	/** 数据行缓冲区 */
+	private StringBuilder line = new StringBuilder();
+	/** 当前数据行字节 */
+	private byte[] buffer = new byte[0];
+	/** 当前数据行读取位置 */
+	private int position;
+	/** 已写入的数据条数 */
+	private long count;
+	
+	/**
+	 * 初始化
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月4日
+	 * @param sql 数据新增语句
+	 * @param iterator 数据迭代器
+	 */
+	public MySqlLoadDataInputStream(MySqlInsert<T> sql, Iterator<T> iterator) {
+		Assert.notNull(sql, "新增语句不能为空");
+		Assert.notNull(iterator, "数据迭代器不能为空");
+		
+		this.sql = sql;
+		this.iterator = iterator;
+		// 获取表缓存信息
+		TableCache tableCache = TableCacheUtil.getTableCache(sql.getTableCls());
+		// 字段顺序和新增语句一致，自增字段由数据库生成
+		for ( ColumnCache columnCache : tableCache.getColumnCacheMap().values() ) {
+			if ( !columnCache.isAutoIncrement() )
+				columnCacheList.add(columnCache);
+		}
+	}
+	
+	@Override
+	public int read() {
+		// 当前数据行已读完则编码下一行
+		if ( position>=buffer.length && !nextLine() )
+			return -1;
+		
+		return buffer[position++] & 0xff;
+	}
+	
+	@Override
+	public int read(byte[] bytes, int offset, int length) {
+		if ( length==0 )
+			return 0;
+		
+		// 已读取的字节数
+		int readCount = 0;
+		while ( readCount<length ) {
+			// 当前数据行已读完则编码下一行
+			if ( position>=buffer.length && !nextLine() )
+				break;
+			// 复制数据
+			int copyCount = Math.min(length-readCount, buffer.length-position);
+			System.arraycopy(buffer, position, bytes, offset+readCount, copyCount);
+			position += copyCount;
+			readCount += copyCount;
+		}
+		
+		return readCount==0 ? -1 : readCount;
+	}
+	
+	/**
+	 * 编码下一行数据
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月4日
+	 * @return 是否还有数据
+	 */
+	private boolean nextLine() {
+		if ( !iterator.hasNext() )
+			return false;
+		
+		// 获取数据，设置默认值
+		T data = sql.prepare(iterator.next());
+		// 编码数据行
+		line.setLength(0);
+		for ( int i=0; i<columnCacheList.size(); i++ ) {
+			if ( i>0 )
+				line.append('\t');
+			appendValue(ReflectUtil.getFieldValue(data, columnCacheList.get(i).getFieldName()));
+		}
+		line.append('\n');
+		// 转换成字节
+		buffer = line.toString().getBytes(StandardCharsets.UTF_8);
+		position = 0;
+		count++;
+		
+		return true;
+	}
+	
+	/**
+	 * 添加字段值，空值写入\N，字符串转义反斜杠、制表符、换行符
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月4日
+	 * @param value 字段值
+	 */
+	private void appendValue(Object value) {
+		if ( value==null ) {
+			line.append("\\N");
+		} else if ( value instanceof Date ) {
+			line.append(dateFormat.format((Date) value));
+		} else if ( value instanceof Boolean ) {
+			line.append((Boolean) value ? '1' : '0');
+		} else if ( value instanceof BigDecimal ) {
+			line.append(((BigDecimal) value).toPlainString());
+		} else if ( value instanceof String ) {
+			String str = (String) value;
+			for ( int i=0; i<str.length(); i++ ) {
+				char c = str.charAt(i);
+				switch ( c ) {
+					case '\\': line.append("\\\\"); break;
+					case '\t': line.append("\\t"); break;
+					case '\n': line.append("\\n"); break;
+					case '\r': line.append("\\r"); break;
+					case 0: line.append("\\0"); break;
+					default: line.append(c);
+				}
+			}
+		} else {
+			line.append(value);
+		}
+	}
+	
+	public long getCount() {
+		return count;
+	}
+	
+}
@@ -3,6 +3,7 @@ package pers.lyc.mybatis.core.sql.mysql;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -38,10 +39,20 @@ public class MySqlSelect<T> extends SqlWhere {
 	private LinkedHashMap<String, JoinCache> joinCacheMap = new LinkedHashMap<>();
 	/** 排序 */
 	private StringBuilder orderBy = new StringBuilder();
+	/** 排序属性及是否倒序，按排序顺序 */
+	private LinkedHashMap<String, Boolean> orderFieldMap = new LinkedHashMap<>();
+	/** 分组属性及对应的字段（属性 -&gt; 字段全名），按分组顺序 */
+	private LinkedHashMap<String, String> groupFieldMap = new LinkedHashMap<>();
+	/** 聚合列（别名 -&gt; 聚合表达式），按添加顺序 */
+	private LinkedHashMap<String, String> aggregateMap = new LinkedHashMap<>();
+	/** 分组过滤条件 */
+	private StringBuilder having = new StringBuilder();
 	/** 数据起始行位置 */
 	private int offset = -1;
 	/** 查询数量 */
 	private int limit = -1;
+	/** 是否记录查询结果的数据快照，用于更新时只更新发生变化的字段 */
+	private boolean snapshot;
 	
 	/**
 	 * 初始化
@@ -197,7 +208,15 @@ public class MySqlSelect<T> extends SqlWhere {
 		LinkedHashMap<String, ColumnCache> columnCacheMap = tableCache.getColumnCacheMap();
 		LinkedHashMap<String, RelatedCache> relatedCacheMap = tableCache.getRelatedCacheMap();
 		// 添加排序
-		if ( columnCacheMap.containsKey(field) ) {
+		if ( aggregateMap.containsKey(field) ) {
+			if ( orderBy.length()>0 )
+				orderBy.append(",");
+			// 按聚合列别名排序
+			orderBy.append("`").append(field).append("`");
+			// 判断是否倒序
+			if ( desc )
+				orderBy.append(" desc");
+		} else if ( columnCacheMap.containsKey(field) ) {
 			if ( orderBy.length()>0 )
 				orderBy.append(",");
 			// 添加排序
@@ -216,6 +235,8 @@ public class MySqlSelect<T> extends SqlWhere {
 		} else {
 			throw new IllegalArgumentException("属性"+field+"不存在");
 		}
+		// 记录排序属性，同一属性重复排序时以第一次为准（后面的排序不起作用），seek时只使用一次
+		orderFieldMap.putIfAbsent(field, desc);
 		
 		return this;
 	}
@@ -235,6 +256,321 @@ public class MySqlSelect<T> extends SqlWhere {
 		return this;
 	}
 	
+	/**
+	 * 记录查询结果的数据快照，通过MySqlService更新这些数据对象时只更新和快照相比发生变化的字段，没有字段变化时不执行更新
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月9日
+	 * @return 
+	 */
+	public MySqlSelect<T> snapshot() {
+		this.snapshot = true;
+		
+		return this;
+	}
+	
+	/**
+	 * 从指定位置之后继续查询（seek分页），values是上一页最后一条数据的排序属性值，按排序属性顺序传入。
+	 * 排序方向相同时生成 (a, b) &gt; (?, ?) 条件（倒序为 &lt;），方向不同时展开为 a &gt; ? or (a = ? and b &lt; ?) 形式。
+	 * 排序属性的组合需要唯一（通常最后一个排序属性为主键）且值不能为空，否则会漏掉或重复数据
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月16日
+	 * @param values 上一页最后一条数据的排序属性值
+	 * @return 
+	 */
+	public MySqlSelect<T> seek(Object... values) {
+		Assert.notEmpty(values, "seek值不能为空");
+		Assert.isTrue(values.length==orderFieldMap.size(), "seek值的数量需要和排序属性数量一致");
+		
+		// 获取表缓存信息
+		TableCache tableCache = getTableCache();
+		// 获取字段缓存信息
+		LinkedHashMap<String, ColumnCache> columnCacheMap = tableCache.getColumnCacheMap();
+		LinkedHashMap<String, RelatedCache> relatedCacheMap = tableCache.getRelatedCacheMap();
+		// 排序字段、方向及参数
+		String[] columns = new String[values.length];
+		boolean[] descs = new boolean[values.length];
+		String[] params = new String[values.length];
+		boolean sameDirection = true;
+		int index = 0;
+		for ( Entry<String, Boolean> entry : orderFieldMap.entrySet() ) {
+			String field = entry.getKey();
+			Assert.notNull(values[index], "排序属性"+field+"的seek值不能为空");
+			// 字段
+			if ( columnCacheMap.containsKey(field) ) {
+				columns[index] = columnCacheMap.get(field).getFullName();
+			} else {
+				columns[index] = relatedCacheMap.get(field).getFullName();
+				joinRelated(field);
+			}
+			// 方向
+			descs[index] = entry.getValue();
+			if ( descs[index]!=descs[0] )
+				sameDirection = false;
+			// 参数
+			paramMap.put("seek" + index, values[index]);
+			params[index] = "#{paramMap.seek" + index + "}";
+			index++;
+		}
+		// 生成条件
+		StringBuilder seek = new StringBuilder();
+		if ( sameDirection ) {
+			// 行比较：(a, b) > (?, ?)
+			seek.append("(");
+			seek.append(String.join(",", columns));
+			seek.append(descs[0] ? ") &lt; (" : ") &gt; (");
+			seek.append(String.join(",", params));
+			seek.append(")");
+		} else {
+			// 逐级展开：a > ? or (a = ? and b < ?) ...
+			for ( int i=0; i<columns.length; i++ ) {
+				if ( i>0 )
+					seek.append(" or ");
+				seek.append("(");
+				for ( int j=0; j<i; j++ ) {
+					seek.append(columns[j]);
+					seek.append(" = ");
+					seek.append(params[j]);
+					seek.append(" and ");
+				}
+				seek.append(columns[i]);
+				seek.append(descs[i] ? " &lt; " : " &gt; ");
+				seek.append(params[i]);
+				seek.append(")");
+			}
+		}
+		andSet.add("(" + seek + ")");
+		
+		return this;
+	}
+	
+	/**
+	 * 设置分组属性，查询结果只包含分组属性和聚合列，分组属性的列别名为属性名
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月23日
+	 * @param fields 分组属性
+	 * @return 
+	 */
+	public MySqlSelect<T> groupBy(String... fields) {
+		Assert.notEmpty(fields, "分组属性不能为空");
+		
+		for ( String field : fields ) {
+			Assert.isTrue(!aggregateMap.containsKey(field), "分组属性"+field+"与聚合列别名重复");
+			// 同一属性只分组一次
+			if ( !groupFieldMap.containsKey(field) )
+				groupFieldMap.put(field, toFullName(field));
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * 添加分组过滤条件，多次添加时使用and连接，条件中使用分组属性名或聚合列别名，如：total &gt; #{minTotal}
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月23日
+	 * @param sql 过滤条件
+	 * @param paramMap 条件中涉及到的参数值map，如：{minTotal:100}
+	 * @return 
+	 */
+	public MySqlSelect<T> having(String sql, Map<String, Object> paramMap) {
+		Assert.hasLength(sql, "sql不能为空");
+		
+		// 添加过滤条件
+		if ( having.length()>0 )
+			having.append(" and ");
+		having.append("(");
+		having.append(renderParam(sql));
+		having.append(")");
+		// 如果参数不为空，则添加到参数map中
+		if ( paramMap!=null && !paramMap.isEmpty() )
+			this.paramMap.putAll(paramMap);
+		
+		return this;
+	}
+	
+	/**
+	 * 添加聚合列：count(1)
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月23日
+	 * @param alias 列别名
+	 * @return 
+	 */
+	public MySqlSelect<T> count(String alias) {
+		return aggregate(alias, "count(1)");
+	}
+	
+	/**
+	 * 添加聚合列：count(distinct field)
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月23日
+	 * @param field 属性
+	 * @param alias 列别名
+	 * @return 
+	 */
+	public MySqlSelect<T> countDistinct(String field, String alias) {
+		return aggregate(alias, "count(distinct " + toFullName(field) + ")");
+	}
+	
+	/**
+	 * 添加聚合列：sum(field)
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月23日
+	 * @param field 属性
+	 * @param alias 列别名
+	 * @return 
+	 */
+	public MySqlSelect<T> sum(String field, String alias) {
+		return aggregate(alias, "sum(" + toFullName(field) + ")");
+	}
+	
+	/**
+	 * 添加聚合列：avg(field)
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月23日
+	 * @param field 属性
+	 * @param alias 列别名
+	 * @return 
+	 */
+	public MySqlSelect<T> avg(String field, String alias) {
+		return aggregate(alias, "avg(" + toFullName(field) + ")");
+	}
+	
+	/**
+	 * 添加聚合列：min(field)
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月23日
+	 * @param field 属性
+	 * @param alias 列别名
+	 * @return 
+	 */
+	public MySqlSelect<T> min(String field, String alias) {
+		return aggregate(alias, "min(" + toFullName(field) + ")");
+	}
+	
+	/**
+	 * 添加聚合列：max(field)
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月23日
+	 * @param field 属性
+	 * @param alias 列别名
+	 * @return 
+	 */
+	public MySqlSelect<T> max(String field, String alias) {
+		return aggregate(alias, "max(" + toFullName(field) + ")");
+	}
+	
+	/**
+	 * 是否为聚合查询（设置了分组属性或聚合列）
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月23日
+	 * @return 
+	 */
+	public boolean isAggregate() {
+		return !groupFieldMap.isEmpty() || !aggregateMap.isEmpty();
+	}
+	
+	/**
+	 * 获取聚合查询结果的列别名，顺序为分组属性、聚合列
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月23日
+	 * @return 
+	 */
+	public String[] getAggregateLabels() {
+		String[] labels = new String[groupFieldMap.size() + aggregateMap.size()];
+		int index = 0;
+		for ( String field : groupFieldMap.keySet() ) {
+			labels[index++] = field;
+		}
+		for ( String alias : aggregateMap.keySet() ) {
+			labels[index++] = alias;
+		}
+		
+		return labels;
+	}
+	
+	/**
+	 * 添加聚合列
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月23日
+	 * @param alias 列别名，只能包含字母、数字、下划线
+	 * @param expression 聚合表达式
+	 * @return 
+	 */
+	private MySqlSelect<T> aggregate(String alias, String expression) {
+		Assert.isTrue(alias!=null && alias.matches("[A-Za-z_][A-Za-z0-9_]*"), "列别名只能包含字母、数字、下划线");
+		Assert.isTrue(!aggregateMap.containsKey(alias) && !groupFieldMap.containsKey(alias), "列别名"+alias+"重复");
+		
+		aggregateMap.put(alias, expression);
+		
+		return this;
+	}
+	
+	/**
+	 * 获取属性对应的字段全名，关系属性自动添加关联
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月23日
+	 * @param field 属性
+	 * @return 
+	 */
+	private String toFullName(String field) {
+		Assert.hasLength(field, "属性不能为空");
+		
+		// 获取表缓存信息
+		TableCache tableCache = getTableCache();
+		// 获取字段缓存信息
+		LinkedHashMap<String, ColumnCache> columnCacheMap = tableCache.getColumnCacheMap();
+		LinkedHashMap<String, RelatedCache> relatedCacheMap = tableCache.getRelatedCacheMap();
+		if ( columnCacheMap.containsKey(field) )
+			return columnCacheMap.get(field).getFullName();
+		if ( relatedCacheMap.containsKey(field) ) {
+			// 添加关联关系
+			joinRelated(field);
+			return relatedCacheMap.get(field).getFullName();
+		}
+		
+		throw new IllegalArgumentException("属性"+field+"不存在");
+	}
+	
+	/**
+	 * 复制查询语句（查询属性、关联、条件、参数、排序、数量限制等），复制后的语句可以单独添加条件，用于分批或并发查询时每个批次使用独立的查询语句
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月15日
+	 * @return 
+	 */
+	@SuppressWarnings("unchecked")
+	public MySqlSelect<T> copy() {
+		// 创建查询语句
+		MySqlSelect<T> sql = new MySqlSelect<T>((Class<T>) tableCls);
+		sql.tableName = tableName;
+		sql.distinct = distinct;
+		sql.fields = fields;
+		sql.joinTypeMap = new HashMap<>(joinTypeMap);
+		sql.joinCacheMap = new LinkedHashMap<>(joinCacheMap);
+		sql.orderBy = new StringBuilder(orderBy);
+		sql.orderFieldMap = new LinkedHashMap<>(orderFieldMap);
+		sql.groupFieldMap = new LinkedHashMap<>(groupFieldMap);
+		sql.aggregateMap = new LinkedHashMap<>(aggregateMap);
+		sql.having = new StringBuilder(having);
+		sql.offset = offset;
+		sql.limit = limit;
+		sql.snapshot = snapshot;
+		// 复制条件及参数
+		sql.andSet = new HashSet<>(andSet);
+		sql.orSet = new HashSet<>(orSet);
+		sql.paramMap = new HashMap<>(paramMap);
+		
+		return sql;
+	}
+	
+	/**
+	 * 是否有or条件
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月15日
+	 * @return 
+	 */
+	public boolean hasOr() {
+		return !orSet.isEmpty();
+	}
+	
 	@Override
 	protected TableCache getTableCache() {
 		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
@@ -303,7 +639,27 @@ public class MySqlSelect<T> extends SqlWhere {
 		if ( this.distinct ) 
 			sql.append("distinct ");
 		// 添加列字段
-		if ( fields!=null && fields.length>0 ) {
+		if ( isAggregate() ) {
+			// 聚合查询只查询分组属性和聚合列
+			for ( Entry<String, String> entry : groupFieldMap.entrySet() ) {
+				if ( columns.length()>0 )
+					columns.append(",");
+				columns.append(entry.getValue());
+				columns.append(" `");
+				columns.append(entry.getKey());
+				columns.append("`");
+			}
+			for ( Entry<String, String> entry : aggregateMap.entrySet() ) {
+				if ( columns.length()>0 )
+					columns.append(",");
+				columns.append(entry.getValue());
+				columns.append(" `");
+				columns.append(entry.getKey());
+				columns.append("`");
+			}
+			// 添加字段到sql语句
+			sql.append(columns.toString());
+		} else if ( fields!=null && fields.length>0 ) {
 			// 遍历属性，添加属性对应的字段
 			for ( String field : fields ) {
 				// 如果属性存在则添加
@@ -368,8 +724,8 @@ public class MySqlSelect<T> extends SqlWhere {
 			sql.append(tableName);
 		sql.append(" ");
 		sql.append(tableCache.getAliasName());
-		// 关联关系缓存处理
-		if ( fields==null || fields.length==0 ) {
+		// 关联关系缓存处理，聚合查询只关联用到的表
+		if ( !isAggregate() && (fields==null || fields.length==0) ) {
 			joinCacheMap = tableCache.getJoinCacheMap();
 		} 
 		// 添加关联关系
@@ -417,6 +773,16 @@ public class MySqlSelect<T> extends SqlWhere {
 			where.append(or);
 		}
 		sql.append(where.toString());
+		// 分组
+		if ( !groupFieldMap.isEmpty() ) {
+			sql.append(" group by ");
+			sql.append(String.join(",", groupFieldMap.values()));
+		}
+		// 分组过滤
+		if ( having.length()>0 ) {
+			sql.append(" having ");
+			sql.append(having.toString());
+		}
 		// 排序
 		if ( orderBy.length()>0 ) {
 			sql.append(" order by ");
@@ -454,6 +820,10 @@ public class MySqlSelect<T> extends SqlWhere {
 		return orderBy;
 	}
 
+	public LinkedHashMap<String, Boolean> getOrderFieldMap() {
+		return orderFieldMap;
+	}
+	
 	public int getOffset() {
 		return offset;
 	}
@@ -462,4 +832,8 @@ public class MySqlSelect<T> extends SqlWhere {
 		return limit;
 	}
 	
+	public boolean isSnapshot() {
+		return snapshot;
+	}
+	
 }
@@ -4,9 +4,11 @@ import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.springframework.util.Assert;
 
@@ -36,6 +38,12 @@ public class MySqlUpdate<T> extends SqlWhere {
 	private Map<String, Object> valueMap = new HashMap<>();
 	/** 生效的关联信息 */
 	private LinkedHashMap<String, JoinCache> joinCacheMap = new LinkedHashMap<>();
+	/** 最新数据对象 */
+	private T data;
+	/** 从最新数据对象中取值的属性（未被set单独设置过） */
+	private Set<String> dataFieldSet = new HashSet<>();
+	/** 最新数据对象的乐观锁版本号，更新数据条数为0时表示数据已被他人修改 */
+	private Object version;
 	
 	/**
 	 * 初始化
@@ -96,7 +104,7 @@ public class MySqlUpdate<T> extends SqlWhere {
 	}
 	
 	/**
-	 * 设置最新数据对象
+	 * 设置最新数据对象，表存在乐观锁版本号（@Version）时附加版本号条件并将版本号加1
 	 * @author 林运昌（linyunchang）
 	 * @since 2020年6月19日
 	 * @param data 最新数据对象
@@ -110,14 +118,16 @@ public class MySqlUpdate<T> extends SqlWhere {
 		// 获取主键
 		String primaryKey = table.primaryKey();
 		Assert.hasLength(primaryKey, "主键不能为空");
+		// 获取乐观锁版本号属性
+		String versionKey = TableCacheUtil.getTableCache(tableCls).getVersionKey();
 		// 获取所有属性
 		Field[] fields = ReflectUtil.getFields(tableCls);
 		// 设置待更新数据
 		for ( Field field : fields ) {
 			// 获取属性名
 			String fieldName = field.getName();
-			// 如果是主键或序列号则判断下一个属性
-			if ( primaryKey.equalsIgnoreCase(fieldName) || fieldName.equalsIgnoreCase("serialVersionUID") )
+			// 如果是主键、版本号或序列号则判断下一个属性
+			if ( primaryKey.equalsIgnoreCase(fieldName) || fieldName.equals(versionKey) || fieldName.equalsIgnoreCase("serialVersionUID") )
 				continue;
 			// 如果属性没有添加@Column注解则判断下一个属性
 			if ( null==field.getAnnotation(Column.class) )
@@ -129,6 +139,7 @@ public class MySqlUpdate<T> extends SqlWhere {
 				continue;
 			// 设置待更新数据
 			this.set(fieldName, fieldValue);
+			dataFieldSet.add(fieldName);
 		}
 		// 获取主键值
 		Object fieldValue = ReflectUtil.getFieldValue(data, primaryKey);
@@ -136,6 +147,17 @@ public class MySqlUpdate<T> extends SqlWhere {
 			throw new IllegalArgumentException(primaryKey + " 不能为空");
 		// 设置主键参数
 		this.andEqualTo(primaryKey, fieldValue);
+		// 设置乐观锁版本号条件，版本号加1
+		if ( versionKey!=null ) {
+			Object versionValue = ReflectUtil.getFieldValue(data, versionKey);
+			if ( versionValue==null )
+				throw new IllegalArgumentException(versionKey + " 不能为空");
+			this.set(versionKey, " " + versionKey + " + 1", null);
+			this.andEqualTo(versionKey, versionValue);
+			this.version = versionValue;
+		}
+		// 记录最新数据对象
+		this.data = data;
 		
 		return this;
 	}
@@ -154,6 +176,7 @@ public class MySqlUpdate<T> extends SqlWhere {
 		joinRelated(fieldName);
 		
 		// 设置表达式和数据值
+		this.dataFieldSet.remove(fieldName);
 		this.expressionMap.put(fieldName, "#{valueMap."+fieldName+"}");
 		if ( value!=null )
 			this.valueMap.put(fieldName, value);
@@ -182,6 +205,7 @@ public class MySqlUpdate<T> extends SqlWhere {
 		expression = super.renderField(expression, true);
 		expression = expression.replaceAll("#\\{paramMap.", "#{valueMap.");
 		
+		this.dataFieldSet.remove(fieldName);
 		this.expressionMap.put(fieldName, expression);
 		if ( value!=null )
 			this.valueMap.put(fieldName, value);
@@ -189,6 +213,23 @@ public class MySqlUpdate<T> extends SqlWhere {
 		return this;
 	}
 	
+	/**
+	 * 移除从最新数据对象中取值的待更新属性，单独设置过的属性不移除
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月9日
+	 * @param fieldName 属性名称
+	 * @return 是否移除
+	 */
+	public boolean removeDataField(String fieldName) {
+		if ( !dataFieldSet.remove(fieldName) )
+			return false;
+		
+		this.expressionMap.remove(fieldName);
+		this.valueMap.remove(fieldName);
+		
+		return true;
+	}
+	
 	@Override
 	protected TableCache getTableCache() {
 		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
@@ -331,6 +372,10 @@ public class MySqlUpdate<T> extends SqlWhere {
 		return sql.toString();
 	}
 	
+	public Class<?> getTableCls() {
+		return tableCls;
+	}
+	
 	public Map<String, String> getExpressionMap() {
 		return expressionMap;
 	}
@@ -339,4 +384,16 @@ public class MySqlUpdate<T> extends SqlWhere {
 		return valueMap;
 	}
 	
+	public T getData() {
+		return data;
+	}
+	
+	public Set<String> getDataFieldSet() {
+		return dataFieldSet;
+	}
+	
+	public Object getVersion() {
+		return version;
+	}
+	
 }
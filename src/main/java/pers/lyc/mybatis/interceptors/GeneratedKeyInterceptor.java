@@ -0,0 +1,124 @@
+package pers.lyc.mybatis.interceptors;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+
+import pers.lyc.mybatis.core.cache.ColumnCache;
+import pers.lyc.mybatis.core.cache.TableCache;
+import pers.lyc.mybatis.core.sql.mysql.MySqlInsert;
+import pers.lyc.mybatis.util.TableCacheUtil;
+
+import cn.hutool.core.util.ReflectUtil;
+
+/**
+ * mybatis自增主键拦截器（批量新增后将数据库生成的自增主键回写到每条数据中）。
+ * 需要和分页拦截器一样注册到mybatis中，新增语句需要开启useGeneratedKeys；insert ignore及on duplicate key update语句返回的主键与数据无法一一对应，不回写
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月8日
+ */
+@Intercepts({ @Signature( type=StatementHandler.class, method="update", args={Statement.class} ) })
+public class GeneratedKeyInterceptor implements Interceptor {
+	
+	public Object intercept(Invocation invocation) throws Throwable {
+		Object obj = invocation.proceed();
+		
+		//获取handler
+		StatementHandler handler = (StatementHandler) invocation.getTarget();
+		//获取mapper接口的参数
+		Object parameterObj = handler.getBoundSql().getParameterObject();
+		
+		//判断参数是否是MySqlInsert类型，如果是，则回写自增主键
+		if ( parameterObj instanceof MySqlInsert ) {
+			MySqlInsert<?> sql = (MySqlInsert<?>) parameterObj;
+			//拦截到的update方法参数是一个Statement对象
+			Statement statement = (Statement) invocation.getArgs()[0];
+			//回写自增主键
+			setGeneratedKeys(statement, sql);
+		}
+		
+		return obj;
+	}
+	
+	/**
+	 * 将自增主键回写到新增的数据中
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月8日
+	 * @param statement 执行新增的Statement
+	 * @param sql 数据新增语句
+	 * @throws Exception
+	 */
+	private void setGeneratedKeys(Statement statement, MySqlInsert<?> sql) throws Exception {
+		// insert ignore及on duplicate key update时生成的主键数量与数据不对应
+		if ( sql.isIgnore() || !sql.getDuplicateKeyUpdateMap().isEmpty() )
+			return;
+		// 获取新增数据列表
+		List<?> dataList = sql.getDataList();
+		if ( dataList==null || dataList.isEmpty() )
+			return;
+		// 获取自增字段
+		ColumnCache autoIncrementCache = getAutoIncrementCache(sql.getTableCls());
+		if ( autoIncrementCache==null )
+			return;
+		
+		// 读取生成的主键，按新增顺序返回
+		long[] keys = new long[dataList.size()];
+		int count = 0;
+		try ( ResultSet rs = statement.getGeneratedKeys() ) {
+			if ( rs==null )
+				return;
+			while ( rs.next() ) {
+				// 主键数量与数据不一致则不回写
+				if ( count>=keys.length )
+					return;
+				keys[count++] = rs.getLong(1);
+			}
+		}
+		if ( count!=keys.length )
+			return;
+		
+		// 按属性类型回写主键
+		String fieldName = autoIncrementCache.getFieldName();
+		boolean isInteger = "Integer".equals(autoIncrementCache.getFieldType());
+		for ( int i=0; i<keys.length; i++ ) {
+			ReflectUtil.setFieldValue(dataList.get(i), fieldName, isInteger ? Integer.valueOf((int) keys[i]) : Long.valueOf(keys[i]));
+		}
+	}
+	
+	/**
+	 * 获取自增字段缓存信息
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月8日
+	 * @param tableCls 表实体类型
+	 * @return 没有自增字段时返回null
+	 */
+	private ColumnCache getAutoIncrementCache(Class<?> tableCls) {
+		// 获取表缓存信息
+		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+		for ( ColumnCache columnCache : tableCache.getColumnCacheMap().values() ) {
+			if ( columnCache.isAutoIncrement() )
+				return columnCache;
+		}
+		
+		return null;
+	}
+	
+	@Override
+	public Object plugin(Object target) {
+		return Plugin.wrap(target, this);
+	}
+	
+	@Override
+	public void setProperties(Properties properties) {
+		
+	}
+	
+}
@@ -27,4 +27,18 @@ public class MySqlDeleteSqlProvider implements ProviderMethodResolver {
 		return "<script>" + sql.toString() + "</script>";
 	}
 	
+	/**
+	 * 查询待删除数据的主键
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月7日
+	 * @param context ProviderContext
+	 * @param sql 数据删除语句
+	 * @return 
+	 */
+	public static String selectDeletePrimaryKey(ProviderContext context, MySqlDelete<?> sql) {
+		Assert.notNull(sql, "数据删除语句不能为空");
+		
+		return "<script>" + sql.toSelectPrimaryKeyString() + "</script>";
+	}
+	
 }
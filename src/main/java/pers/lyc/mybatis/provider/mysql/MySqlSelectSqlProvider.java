@@ -1,5 +1,7 @@
 package pers.lyc.mybatis.provider.mysql;
 
+import java.util.Collection;
+
 import org.apache.ibatis.builder.annotation.ProviderContext;
 import org.apache.ibatis.builder.annotation.ProviderMethodResolver;
 import org.springframework.util.Assert;
@@ -13,8 +15,14 @@ import pers.lyc.mybatis.core.sql.mysql.MySqlSelect;
  */
 public class MySqlSelectSqlProvider implements ProviderMethodResolver {
 	
+	/** 逐个匹配时本次匹配值的参数名，条件语句中使用：field = #{matchedKey} */
+	public static final String MATCHED_KEY = "matchedKey";
+	
+	/** 逐个匹配时匹配值列表的参数名 */
+	public static final String MATCHED_KEYS = "matchedKeys";
+	
 	/**
-	 * 单条数据查询
+	 * 单条数据查询，未设置查询数量时最多查询2条，结果多于1条时mybatis直接报错，不需要读取全部匹配的数据
 	 * @author 林运昌（linyunchang）
 	 * @since 2020年6月19日
 	 * @param context ProviderContext
@@ -23,8 +31,95 @@ public class MySqlSelectSqlProvider implements ProviderMethodResolver {
 	 */
 	public static String selectOne(ProviderContext context, MySqlSelect<?> sql) {
 		Assert.notNull(sql, "查询语句不能为空");
+		if ( sql.getLimit()>0 )
+			return "<script>" + sql.toString() + "</script>";
 		
-		return "<script>" + sql.toString() + "</script>";
+		// 数据缓存
+		int offset = sql.getOffset();
+		int limit = sql.getLimit();
+		// 生成执行语句
+		String returnSql = sql.limit(0, 2).toString();
+		// 恢复数据
+		sql.limit(offset, limit);
+		
+		return "<script>" + returnSql + "</script>";
+	}
+	
+	/**
+	 * 数据是否存在：select 1 from ... limit 1
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月24日
+	 * @param context ProviderContext
+	 * @param sql 数据查询语句
+	 * @return 
+	 */
+	public static String exists(ProviderContext context, MySqlSelect<?> sql) {
+		Assert.notNull(sql, "查询语句不能为空");
+		
+		// 数据缓存
+		boolean distinct = sql.getDistinct();
+		String[] fields = sql.getFields();
+		String orderBy = sql.getOrderBy().toString();
+		int offset = sql.getOffset();
+		int limit = sql.getLimit();
+		// 生成执行语句，判断是否存在不需要排序
+		sql.getOrderBy().setLength(0);
+		String returnSql;
+		if ( sql.isAggregate() )
+			returnSql = "select 1 from (" + sql.limit(-1, -1).toString() + ") temp limit 1";
+		else
+			returnSql = sql.distinct(false).field("1").limit(0, 1).toString();
+		// 恢复数据
+		sql.getOrderBy().append(orderBy);
+		sql.distinct(distinct);
+		sql.fields(fields);
+		sql.limit(offset, limit);
+		
+		return "<script>" + returnSql + "</script>";
+	}
+	
+	/**
+	 * 逐个判断匹配值是否存在，返回存在的匹配值下标：select 0 from dual where exists (select 1 from ... and field = ?) union all select 1 ...
+	 * 匹配值直接作为参数和字段比较，由数据库按字段的排序规则判断是否相等
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月25日
+	 * @param context ProviderContext
+	 * @param sql 数据查询语句，需要包含 field = #{matchedKey} 条件，参数map中需要有匹配值列表matchedKeys
+	 * @return 
+	 */
+	public static String selectMatchedIndex(ProviderContext context, MySqlSelect<?> sql) {
+		Assert.notNull(sql, "查询语句不能为空");
+		Object keys = sql.getParamMap().get(MATCHED_KEYS);
+		if ( !(keys instanceof Collection) || ((Collection<?>) keys).isEmpty() )
+			throw new IllegalArgumentException("请设置匹配值列表");
+		
+		// 数据缓存
+		boolean distinct = sql.getDistinct();
+		String[] fields = sql.getFields();
+		String orderBy = sql.getOrderBy().toString();
+		int offset = sql.getOffset();
+		int limit = sql.getLimit();
+		// 生成判断语句，判断是否存在不需要排序
+		sql.getOrderBy().setLength(0);
+		String existsSql = sql.distinct(false).field("1").limit(-1, -1).toString();
+		// 恢复数据
+		sql.getOrderBy().append(orderBy);
+		sql.distinct(distinct);
+		sql.fields(fields);
+		sql.limit(offset, limit);
+		String keyParam = "#{paramMap." + MATCHED_KEY + "}";
+		if ( !existsSql.contains(keyParam) )
+			throw new IllegalArgumentException("查询语句需要包含匹配值条件");
+		// 每个匹配值一条判断语句
+		StringBuilder returnSql = new StringBuilder();
+		for ( int i=0; i<((Collection<?>) keys).size(); i++ ) {
+			if ( i>0 )
+				returnSql.append(" union all ");
+			returnSql.append("select ").append(i).append(" from dual where exists (")
+					.append(existsSql.replace(keyParam, "#{paramMap." + MATCHED_KEYS + "[" + i + "]}")).append(")");
+		}
+		
+		return "<script>" + returnSql + "</script>";
 	}
 	
 	/**
@@ -61,6 +156,12 @@ public class MySqlSelectSqlProvider implements ProviderMethodResolver {
 		String[] fields = sql.getFields();
 		int offset = sql.getOffset();
 		int limit = sql.getLimit();
+		// 聚合查询统计分组数量
+		if ( sql.isAggregate() ) {
+			String returnSql = "select count(1) from (" + sql.limit(-1, -1).toString() + ") temp";
+			sql.limit(offset, limit);
+			return "<script>" + returnSql + "</script>";
+		}
 		// 生成执行语句
 		String returnSql = sql.distinct(false).field("count(1)").limit(-1, -1).toString();
 		// 恢复数据
@@ -71,6 +172,55 @@ public class MySqlSelectSqlProvider implements ProviderMethodResolver {
 		return "<script>" + returnSql + "</script>";
 	}
 	
+	/**
+	 * 数据数量统计，最多统计到limit条为止：select count(1) from (select 1 from ... limit n) temp
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月17日
+	 * @param context ProviderContext
+	 * @param sql 数据查询语句，limit为统计上限
+	 * @return 
+	 */
+	public static String countCapped(ProviderContext context, MySqlSelect<?> sql) {
+		Assert.notNull(sql, "统计语句不能为空");
+		Assert.isTrue(sql.getLimit()>0, "请设置统计上限");
+		
+		// 数据缓存
+		boolean distinct = sql.getDistinct();
+		String[] fields = sql.getFields();
+		String orderBy = sql.getOrderBy().toString();
+		// 生成执行语句，统计不需要排序
+		sql.getOrderBy().setLength(0);
+		String returnSql = "select count(1) from (" + sql.distinct(false).field("1").toString() + ") temp";
+		// 恢复数据
+		sql.getOrderBy().append(orderBy);
+		sql.distinct(distinct);
+		sql.fields(fields);
+		
+		return "<script>" + returnSql + "</script>";
+	}
+	
+	/**
+	 * 查询执行计划，用于估算数据数量
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月17日
+	 * @param context ProviderContext
+	 * @param sql 数据查询语句
+	 * @return 
+	 */
+	public static String explain(ProviderContext context, MySqlSelect<?> sql) {
+		Assert.notNull(sql, "查询语句不能为空");
+		
+		// 数据缓存
+		int offset = sql.getOffset();
+		int limit = sql.getLimit();
+		// 生成执行语句
+		String returnSql = "explain " + sql.limit(-1, -1).toString();
+		// 恢复数据
+		sql.limit(offset, limit);
+		
+		return "<script>" + returnSql + "</script>";
+	}
+	
 	/**
 	 * 数据列表查询
 	 * @author 林运昌（linyunchang）
@@ -85,4 +235,48 @@ public class MySqlSelectSqlProvider implements ProviderMethodResolver {
 		return "<script>" + sql.toString() + "</script>";
 	}
 	
+	/**
+	 * 聚合查询
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月23日
+	 * @param context ProviderContext
+	 * @param sql 数据查询语句，需要设置分组属性或聚合列
+	 * @return 
+	 */
+	public static String aggregate(ProviderContext context, MySqlSelect<?> sql) {
+		Assert.notNull(sql, "查询语句不能为空");
+		if ( !sql.isAggregate() ) 
+			throw new IllegalArgumentException("请设置分组属性或聚合列");
+		
+		return "<script>" + sql.toString() + "</script>";
+	}
+	
+	/**
+	 * 数据流式查询
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月19日
+	 * @param context ProviderContext
+	 * @param sql 数据查询语句
+	 * @return 
+	 */
+	public static String selectCursor(ProviderContext context, MySqlSelect<?> sql) {
+		Assert.notNull(sql, "查询语句不能为空");
+		
+		return "<script>" + sql.toString() + "</script>";
+	}
+	
+	/**
+	 * 数据游标查询
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月19日
+	 * @param context ProviderContext
+	 * @param sql 数据查询语句
+	 * @return 
+	 */
+	public static String selectCursorFetch(ProviderContext context, MySqlSelect<?> sql) {
+		Assert.notNull(sql, "查询语句不能为空");
+		
+		return "<script>" + sql.toString() + "</script>";
+	}
+	
 }
@@ -4,6 +4,7 @@ import org.apache.ibatis.builder.annotation.ProviderContext;
 import org.apache.ibatis.builder.annotation.ProviderMethodResolver;
 import org.springframework.util.Assert;
 
+import pers.lyc.mybatis.core.sql.mysql.MySqlBatchUpdate;
 import pers.lyc.mybatis.core.sql.mysql.MySqlUpdate;
 
 /**
@@ -27,4 +28,18 @@ public class MySqlUpdateSqlProvider implements ProviderMethodResolver {
 		return "<script>" + sql.toString() + "</script>";
 	}
 	
+	/**
+	 * 数据批量更新
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月6日
+	 * @param context ProviderContext
+	 * @param sql 数据批量更新语句
+	 * @return 
+	 */
+	public static String updateBatch(ProviderContext context, MySqlBatchUpdate<?> sql) {
+		Assert.notNull(sql, "数据批量更新语句不能为空");
+		
+		return "<script>" + sql.toString() + "</script>";
+	}
+	
 }
@@ -0,0 +1,83 @@
+package pers.lyc.mybatis.service;
+
+/**
+ * 自适应批次数量，根据每批次执行耗时计算吞吐量，逐步增大或减小批次数量，使批量操作维持在吞吐量较高的区间
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月1日
+ */
+public class AdaptiveBatchSize {
+	
+	/** 吞吐量下降判定比例，本批次吞吐量低于上一批次的该比例时反向调整 */
+	private static final double DECLINE_RATIO = 0.95;
+	
+	/** 最小批次数量 */
+	private final int minSize;
+	/** 最大批次数量 */
+	private final int maxSize;
+	/** 当前批次数量 */
+	private int size;
+	/** 调整方向（1：增大；-1：减小） */
+	private int direction = 1;
+	/** 上一批次吞吐量（条/毫秒） */
+	private double lastThroughput = -1;
+	
+	/**
+	 * 初始化
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月1日
+	 * @param initSize 初始批次数量
+	 * @param minSize 最小批次数量
+	 * @param maxSize 最大批次数量
+	 */
+	public AdaptiveBatchSize(int initSize, int minSize, int maxSize) {
+		if ( minSize<1 || maxSize<minSize )
+			throw new IllegalArgumentException("批次数量范围不正确");
+		
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.size = Math.max(minSize, Math.min(initSize, maxSize));
+	}
+	
+	/**
+	 * 获取当前批次数量
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月1日
+	 * @return 
+	 */
+	public synchronized int getSize() {
+		return size;
+	}
+	
+	/**
+	 * 反馈批次执行结果，根据吞吐量变化调整批次数量
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月1日
+	 * @param rows 本批次执行数据条数
+	 * @param nanos 本批次执行耗时（纳秒）
+	 */
+	public synchronized void feedback(int rows, long nanos) {
+		// 非完整批次（最后一批或受数据包大小限制的批次）不参与调整
+		if ( rows<size )
+			return;
+		
+		// 计算本批次吞吐量
+		double throughput = rows * 1000000D / Math.max(nanos, 1);
+		// 吞吐量下降则反向调整
+		if ( lastThroughput>0 && throughput<lastThroughput*DECLINE_RATIO )
+			direction = -direction;
+		lastThroughput = throughput;
+		
+		// 增大时每次增加1/4，减小时每次减少1/5
+		int nextSize = direction>0 ? size + Math.max(size/4, 1) : size - Math.max(size/5, 1);
+		// 到达边界后反向调整
+		if ( nextSize>=maxSize ) {
+			nextSize = maxSize;
+			direction = -1;
+		} else if ( nextSize<=minSize ) {
+			nextSize = minSize;
+			direction = 1;
+		}
+		size = nextSize;
+	}
+	
+}
@@ -0,0 +1,389 @@
+package pers.lyc.mybatis.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import org.springframework.util.Assert;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.ReflectUtil;
+import pers.lyc.mybatis.core.cache.ColumnCache;
+import pers.lyc.mybatis.core.cache.TableCache;
+import pers.lyc.mybatis.core.sql.mysql.MySqlBatchUpdate;
+import pers.lyc.mybatis.util.MybatisUtil;
+import pers.lyc.mybatis.util.TableCacheUtil;
+
+/**
+ * 计数字段合并累加器，在内存中按（主键，属性）累加增量（LongAdder，并发累加无锁竞争），
+ * 由后台线程定时合并成批量累加语句更新到数据库，避免高并发下对少量热点行逐条更新造成的行锁排队。<br>
+ * 增量在刷新前只保存在内存中，进程退出前需要调用close刷新剩余增量。暂时性失败（数据库不可用等）时增量合并到下一次刷新；
+ * 其他失败时拆分批次找出失败的主键，其余主键正常更新，同一主键连续失败MAX_FAILURES次后放弃其增量并交给失败处理。
+ * 主键对应的数据不存在时不更新，增量丢弃。service需要使用spring容器中的对象（代理对象）
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月14日
+ */
+public class MySqlCounter<T> implements AutoCloseable {
+	
+	/** 同一主键连续刷新失败的最大次数，达到后放弃该主键的增量 */
+	private static final int MAX_FAILURES = 3;
+	
+	/** 数据表对应的service */
+	private final MySqlService<T> service;
+	/** 表实体类型 */
+	private final Class<T> tableCls;
+	/** 主键属性 */
+	private final String primaryKey;
+	/** 主键属性类型 */
+	private final Class<?> primaryKeyType;
+	/** 可以累加的属性及其类型 */
+	private final Map<String, String> fieldTypeMap = new HashMap<>();
+	/** 刷新失败处理 */
+	private final BiConsumer<Map<Object, Map<String, Long>>, RuntimeException> errorHandler;
+	/** 定时刷新线程 */
+	private final ScheduledExecutorService scheduler;
+	/** 各主键连续刷新失败的次数，只在刷新时访问 */
+	private final Map<Object, Integer> failureCountMap = new HashMap<>();
+	/** 当前接收增量的批次 */
+	private volatile Generation current = new Generation();
+	/** 是否已关闭 */
+	private volatile boolean closed;
+	
+	/**
+	 * 初始化并启动定时刷新
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月14日
+	 * @param service 数据表对应的service（spring容器中的对象）
+	 * @param tableCls 表实体类型
+	 * @param flushIntervalMillis 刷新间隔（毫秒）
+	 * @param errorHandler 刷新失败处理，参数为放弃的增量（主键 -&gt; 属性 -&gt; 增量）及失败原因；
+	 * 定时刷新暂时性失败时增量已保留到下一次刷新，放弃的增量为空
+	 */
+	public MySqlCounter(MySqlService<T> service, Class<T> tableCls, long flushIntervalMillis, BiConsumer<Map<Object, Map<String, Long>>, RuntimeException> errorHandler) {
+		Assert.notNull(service, "service不能为空");
+		Assert.notNull(tableCls, "表实体类型不能为空");
+		Assert.isTrue(flushIntervalMillis>0, "刷新间隔需要大于0");
+		Assert.notNull(errorHandler, "刷新失败处理不能为空");
+		
+		this.service = service;
+		this.tableCls = tableCls;
+		this.errorHandler = errorHandler;
+		// 获取表缓存信息
+		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+		this.primaryKey = tableCache.getPrimaryKey();
+		this.primaryKeyType = tableCache.getColumnCacheMap().get(primaryKey).getField().getType();
+		// 数值类型的属性可以累加，主键、版本号除外
+		for ( ColumnCache columnCache : tableCache.getColumnCacheMap().values() ) {
+			String fieldName = columnCache.getFieldName();
+			if ( fieldName.equals(primaryKey) || fieldName.equals(tableCache.getVersionKey()) )
+				continue;
+			String fieldType = columnCache.getFieldType();
+			if ( "Integer".equals(fieldType) || "Long".equals(fieldType) || "BigDecimal".equals(fieldType) )
+				fieldTypeMap.put(fieldName, fieldType);
+		}
+		// 启动定时刷新
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(MybatisUtil.newDaemonThreadFactory("mysql-counter-" + tableCls.getSimpleName()));
+		this.scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				flush();
+			} catch (RuntimeException e) {
+				// 失败处理抛出异常时忽略，避免定时刷新停止
+				try {
+					errorHandler.accept(Collections.emptyMap(), e);
+				} catch (RuntimeException he) {
+					// 继续下一次刷新
+				}
+			}
+		}, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * 属性值加1
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月14日
+	 * @param primaryKey 主键
+	 * @param field 属性
+	 */
+	public void increment(Object primaryKey, String field) {
+		add(primaryKey, field, 1);
+	}
+	
+	/**
+	 * 累加属性值
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月14日
+	 * @param primaryKey 主键
+	 * @param field 属性，只能是Integer、Long、BigDecimal类型
+	 * @param delta 增量，可以为负数
+	 * @throws IllegalStateException 累加器已关闭
+	 */
+	public void add(Object primaryKey, String field, long delta) {
+		Assert.notNull(primaryKey, "主键不能为空");
+		if ( !fieldTypeMap.containsKey(field) )
+			throw new IllegalArgumentException("属性"+field+"不存在或不是可以累加的数值类型");
+		if ( closed )
+			throw new IllegalStateException("计数累加器已关闭");
+		if ( delta==0 )
+			return;
+		
+		// 统一主键类型，避免同一行数据因主键类型不同被拆成多条
+		accumulate(Convert.convert(primaryKeyType, primaryKey), field, delta, true);
+	}
+	
+	/**
+	 * 立即将当前累加的增量更新到数据库，失败的主键见类说明
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月14日
+	 * @return 更新的数据条数
+	 * @throws RuntimeException 暂时性失败，未更新的增量合并到下一次刷新
+	 */
+	public synchronized int flush() {
+		// 待更新的增量，更新成功或放弃后移除，剩余的合并到下一次刷新
+		Map<Object, Map<String, Long>> pendingMap = drain();
+		if ( pendingMap.isEmpty() )
+			return 0;
+		
+		// 所有主键使用相同的累加属性，未累加的属性增量为0
+		Set<String> fieldSet = new LinkedHashSet<>();
+		for ( Map<String, Long> deltaMap : pendingMap.values() ) {
+			fieldSet.addAll(deltaMap.keySet());
+		}
+		Map<Object, RuntimeException> droppedMap = new LinkedHashMap<>();
+		Map<Object, Map<String, Long>> droppedDeltaMap = new LinkedHashMap<>();
+		int count;
+		try {
+			count = update(new ArrayList<>(pendingMap.keySet()), fieldSet.toArray(new String[0]), pendingMap, droppedMap, droppedDeltaMap);
+		} finally {
+			// 未更新的增量合并到下一次刷新，不丢失
+			for ( Map.Entry<Object, Map<String, Long>> entry : pendingMap.entrySet() ) {
+				for ( Map.Entry<String, Long> deltaEntry : entry.getValue().entrySet() ) {
+					accumulate(entry.getKey(), deltaEntry.getKey(), deltaEntry.getValue(), false);
+				}
+			}
+		}
+		// 放弃的增量交给失败处理
+		for ( Map.Entry<Object, RuntimeException> entry : droppedMap.entrySet() ) {
+			errorHandler.accept(Collections.singletonMap(entry.getKey(), droppedDeltaMap.get(entry.getKey())), entry.getValue());
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * 停止定时刷新并刷新剩余的增量，之后不能再累加；刷新失败未能更新的增量交给失败处理
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月14日
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		scheduler.shutdown();
+		try {
+			scheduler.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized ( this ) {
+			RuntimeException error = null;
+			try {
+				flush();
+			} catch (RuntimeException e) {
+				error = e;
+			}
+			// 关闭后不再刷新，保留到下一次刷新的增量不再重试
+			Map<Object, Map<String, Long>> remainingMap = drain();
+			if ( !remainingMap.isEmpty() )
+				errorHandler.accept(remainingMap, error!=null ? error : new IllegalStateException("计数累加器已关闭，增量未能更新"));
+		}
+	}
+	
+	/**
+	 * 累加增量到当前批次
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月14日
+	 * @param primaryKey 主键（已转换为主键属性类型）
+	 * @param field 属性
+	 * @param delta 增量
+	 * @param checkOpen 是否检查已关闭，刷新失败重新累加时不检查
+	 */
+	private void accumulate(Object primaryKey, String field, long delta, boolean checkOpen) {
+		CounterKey key = new CounterKey(primaryKey, field);
+		while ( true ) {
+			// 先登记进入再读取批次，刷新时可以等待已进入旧批次的累加完成
+			Generation generation = current;
+			generation.entered.increment();
+			try {
+				// 批次已切换则累加到新批次
+				if ( generation!=current )
+					continue;
+				// 进入批次后再检查关闭，关闭时的最后一次刷新一定能等到本次累加
+				if ( checkOpen && closed )
+					throw new IllegalStateException("计数累加器已关闭");
+				generation.deltaMap.computeIfAbsent(key, k -> new LongAdder()).add(delta);
+				return;
+			} finally {
+				generation.exited.increment();
+			}
+		}
+	}
+	
+	/**
+	 * 切换批次并取出旧批次的增量，按主键合并，调用方需要持有本对象的锁
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月14日
+	 * @return 增量（主键 -&gt; 属性 -&gt; 增量），不含为0的增量
+	 */
+	private Map<Object, Map<String, Long>> drain() {
+		// 切换批次，等待已进入旧批次的累加完成（先读退出数再读进入数，两者相等时没有未完成的累加）
+		Generation generation = current;
+		current = new Generation();
+		while ( generation.exited.sum()!=generation.entered.sum() ) {
+			Thread.yield();
+		}
+		// 按主键合并增量
+		Map<Object, Map<String, Long>> primaryKeyMap = new LinkedHashMap<>();
+		for ( Map.Entry<CounterKey, LongAdder> entry : generation.deltaMap.entrySet() ) {
+			long delta = entry.getValue().sum();
+			if ( delta==0 )
+				continue;
+			CounterKey key = entry.getKey();
+			primaryKeyMap.computeIfAbsent(key.primaryKey, k -> new HashMap<>()).put(key.field, delta);
+		}
+		
+		return primaryKeyMap;
+	}
+	
+	/**
+	 * 批量累加一组主键的增量，非暂时性失败时拆成两半分别更新，直到找出失败的单个主键；
+	 * 成功的主键从待更新增量中移除，失败达到MAX_FAILURES次的主键移到放弃的增量中
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月14日
+	 * @param keyList 本组主键
+	 * @param fields 累加属性
+	 * @param pendingMap 待更新的增量
+	 * @param droppedMap 放弃的主键及失败原因
+	 * @param droppedDeltaMap 放弃的增量
+	 * @return 更新的数据条数
+	 * @throws RuntimeException 暂时性失败
+	 */
+	private int update(List<Object> keyList, String[] fields, Map<Object, Map<String, Long>> pendingMap, Map<Object, RuntimeException> droppedMap, Map<Object, Map<String, Long>> droppedDeltaMap) {
+		try {
+			// 每个主键一个数据对象（增量超出属性类型范围时抛出异常）
+			List<T> dataList = new ArrayList<>(keyList.size());
+			for ( Object key : keyList ) {
+				T data = ReflectUtil.newInstance(tableCls);
+				ReflectUtil.setFieldValue(data, primaryKey, key);
+				for ( String field : fields ) {
+					ReflectUtil.setFieldValue(data, field, toFieldValue(field, pendingMap.get(key).getOrDefault(field, 0L)));
+				}
+				dataList.add(data);
+			}
+			// 批量累加
+			int count = service.updateBatch(new MySqlBatchUpdate<T>(tableCls).increment(fields).dataList(dataList));
+			for ( Object key : keyList ) {
+				pendingMap.remove(key);
+				failureCountMap.remove(key);
+			}
+			return count;
+		} catch (RuntimeException e) {
+			// 暂时性失败与数据无关，不拆分
+			if ( MySqlService.isTransient(e) )
+				throw e;
+			// 拆分找出失败的主键
+			if ( keyList.size()>1 ) {
+				int half = keyList.size() / 2;
+				return update(keyList.subList(0, half), fields, pendingMap, droppedMap, droppedDeltaMap)
+						+ update(keyList.subList(half, keyList.size()), fields, pendingMap, droppedMap, droppedDeltaMap);
+			}
+			// 失败次数未达到上限时保留到下一次刷新
+			Object key = keyList.get(0);
+			if ( failureCountMap.merge(key, 1, Integer::sum)>=MAX_FAILURES ) {
+				failureCountMap.remove(key);
+				droppedDeltaMap.put(key, pendingMap.remove(key));
+				droppedMap.put(key, e);
+			}
+			return 0;
+		}
+	}
+	
+	/**
+	 * 将增量转换为属性类型
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月14日
+	 * @param field 属性
+	 * @param delta 增量
+	 * @return 
+	 */
+	private Object toFieldValue(String field, long delta) {
+		switch ( fieldTypeMap.get(field) ) {
+			case "Integer": return Math.toIntExact(delta);
+			case "BigDecimal": return BigDecimal.valueOf(delta);
+			default: return delta;
+		}
+	}
+	
+	/**
+	 * 一个刷新批次的增量，以及进入、退出该批次的累加次数
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月14日
+	 */
+	private static class Generation {
+		
+		/** 增量（主键、属性 -&gt; 增量） */
+		private final Map<CounterKey, LongAdder> deltaMap = new ConcurrentHashMap<>();
+		/** 进入该批次的累加次数 */
+		private final LongAdder entered = new LongAdder();
+		/** 退出该批次的累加次数 */
+		private final LongAdder exited = new LongAdder();
+		
+	}
+	
+	/**
+	 * 增量的key（主键、属性）
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月14日
+	 */
+	private static class CounterKey {
+		
+		/** 主键 */
+		private final Object primaryKey;
+		/** 属性 */
+		private final String field;
+		
+		private CounterKey(Object primaryKey, String field) {
+			this.primaryKey = primaryKey;
+			this.field = field;
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * primaryKey.hashCode() + field.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if ( this==obj )
+				return true;
+			if ( !(obj instanceof CounterKey) )
+				return false;
+			
+			CounterKey other = (CounterKey) obj;
+			return Objects.equals(primaryKey, other.primaryKey) && field.equals(other.field);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,523 @@
+package pers.lyc.mybatis.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.ReflectUtil;
+import pers.lyc.mybatis.core.cache.ColumnCache;
+import pers.lyc.mybatis.core.pojo.ImportResult;
+import pers.lyc.mybatis.core.sql.mysql.MySqlInsert;
+import pers.lyc.mybatis.util.MybatisUtil;
+import pers.lyc.mybatis.util.TableCacheUtil;
+
+/**
+ * CSV文件导入，按读取、解析校验、新增三个阶段流水线执行，阶段之间使用有界队列（背压）：<br>
+ * 1. 读取：单线程按内存映射读取文件，在换行符处切分成数据块（不复制数据）；<br>
+ * 2. 解析校验：parallelism个线程并发解码数据块、拆分字段、按字段类型转换成数据对象，设置默认值后校验必填字段和字符串长度；<br>
+ * 3. 新增：调用线程按batchSize合并数据批量新增，每批在独立事务中新增并提交。<br>
+ * 解析校验失败的数据行、新增失败的批次不中断导入，按阶段计入失败数量。字段值不能包含换行符；空字段为null。
+ * service需要使用spring容器中的对象（代理对象）；不能在事务中调用，否则失败的批次会把调用方事务标记为只能回滚
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月22日
+ */
+public class MySqlImport<T> {
+	
+	/** 每次内存映射的最大字节数 */
+	private static final int MAP_SIZE = 256 * 1024 * 1024;
+	/** 数据块大小（字节），实际在换行符处切分 */
+	private static final int BLOCK_SIZE = 1024 * 1024;
+	/** 最多保存的失败信息数量 */
+	private static final int MAX_ERROR_MESSAGES = 1000;
+	
+	/** 数据表对应的service */
+	private final MySqlService<T> service;
+	/** 数据新增语句，用于指定表实体类型、自定义表名及新增方式 */
+	private final MySqlInsert<T> sql;
+	/** 表实体类型 */
+	private final Class<T> tableCls;
+	/** 文件各列对应的属性，为空时使用文件表头 */
+	private final String[] fields;
+	/** 解析校验线程数 */
+	private final int parallelism;
+	/** 每批新增数据数量 */
+	private final int batchSize;
+	/** 阶段之间的队列容量 */
+	private final int queueCapacity;
+	
+	/**
+	 * 初始化
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月22日
+	 * @param service 数据表对应的service（spring容器中的对象）
+	 * @param sql 数据新增语句，用于指定表实体类型、自定义表名及新增方式（ignore、on duplicate key update）
+	 * @param fields 文件各列对应的属性，为空时使用文件表头，元素为空表示忽略该列
+	 * @param parallelism 解析校验线程数
+	 * @param batchSize 每批新增数据数量
+	 * @param queueCapacity 阶段之间的队列容量（数据块数量）
+	 */
+	@SuppressWarnings("unchecked")
+	public MySqlImport(MySqlService<T> service, MySqlInsert<T> sql, String[] fields, int parallelism, int batchSize, int queueCapacity) {
+		Assert.notNull(service, "service不能为空");
+		Assert.notNull(sql, "新增语句不能为空");
+		Assert.isTrue(parallelism>0, "解析校验线程数需要大于0");
+		Assert.isTrue(batchSize>0, "每批新增数据数量需要大于0");
+		Assert.isTrue(queueCapacity>0, "队列容量需要大于0");
+		
+		this.service = service;
+		this.sql = sql;
+		this.tableCls = (Class<T>) sql.getTableCls();
+		this.fields = fields;
+		this.parallelism = parallelism;
+		this.batchSize = batchSize;
+		this.queueCapacity = queueCapacity;
+	}
+	
+	/**
+	 * 导入文件
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月22日
+	 * @param file 文件路径（UTF-8编码）
+	 * @param header 第一行是否为表头
+	 * @return 各阶段统计结果
+	 * @throws IOException
+	 */
+	public ImportResult execute(Path file, boolean header) throws IOException {
+		Assert.notNull(file, "文件路径不能为空");
+		Assert.isTrue(header || fields!=null, "未设置文件各列对应的属性时第一行需要为表头");
+		Assert.isTrue(!TransactionSynchronizationManager.isActualTransactionActive(), "文件导入每批单独提交，不能在事务中调用");
+		
+		long startTime = System.currentTimeMillis();
+		ImportResult result = new ImportResult();
+		List<String> errors = Collections.synchronizedList(new ArrayList<>());
+		try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ) ) {
+			// 读取表头，确定各列对应的字段
+			long position = 0;
+			String[] columnFields = fields;
+			if ( header ) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), MAP_SIZE));
+				int end = indexOf(buffer, 0, buffer.limit());
+				ByteBuffer headerBuffer = buffer.duplicate();
+				headerBuffer.limit(end<0 ? buffer.limit() : end);
+				if ( columnFields==null )
+					columnFields = splitLine(StandardCharsets.UTF_8.decode(headerBuffer).toString().replace("\r", "").replace("\uFEFF", "")).toArray(new String[0]);
+				position = end<0 ? buffer.limit() : end+1;
+			}
+			ColumnCache[] columnCaches = toColumnCaches(columnFields);
+			// 阶段之间的队列，结束标记为空数据块、空数据列表
+			BlockingQueue<Block> blockQueue = new ArrayBlockingQueue<>(queueCapacity);
+			BlockingQueue<List<T>> dataQueue = new ArrayBlockingQueue<>(queueCapacity);
+			Block endBlock = new Block(null, 0);
+			List<T> endList = new ArrayList<>();
+			// 各阶段计数
+			AtomicLong readBytes = new AtomicLong();
+			AtomicLong readLines = new AtomicLong();
+			AtomicLong parsedRows = new AtomicLong();
+			AtomicLong parseErrors = new AtomicLong();
+			AtomicLong parseEndTime = new AtomicLong();
+			// 创建线程池，读取线程加上解析校验线程
+			ExecutorService executor = Executors.newFixedThreadPool(parallelism+1, MybatisUtil.newDaemonThreadFactory("mysql-import"));
+			try {
+				// 读取阶段
+				long startPosition = position;
+				long startLine = header ? 2 : 1;
+				Future<?> readFuture = executor.submit(() -> {
+					try {
+						read(channel, startPosition, startLine, blockQueue, readBytes, readLines);
+					} finally {
+						result.setReadMillis(System.currentTimeMillis()-startTime);
+						// 每个解析校验线程一个结束标记
+						for ( int i=0; i<parallelism; i++ ) {
+							blockQueue.put(endBlock);
+						}
+					}
+					return null;
+				});
+				// 解析校验阶段
+				AtomicInteger runningCount = new AtomicInteger(parallelism);
+				for ( int i=0; i<parallelism; i++ ) {
+					executor.submit(() -> {
+						try {
+							Block block;
+							while ( (block = blockQueue.take())!=endBlock ) {
+								List<T> dataList;
+								try {
+									dataList = parse(block, columnCaches, parsedRows, parseErrors, errors);
+								} catch (RuntimeException e) {
+									// 数据块解析异常时继续处理后续数据块，避免读取线程阻塞
+									addError(errors, "第" + block.lineNumber + "行开始的数据块解析失败：" + e.getMessage());
+									continue;
+								}
+								if ( !dataList.isEmpty() )
+									dataQueue.put(dataList);
+							}
+						} finally {
+							if ( runningCount.decrementAndGet()==0 )
+								parseEndTime.set(System.currentTimeMillis());
+							dataQueue.put(endList);
+						}
+						return null;
+					});
+				}
+				// 新增阶段
+				List<T> batch = new ArrayList<>(batchSize);
+				int endCount = 0;
+				while ( endCount<parallelism ) {
+					List<T> dataList = dataQueue.take();
+					if ( dataList==endList ) {
+						endCount++;
+						continue;
+					}
+					batch.addAll(dataList);
+					while ( batch.size()>=batchSize ) {
+						List<T> subList = batch.subList(0, batchSize);
+						insert(new ArrayList<>(subList), result, errors);
+						subList.clear();
+					}
+				}
+				if ( !batch.isEmpty() )
+					insert(batch, result, errors);
+				result.setInsertMillis(System.currentTimeMillis()-startTime);
+				// 读取失败则抛出异常
+				try {
+					readFuture.get();
+				} catch (ExecutionException e) {
+					if ( e.getCause() instanceof IOException )
+						throw (IOException) e.getCause();
+					throw new IllegalStateException("读取文件失败", e.getCause());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("文件导入被中断", e);
+			} finally {
+				// 关闭线程池，失败时中断其他阶段
+				executor.shutdownNow();
+			}
+			// 汇总统计结果
+			result.setReadBytes(readBytes.get());
+			result.setReadLines(readLines.get());
+			result.setParsedRows(parsedRows.get());
+			result.setParseErrors(parseErrors.get());
+			result.setParseMillis(parseEndTime.get()-startTime);
+			result.setErrors(new ArrayList<>(errors));
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * 读取阶段：按内存映射读取文件，在换行符处切分成数据块放入队列
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月22日
+	 * @param channel 文件通道
+	 * @param position 开始位置
+	 * @param lineNumber 开始行号
+	 * @param blockQueue 数据块队列
+	 * @param readBytes 读取的字节数
+	 * @param readLines 读取的数据行数
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void read(FileChannel channel, long position, long lineNumber, BlockingQueue<Block> blockQueue, AtomicLong readBytes, AtomicLong readLines) throws IOException, InterruptedException {
+		long size = channel.size();
+		while ( position<size ) {
+			// 映射一段文件
+			int mapSize = (int) Math.min(size-position, MAP_SIZE);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, mapSize);
+			boolean last = position+mapSize==size;
+			int start = 0;
+			while ( start<mapSize ) {
+				// 在数据块大小附近的换行符处切分，找不到时向后查找
+				int end = lastIndexOf(buffer, start, Math.min(start+BLOCK_SIZE, mapSize));
+				if ( end<0 )
+					end = indexOf(buffer, start, mapSize);
+				if ( end<0 ) {
+					// 映射的末尾是不完整的行，从该行开始重新映射
+					if ( !last )
+						break;
+					end = mapSize-1;
+				}
+				// 切分数据块（不复制数据）
+				ByteBuffer slice = buffer.duplicate();
+				slice.position(start).limit(end+1);
+				Block block = new Block(slice.slice(), lineNumber);
+				int lines = countLines(block.buffer);
+				lineNumber += lines;
+				readBytes.addAndGet(end+1-start);
+				readLines.addAndGet(lines);
+				blockQueue.put(block);
+				start = end+1;
+			}
+			if ( start==0 )
+				throw new IllegalStateException("第" + lineNumber + "行数据超过" + MAP_SIZE + "字节");
+			position += start;
+		}
+	}
+	
+	/**
+	 * 解析校验阶段：解码数据块，逐行转换成数据对象，设置默认值并校验
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月22日
+	 * @param block 数据块
+	 * @param columnCaches 各列对应的字段缓存信息（为空表示忽略该列）
+	 * @param parsedRows 解析校验通过的数据条数
+	 * @param parseErrors 解析校验失败的数据条数
+	 * @param errors 失败信息
+	 * @return 
+	 */
+	private List<T> parse(Block block, ColumnCache[] columnCaches, AtomicLong parsedRows, AtomicLong parseErrors, List<String> errors) {
+		List<T> dataList = new ArrayList<>();
+		CharBuffer chars = StandardCharsets.UTF_8.decode(block.buffer);
+		long lineNumber = block.lineNumber;
+		int start = 0;
+		for ( int i=0; i<=chars.length(); i++ ) {
+			if ( i<chars.length() && chars.charAt(i)!='\n' )
+				continue;
+			// 截取一行，去掉回车符，跳过空行
+			int end = i>start && chars.charAt(i-1)=='\r' ? i-1 : i;
+			if ( end>start ) {
+				try {
+					dataList.add(toData(chars.subSequence(start, end), columnCaches));
+					parsedRows.incrementAndGet();
+				} catch (RuntimeException e) {
+					parseErrors.incrementAndGet();
+					addError(errors, "第" + lineNumber + "行：" + e.getMessage());
+				}
+			}
+			lineNumber++;
+			start = i+1;
+		}
+		
+		return dataList;
+	}
+	
+	/**
+	 * 将一行数据转换成数据对象，设置默认值并校验必填字段和字符串长度
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月22日
+	 * @param line 数据行
+	 * @param columnCaches 各列对应的字段缓存信息（为空表示忽略该列）
+	 * @return 
+	 */
+	private T toData(CharSequence line, ColumnCache[] columnCaches) {
+		List<String> values = splitLine(line);
+		if ( values.size()!=columnCaches.length )
+			throw new IllegalArgumentException("字段数量" + values.size() + "与列数量" + columnCaches.length + "不一致");
+		
+		// 按字段类型转换
+		T data = ReflectUtil.newInstance(tableCls);
+		for ( int i=0; i<columnCaches.length; i++ ) {
+			ColumnCache columnCache = columnCaches[i];
+			String value = values.get(i);
+			if ( columnCache==null || value==null )
+				continue;
+			Object fieldValue;
+			try {
+				fieldValue = Convert.convert(columnCache.getField().getType(), value);
+			} catch (RuntimeException e) {
+				fieldValue = null;
+			}
+			if ( fieldValue==null )
+				throw new IllegalArgumentException(columnCache.getCnName() + "（" + columnCache.getFieldName() + "）值" + value + "不是" + columnCache.getFieldType() + "类型");
+			ReflectUtil.setFieldValue(data, columnCache.getField(), fieldValue);
+		}
+		// 设置默认值
+		sql.prepare(data);
+		// 校验必填字段和字符串长度
+		for ( ColumnCache columnCache : TableCacheUtil.getTableCache(tableCls).getColumnCacheMap().values() ) {
+			Object fieldValue = ReflectUtil.getFieldValue(data, columnCache.getField());
+			if ( fieldValue==null ) {
+				if ( columnCache.getIsRequired() && !columnCache.isAutoIncrement() )
+					throw new IllegalArgumentException(columnCache.getCnName() + "（" + columnCache.getFieldName() + "）不能为空");
+			} else if ( fieldValue instanceof String && columnCache.getLength()!=null && columnCache.getLength()>0 && ((String) fieldValue).length()>columnCache.getLength() ) {
+				throw new IllegalArgumentException(columnCache.getCnName() + "（" + columnCache.getFieldName() + "）长度不能超过" + columnCache.getLength());
+			}
+		}
+		
+		return data;
+	}
+	
+	/**
+	 * 新增阶段：批量新增一批数据（没有外层事务，每批在service的独立事务中提交），失败时计入失败数量
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月22日
+	 * @param dataList 本批数据
+	 * @param result 导入结果
+	 * @param errors 失败信息
+	 */
+	private void insert(List<T> dataList, ImportResult result, List<String> errors) {
+		try {
+			service.insert(sql.copy(dataList));
+			result.setInsertedRows(result.getInsertedRows()+dataList.size());
+		} catch (RuntimeException e) {
+			result.setInsertErrors(result.getInsertErrors()+dataList.size());
+			addError(errors, "批量新增" + dataList.size() + "条数据失败：" + e.getMessage());
+		}
+	}
+	
+	/**
+	 * 获取各列对应的字段缓存信息，属性为空的列忽略
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月22日
+	 * @param columnFields 各列对应的属性
+	 * @return 
+	 */
+	private ColumnCache[] toColumnCaches(String[] columnFields) {
+		Map<String, ColumnCache> columnCacheMap = TableCacheUtil.getTableCache(tableCls).getColumnCacheMap();
+		ColumnCache[] columnCaches = new ColumnCache[columnFields.length];
+		for ( int i=0; i<columnFields.length; i++ ) {
+			String field = columnFields[i]==null ? "" : columnFields[i].trim();
+			if ( field.isEmpty() )
+				continue;
+			if ( !columnCacheMap.containsKey(field) )
+				throw new IllegalArgumentException("属性" + field + "不存在");
+			columnCaches[i] = columnCacheMap.get(field);
+		}
+		
+		return columnCaches;
+	}
+	
+	/**
+	 * 保存失败信息，超过最大数量后不再保存
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月22日
+	 * @param errors 失败信息
+	 * @param error 本条失败信息
+	 */
+	private static void addError(List<String> errors, String error) {
+		if ( errors.size()<MAX_ERROR_MESSAGES )
+			errors.add(error);
+	}
+	
+	/**
+	 * 按逗号拆分一行CSV数据，支持双引号包含的字段（两个双引号表示一个双引号），空字段为null
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月22日
+	 * @param line 数据行
+	 * @return 
+	 */
+	static List<String> splitLine(CharSequence line) {
+		List<String> values = new ArrayList<>();
+		StringBuilder value = new StringBuilder();
+		boolean quoted = false;
+		for ( int i=0; i<line.length(); i++ ) {
+			char c = line.charAt(i);
+			if ( quoted ) {
+				if ( c!='"' ) {
+					value.append(c);
+				} else if ( i+1<line.length() && line.charAt(i+1)=='"' ) {
+					value.append(c);
+					i++;
+				} else {
+					quoted = false;
+				}
+			} else if ( c=='"' ) {
+				quoted = true;
+			} else if ( c==',' ) {
+				values.add(value.length()==0 ? null : value.toString());
+				value.setLength(0);
+			} else {
+				value.append(c);
+			}
+		}
+		if ( quoted )
+			throw new IllegalArgumentException("双引号不匹配");
+		values.add(value.length()==0 ? null : value.toString());
+		
+		return values;
+	}
+	
+	/**
+	 * 查找换行符的位置
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月22日
+	 * @param buffer 缓冲区
+	 * @param from 开始位置（包含）
+	 * @param to 结束位置（不包含）
+	 * @return 不存在时返回-1
+	 */
+	private static int indexOf(ByteBuffer buffer, int from, int to) {
+		for ( int i=from; i<to; i++ ) {
+			if ( buffer.get(i)=='\n' )
+				return i;
+		}
+		return -1;
+	}
+	
+	/**
+	 * 从后向前查找换行符的位置
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月22日
+	 * @param buffer 缓冲区
+	 * @param from 开始位置（包含）
+	 * @param to 结束位置（不包含）
+	 * @return 不存在时返回-1
+	 */
+	private static int lastIndexOf(ByteBuffer buffer, int from, int to) {
+		for ( int i=to-1; i>=from; i-- ) {
+			if ( buffer.get(i)=='\n' )
+				return i;
+		}
+		return -1;
+	}
+	
+	/**
+	 * 统计数据块中的行数（最后一行可以没有换行符）
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月22日
+	 * @param buffer 数据块
+	 * @return 
+	 */
+	private static int countLines(ByteBuffer buffer) {
+		int count = 0;
+		for ( int i=0; i<buffer.limit(); i++ ) {
+			if ( buffer.get(i)=='\n' )
+				count++;
+		}
+		if ( buffer.limit()>0 && buffer.get(buffer.limit()-1)!='\n' )
+			count++;
+		
+		return count;
+	}
+	
+	/**
+	 * 数据块及其第一行的行号
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月22日
+	 */
+	private static class Block {
+		
+		/** 数据块（内存映射的一段，不复制数据） */
+		private final ByteBuffer buffer;
+		/** 第一行的行号 */
+		private final long lineNumber;
+		
+		private Block(ByteBuffer buffer, long lineNumber) {
+			this.buffer = buffer;
+			this.lineNumber = lineNumber;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,208 @@
+package pers.lyc.mybatis.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.Assert;
+
+import pers.lyc.mybatis.core.sql.mysql.MySqlInsert;
+import pers.lyc.mybatis.util.MybatisUtil;
+
+/**
+ * 单条数据新增合并器（group commit），收集多个并发调用方提交的单条数据，等待不超过maxWaitMicros微秒或达到maxRows条后，
+ * 合并成一条多条数据新增语句在一个事务中执行，以少量延迟换取更高的吞吐量。
+ * 合并新增失败时逐条重新新增，每个调用方得到自己那条数据的结果。待新增数据队列有界，队列已满（数据库处理不过来）时拒绝提交。<br>
+ * service需要使用spring容器中的对象（代理对象），保证新增在事务中执行；不再使用时需要调用close
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月12日
+ */
+public class MySqlInsertCoalescer<T> implements AutoCloseable {
+	
+	/** 队列为空时的等待时间（毫秒） */
+	private static final long IDLE_WAIT = 100;
+	
+	/** 数据表对应的service */
+	private final MySqlService<T> service;
+	/** 表实体类型 */
+	private final Class<T> tableCls;
+	/** 每批最长等待时间（纳秒） */
+	private final long maxWaitNanos;
+	/** 每批最多新增数据数量 */
+	private final int maxRows;
+	/** 待新增数据队列 */
+	private final BlockingQueue<InsertRequest<T>> queue;
+	/** 新增线程 */
+	private final Thread flushThread;
+	/** 是否已关闭 */
+	private volatile boolean closed;
+	
+	/**
+	 * 初始化并启动新增线程
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月12日
+	 * @param service 数据表对应的service（spring容器中的对象）
+	 * @param tableCls 表实体类型
+	 * @param maxWaitMicros 每批最长等待时间（微秒），从收到该批第一条数据开始计算
+	 * @param maxRows 每批最多新增数据数量
+	 * @param capacity 待新增数据队列容量，不包含正在新增的一批数据
+	 */
+	public MySqlInsertCoalescer(MySqlService<T> service, Class<T> tableCls, long maxWaitMicros, int maxRows, int capacity) {
+		Assert.notNull(service, "service不能为空");
+		Assert.notNull(tableCls, "表实体类型不能为空");
+		Assert.isTrue(maxWaitMicros>=0, "最长等待时间不能小于0");
+		Assert.isTrue(maxRows>0, "每批最多新增数据数量需要大于0");
+		Assert.isTrue(capacity>0, "队列容量需要大于0");
+		
+		this.service = service;
+		this.tableCls = tableCls;
+		this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+		this.maxRows = maxRows;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		// 启动新增线程
+		this.flushThread = MybatisUtil.newDaemonThreadFactory("mysql-insert-coalescer-" + tableCls.getSimpleName()).newThread(this::run);
+		this.flushThread.start();
+	}
+	
+	/**
+	 * 提交一条待新增数据
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月12日
+	 * @param data 数据对象
+	 * @return 新增完成后返回数据对象，新增失败时异常结束
+	 * @throws RejectedExecutionException 队列已满
+	 */
+	public CompletableFuture<T> submit(T data) {
+		Assert.notNull(data, "数据不能为空");
+		if ( closed )
+			throw new IllegalStateException("新增合并器已关闭");
+		
+		InsertRequest<T> request = new InsertRequest<>(data);
+		if ( !queue.offer(request) )
+			throw new RejectedExecutionException("新增合并器队列已满");
+		// 入队期间合并器被关闭时，新增线程和close都可能已不再处理队列，由调用方自己移出并失败结束；移出失败说明已被取走处理
+		if ( closed && queue.remove(request) )
+			request.future.completeExceptionally(new IllegalStateException("新增合并器已关闭"));
+		
+		return request.future;
+	}
+	
+	/**
+	 * 关闭合并器，等待已提交的数据新增完成
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月12日
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			flushThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// 关闭过程中提交的数据不再新增
+		InsertRequest<T> request;
+		while ( (request = queue.poll())!=null ) {
+			request.future.completeExceptionally(new IllegalStateException("新增合并器已关闭"));
+		}
+	}
+	
+	/**
+	 * 新增线程：收集一批数据后合并新增
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月12日
+	 */
+	private void run() {
+		List<InsertRequest<T>> batch = new ArrayList<>(maxRows);
+		while ( !closed || !queue.isEmpty() ) {
+			try {
+				// 等待该批第一条数据
+				InsertRequest<T> first = queue.poll(IDLE_WAIT, TimeUnit.MILLISECONDS);
+				if ( first==null )
+					continue;
+				batch.add(first);
+				// 在最长等待时间内继续收集数据，达到最大数量则立即新增
+				long deadline = System.nanoTime() + maxWaitNanos;
+				while ( batch.size()<maxRows ) {
+					queue.drainTo(batch, maxRows-batch.size());
+					if ( batch.size()>=maxRows )
+						break;
+					long remaining = deadline - System.nanoTime();
+					if ( remaining<=0 )
+						break;
+					InsertRequest<T> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if ( next==null )
+						break;
+					batch.add(next);
+				}
+			} catch (InterruptedException e) {
+				// 被中断时新增已收集的数据后继续，由closed控制退出
+				Thread.interrupted();
+			}
+			// 合并新增
+			if ( !batch.isEmpty() ) {
+				flush(batch);
+				batch.clear();
+			}
+		}
+	}
+	
+	/**
+	 * 合并新增一批数据，失败时逐条新增
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月12日
+	 * @param batch 本批数据
+	 */
+	private void flush(List<InsertRequest<T>> batch) {
+		// 合并新增
+		List<T> dataList = new ArrayList<>(batch.size());
+		for ( InsertRequest<T> request : batch ) {
+			dataList.add(request.data);
+		}
+		try {
+			service.insert(new MySqlInsert<T>(tableCls).values(dataList));
+			for ( InsertRequest<T> request : batch ) {
+				request.future.complete(request.data);
+			}
+			return;
+		} catch (RuntimeException e) {
+			// 只有一条数据时直接返回失败
+			if ( batch.size()==1 ) {
+				batch.get(0).future.completeExceptionally(e);
+				return;
+			}
+		}
+		// 逐条新增，每条数据得到自己的结果
+		for ( InsertRequest<T> request : batch ) {
+			try {
+				service.insert(new MySqlInsert<T>(tableCls).value(request.data));
+				request.future.complete(request.data);
+			} catch (RuntimeException e) {
+				request.future.completeExceptionally(e);
+			}
+		}
+	}
+	
+	/**
+	 * 待新增数据及其结果
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月12日
+	 */
+	private static class InsertRequest<T> {
+		
+		/** 数据对象 */
+		private final T data;
+		/** 新增结果 */
+		private final CompletableFuture<T> future = new CompletableFuture<>();
+		
+		private InsertRequest(T data) {
+			this.data = data;
+		}
+		
+	}
+	
+}
@@ -1,18 +1,92 @@
 package pers.lyc.mybatis.service;
 
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.math.BigInteger;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
+import javax.sql.DataSource;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 
+import com.mysql.cj.jdbc.JdbcStatement;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.ReflectUtil;
 import pers.lyc.mybatis.builder.MySqlMapper;
+import pers.lyc.mybatis.core.cache.ColumnCache;
+import pers.lyc.mybatis.core.cache.TableCache;
+import pers.lyc.mybatis.core.enums.CountType;
+import pers.lyc.mybatis.core.enums.ExportFormat;
 import pers.lyc.mybatis.core.pojo.Page;
+import pers.lyc.mybatis.core.pojo.ScanRange;
+import pers.lyc.mybatis.core.sql.mysql.MySqlBatchUpdate;
 import pers.lyc.mybatis.core.sql.mysql.MySqlDelete;
+import pers.lyc.mybatis.core.sql.mysql.MySqlExportWriter;
 import pers.lyc.mybatis.core.sql.mysql.MySqlInsert;
+import pers.lyc.mybatis.core.sql.mysql.MySqlLoadDataInputStream;
 import pers.lyc.mybatis.core.sql.mysql.MySqlSelect;
 import pers.lyc.mybatis.core.sql.mysql.MySqlUpdate;
+import pers.lyc.mybatis.provider.mysql.MySqlSelectSqlProvider;
+import pers.lyc.mybatis.util.MybatisUtil;
+import pers.lyc.mybatis.util.OpenHashSet;
+import pers.lyc.mybatis.util.SnapshotCacheUtil;
+import pers.lyc.mybatis.util.TableCacheUtil;
 
 /**
  * MySqlService，建议项目中创建一个BaseService继承此service，其他service继承BaseService。以后如果切换项目使用的数据库，直接修改BaseService继承的service即可
@@ -21,11 +95,56 @@ import pers.lyc.mybatis.core.sql.mysql.MySqlUpdate;
  */
 public class MySqlService<T> {
 	
+	/** 单条语句最大参数数量 */
+	private static final int MAX_PLACEHOLDER_COUNT = 65535;
+	/** 默认每批新增数据数量 */
+	private static final int DEFAULT_INSERT_COUNT = 2000;
+	/** 每批新增数据数量下限 */
+	private static final int MIN_INSERT_COUNT = 50;
+	/** 默认每次按主键查询的数量 */
+	private static final int DEFAULT_SELECT_COUNT = 1000;
+	/** 默认每批更新数据数量 */
+	private static final int DEFAULT_UPDATE_COUNT = 500;
+	/** 默认数据总数统计上限（CountType.CAPPED） */
+	private static final int DEFAULT_COUNT_CAP = 10000;
+	/** 默认数据总数缓存时间（毫秒，CountType.CACHED） */
+	private static final long DEFAULT_COUNT_CACHE_TTL = 60000;
+	/** 数据总数缓存最大数量 */
+	private static final int MAX_COUNT_CACHE_SIZE = 1024;
+	/** 分页查询并发统计数据总数的最大线程数 */
+	private static final int MAX_PAGE_COUNT_THREADS = 64;
+	/** 批次失败默认最大重试次数 */
+	private static final int DEFAULT_MAX_RETRIES = 3;
+	/** 批次失败重试间隔（毫秒） */
+	private static final long RETRY_INTERVAL = 200;
+	/** 导入数据失败时异常信息中的最大警告数量 */
+	private static final int MAX_LOAD_WARNINGS = 5;
+	
+	/** 分页查询并发统计数据总数的线程池，线程已满时在调用线程中统计 */
+	private static final ExecutorService PAGE_COUNT_EXECUTOR = createPageCountExecutor();
+	
 	@Autowired
 	private MySqlMapper<T> mysqlMapper;
 	
+	@Autowired(required = false)
+	private PlatformTransactionManager transactionManager;
+	
+	@Autowired(required = false)
+	private SqlSessionFactory sqlSessionFactory;
+	
+	/** 数据库允许的最大数据包字节数 */
+	private volatile long maxAllowedPacket = -1;
+	/** 新增数据的自适应批次数量 */
+	private volatile AdaptiveBatchSize insertBatchSize;
+	/** 数据总数统计上限（CountType.CAPPED） */
+	private int countCap = DEFAULT_COUNT_CAP;
+	/** 数据总数缓存时间（毫秒，CountType.CACHED） */
+	private long countCacheTtl = DEFAULT_COUNT_CACHE_TTL;
+	/** 数据总数缓存（查询语句及参数 -&gt; 数据总数及过期时间） */
+	private final Map<String, long[]> countCacheMap = new ConcurrentHashMap<>();
+	
 	/**
-	 * 单条数据查询
+	 * 单条数据查询，未设置查询数量时最多查询2条，匹配多条数据时报错（TooManyResultsException）
 	 * @author 林运昌（linyunchang）
 	 * @since 2020年6月20日
 	 * @param sql 数据查询语句
@@ -36,10 +155,26 @@ public class MySqlService<T> {
 		
 		// 数据查询
 		T data = mysqlMapper.selectOne(sql);
+		// 记录数据快照
+		if ( sql.isSnapshot() && data!=null )
+			SnapshotCacheUtil.put(data);
 		
 		return data;
 	}
 	
+	/**
+	 * 数据是否存在，查询到第一条匹配的数据即返回，代替count(sql)&gt;0
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月24日
+	 * @param sql 数据查询语句
+	 * @return 
+	 */
+	public boolean exists(MySqlSelect<T> sql) {
+		Assert.notNull(sql, "查询语句不能为空");
+		
+		return mysqlMapper.exists(sql)!=null;
+	}
+	
 	/**
 	 * 单字段查询
 	 * @author 林运昌（linyunchang）
@@ -72,6 +207,37 @@ public class MySqlService<T> {
 		return count;
 	}
 	
+	/**
+	 * 聚合查询，分组、聚合在数据库中完成，只返回聚合结果。每行数据为一个数组，
+	 * 元素顺序与{@link MySqlSelect#getAggregateLabels()}一致（分组属性、聚合列），如：[status, count, totalAmount]
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月23日
+	 * @param sql 数据查询语句，需要设置分组属性或聚合列
+	 * @return 
+	 */
+	public List<Object[]> aggregate(MySqlSelect<T> sql) {
+		Assert.notNull(sql, "查询语句不能为空");
+		
+		// 聚合查询
+		String[] labels = sql.getAggregateLabels();
+		List<Map<String, Object>> mapList = mysqlMapper.aggregate(sql);
+		// 按列别名顺序转换成数组，值为null的列map中不存在，所有列都为null的行（如没有数据时的sum）map为null
+		List<Object[]> rowList = new ArrayList<>(mapList.size());
+		for ( Map<String, Object> map : mapList ) {
+			Object[] row = new Object[labels.length];
+			if ( map==null ) {
+				rowList.add(row);
+				continue;
+			}
+			for ( int i=0; i<labels.length; i++ ) {
+				row[i] = map.get(labels[i]);
+			}
+			rowList.add(row);
+		}
+		
+		return rowList;
+	}
+	
 	/**
 	 * 数据列表查询
 	 * @author 林运昌（linyunchang）
@@ -84,10 +250,380 @@ public class MySqlService<T> {
 		
 		// 数据查询
 		List<T> dataList = mysqlMapper.select(sql);
+		// 记录数据快照
+		if ( sql.isSnapshot() ) {
+			for ( T data : dataList ) {
+				SnapshotCacheUtil.put(data);
+			}
+		}
 		
 		return dataList;
 	}
 	
+	/**
+	 * 流式查询，驱动逐行读取结果（fetchSize = Integer.MIN_VALUE）并逐条交给consumer处理，内存占用与结果数量无关，适用于导出等大结果集处理。
+	 * 读取期间该连接不能执行其他语句，consumer中需要访问数据库时使用其他连接；不记录数据快照
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月19日
+	 * @param sql 数据查询语句
+	 * @param consumer 数据处理
+	 * @return 处理的数据条数
+	 */
+	@Transactional(readOnly = true)
+	public long stream(MySqlSelect<T> sql, Consumer<T> consumer) {
+		return stream(sql, consumer, false);
+	}
+	
+	/**
+	 * 流式查询，见{@link #stream(MySqlSelect, Consumer)}。
+	 * cursorFetch为true时使用服务端游标分批读取，每批数量为mybatis配置的defaultFetchSize，连接需要开启useCursorFetch=true，读取期间该连接可以执行其他语句
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月19日
+	 * @param sql 数据查询语句
+	 * @param consumer 数据处理
+	 * @param cursorFetch 是否使用服务端游标分批读取
+	 * @return 处理的数据条数
+	 */
+	@Transactional(readOnly = true)
+	public long stream(MySqlSelect<T> sql, Consumer<T> consumer, boolean cursorFetch) {
+		Assert.notNull(sql, "查询语句不能为空");
+		Assert.notNull(consumer, "数据处理不能为空");
+		
+		// 逐条读取并处理
+		long count = 0;
+		try ( Cursor<T> cursor = cursorFetch ? mysqlMapper.selectCursorFetch(sql) : mysqlMapper.selectCursor(sql) ) {
+			for ( T data : cursor ) {
+				consumer.accept(data);
+				count++;
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("关闭查询游标失败", e);
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * 流式导出查询结果，驱动逐行读取结果（fetchSize = Integer.MIN_VALUE），按列类型直接从ResultSet读取字段值编码成CSV或NDJSON写入通道，不创建实体对象，内存占用与结果数量无关。
+	 * 枚举字段输出枚举的中文值，数据字典字段输出原值；通道由调用方关闭
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @param sql 数据查询语句
+	 * @param channel 输出通道
+	 * @param format 导出格式
+	 * @return 导出的数据条数
+	 */
+	@Transactional(readOnly = true)
+	public long export(MySqlSelect<T> sql, WritableByteChannel channel, ExportFormat format) {
+		return export(sql, channel, format, null);
+	}
+	
+	/**
+	 * 流式导出查询结果，见{@link #export(MySqlSelect, WritableByteChannel, ExportFormat)}。
+	 * 数据字典字段使用dictResolver解析显示值（字典分组、原值 -&gt; 显示值），同一字典值只解析一次，解析结果为空时输出原值
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月21日
+	 * @param sql 数据查询语句
+	 * @param channel 输出通道
+	 * @param format 导出格式
+	 * @param dictResolver 数据字典解析，可以为空
+	 * @return 导出的数据条数
+	 */
+	@Transactional(readOnly = true)
+	public long export(MySqlSelect<T> sql, WritableByteChannel channel, ExportFormat format, BiFunction<String, String, String> dictResolver) {
+		Assert.notNull(sql, "查询语句不能为空");
+		Assert.notNull(channel, "输出通道不能为空");
+		Assert.notNull(format, "导出格式不能为空");
+		
+		// 获取数据源（校验sqlSessionFactory已注入）
+		DataSource dataSource = getDataSource();
+		// 生成执行语句，参数绑定方式与mapper查询一致
+		Configuration configuration = sqlSessionFactory.getConfiguration();
+		SqlSource sqlSource = configuration.getDefaultScriptingLanguageInstance().createSqlSource(configuration, MySqlSelectSqlProvider.select(null, sql), MySqlSelect.class);
+		BoundSql boundSql = sqlSource.getBoundSql(sql);
+		MappedStatement mappedStatement = new MappedStatement.Builder(configuration, MySqlMapper.class.getName() + ".export", sqlSource, SqlCommandType.SELECT).build();
+		// 获取数据库连接，存在事务时使用事务中的连接
+		Connection connection = DataSourceUtils.getConnection(dataSource);
+		try ( PreparedStatement statement = connection.prepareStatement(boundSql.getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY) ) {
+			// 逐行读取
+			statement.setFetchSize(Integer.MIN_VALUE);
+			new DefaultParameterHandler(mappedStatement, sql, boundSql).setParameters(statement);
+			try ( ResultSet resultSet = statement.executeQuery() ) {
+				// 逐行编码写入
+				MySqlExportWriter writer = new MySqlExportWriter(sql.getTableCls(), resultSet.getMetaData(), channel, format, MySqlExportWriter.DEFAULT_BUFFER_SIZE, dictResolver);
+				writer.writeHeader();
+				while ( resultSet.next() ) {
+					writer.writeRow(resultSet);
+				}
+				writer.flush();
+				
+				return writer.getCount();
+			}
+		} catch (SQLException e) {
+			throw new SQLErrorCodeSQLExceptionTranslator(dataSource).translate("export", boundSql.getSql(), e);
+		} catch (IOException e) {
+			throw new IllegalStateException("写入导出数据失败", e);
+		} finally {
+			DataSourceUtils.releaseConnection(connection, dataSource);
+		}
+	}
+	
+	/**
+	 * 按主键将查询范围拆分成多个扫描范围，用于{@link #scan(MySqlSelect, List, int, Consumer, Consumer, boolean)}并发扫描。
+	 * Integer、Long主键按最小、最大主键值均分（主键分布不均匀时各范围数据量不同）；其他类型主键按主键排序后的分位点拆分
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月20日
+	 * @param sql 数据查询语句（条件），不会被修改
+	 * @param rangeCount 拆分的范围数量
+	 * @return 
+	 */
+	public List<ScanRange> splitScanRanges(MySqlSelect<T> sql, int rangeCount) {
+		Assert.notNull(sql, "查询语句不能为空");
+		Assert.isTrue(rangeCount>0, "范围数量需要大于0");
+		checkScanSql(sql);
+		
+		// 获取主键字段信息
+		TableCache tableCache = TableCacheUtil.getTableCache(sql.getTableCls());
+		String primaryKey = tableCache.getPrimaryKey();
+		ColumnCache primaryKeyCache = tableCache.getColumnCacheMap().get(primaryKey);
+		Class<?> primaryKeyType = primaryKeyCache.getField().getType();
+		// 拆分的范围列表
+		List<ScanRange> rangeList = new ArrayList<>(rangeCount);
+		Object lowerKey = null;
+		if ( "Integer".equals(primaryKeyCache.getFieldType()) || "Long".equals(primaryKeyCache.getFieldType()) ) {
+			// 查询最小、最大主键
+			List<Number> minList = this.selectColumn(sql.copy().field("min(" + primaryKeyCache.getFullName() + ")"));
+			List<Number> maxList = this.selectColumn(sql.copy().field("max(" + primaryKeyCache.getFullName() + ")"));
+			if ( !minList.isEmpty() && minList.get(0)!=null ) {
+				// 按主键值均分
+				for ( long boundary : splitKeyRange(minList.get(0).longValue(), maxList.get(0).longValue(), rangeCount) ) {
+					Object upperKey = Convert.convert(primaryKeyType, boundary);
+					rangeList.add(new ScanRange(rangeList.size(), lowerKey, upperKey));
+					lowerKey = upperKey;
+				}
+			}
+		} else {
+			// 按主键排序后的分位点拆分
+			int total = this.count(sql);
+			for ( int i=1; i<rangeCount; i++ ) {
+				int offset = (int) ((long) total * i / rangeCount);
+				if ( offset<=0 )
+					continue;
+				MySqlSelect<T> boundarySql = sql.copy().field(primaryKey).orderBy(primaryKey).limit(offset-1, 1);
+				List<Object> boundaryList = this.selectColumn(boundarySql);
+				if ( boundaryList.isEmpty() || boundaryList.get(0).equals(lowerKey) )
+					continue;
+				rangeList.add(new ScanRange(rangeList.size(), lowerKey, boundaryList.get(0)));
+				lowerKey = boundaryList.get(0);
+			}
+		}
+		// 最后一个范围不限制上限
+		rangeList.add(new ScanRange(rangeList.size(), lowerKey, null));
+		
+		return rangeList;
+	}
+	
+	/**
+	 * 将主键值区间[minKey, maxKey]均分，返回各范围的上限（包含），最后一个范围不限制上限不返回。
+	 * 使用BigInteger计算，主键跨度超过long范围（如负数到正数）时不会溢出
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月20日
+	 * @param minKey 最小主键
+	 * @param maxKey 最大主键
+	 * @param rangeCount 拆分的范围数量
+	 * @return 按从小到大排列、均小于maxKey的范围上限
+	 */
+	static List<Long> splitKeyRange(long minKey, long maxKey, int rangeCount) {
+		List<Long> boundaryList = new ArrayList<>(rangeCount);
+		BigInteger min = BigInteger.valueOf(minKey);
+		BigInteger max = BigInteger.valueOf(maxKey);
+		// 每个范围的主键数量：(max - min) / rangeCount + 1
+		BigInteger step = max.subtract(min).divide(BigInteger.valueOf(rangeCount)).add(BigInteger.ONE);
+		for ( int i=1; i<rangeCount; i++ ) {
+			BigInteger boundary = min.subtract(BigInteger.ONE).add(step.multiply(BigInteger.valueOf(i)));
+			if ( boundary.compareTo(max)>=0 )
+				break;
+			boundaryList.add(boundary.longValue());
+		}
+		
+		return boundaryList;
+	}
+	
+	/**
+	 * 按主键范围并发扫描数据，每个未完成的范围一个线程，见{@link #scan(MySqlSelect, List, int, Consumer, Consumer, boolean, int)}
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月20日
+	 * @param sql 数据查询语句（查询属性、条件），不能有or条件、排序及数量限制，不会被修改
+	 * @param ranges 扫描范围列表，见{@link #splitScanRanges(MySqlSelect, int)}
+	 * @param batchSize 每批查询数量
+	 * @param consumer 数据处理
+	 * @param checkpoint 每批处理完后的回调，参数为该范围当前的进度，可以为空
+	 * @param consistentSnapshot 是否在一致性快照中扫描
+	 * @return 本次处理的数据条数
+	 */
+	public long scan(MySqlSelect<T> sql, List<ScanRange> ranges, int batchSize, Consumer<T> consumer, Consumer<ScanRange> checkpoint, boolean consistentSnapshot) {
+		Assert.notEmpty(ranges, "扫描范围不能为空");
+		
+		return scan(sql, ranges, batchSize, consumer, checkpoint, consistentSnapshot, ranges.size());
+	}
+	
+	/**
+	 * 按主键范围并发扫描数据，最多parallelism个范围同时扫描，每个范围在一个线程中使用连接池中的一个连接，按主键顺序每次查询batchSize条数据交给consumer处理（consumer会被多个线程同时调用）。
+	 * 每批处理完后更新范围的lastKey并回调checkpoint，保存的范围列表可以在失败后重新传入，已完成的范围跳过，未完成的范围从lastKey之后继续。
+	 * consistentSnapshot为true时每个范围在独立的只读可重复读事务中扫描，范围内的所有批次读取同一快照（各范围之间的快照时间不完全相同）
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月20日
+	 * @param sql 数据查询语句（查询属性、条件），不能有or条件、排序及数量限制，不会被修改
+	 * @param ranges 扫描范围列表，见{@link #splitScanRanges(MySqlSelect, int)}
+	 * @param batchSize 每批查询数量
+	 * @param consumer 数据处理
+	 * @param checkpoint 每批处理完后的回调，参数为该范围当前的进度，可以为空
+	 * @param consistentSnapshot 是否在一致性快照中扫描
+	 * @param parallelism 并发线程数，不超过连接池可用连接数；范围数量多于并发线程数时其余范围排队等待
+	 * @return 本次处理的数据条数
+	 */
+	public long scan(MySqlSelect<T> sql, List<ScanRange> ranges, int batchSize, Consumer<T> consumer, Consumer<ScanRange> checkpoint, boolean consistentSnapshot, int parallelism) {
+		Assert.notNull(sql, "查询语句不能为空");
+		Assert.notEmpty(ranges, "扫描范围不能为空");
+		Assert.isTrue(batchSize>0, "每批查询数量需要大于0");
+		Assert.isTrue(parallelism>0, "并发线程数需要大于0");
+		Assert.notNull(consumer, "数据处理不能为空");
+		checkScanSql(sql);
+		
+		// 未完成的范围
+		List<ScanRange> pendingList = new ArrayList<>();
+		for ( ScanRange range : ranges ) {
+			if ( !range.isFinished() )
+				pendingList.add(range);
+		}
+		if ( pendingList.isEmpty() )
+			return 0;
+		// 创建线程池，线程数不超过未完成的范围数量
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, pendingList.size()), MybatisUtil.newDaemonThreadFactory("mysql-scan"));
+		try {
+			// 提交每个范围的扫描任务
+			List<Future<Long>> futureList = new ArrayList<>(pendingList.size());
+			for ( ScanRange range : pendingList ) {
+				futureList.add(executor.submit(() -> scanRange(sql, range, batchSize, consumer, checkpoint, consistentSnapshot)));
+			}
+			// 等待全部范围扫描完成
+			long count = 0;
+			for ( int i=0; i<futureList.size(); i++ ) {
+				try {
+					count += futureList.get(i).get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("第" + pendingList.get(i).getIndex() + "个范围扫描失败，可以从检查点继续扫描", e.getCause());
+				}
+			}
+			
+			return count;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("扫描数据被中断", e);
+		} finally {
+			// 关闭线程池，失败时中断其他范围的扫描
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * 校验扫描查询语句
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月20日
+	 * @param sql 数据查询语句
+	 */
+	private void checkScanSql(MySqlSelect<T> sql) {
+		Assert.isTrue(!sql.hasOr(), "扫描查询语句不能有or条件");
+		Assert.isTrue(sql.getLimit()<=0, "扫描查询语句不能限制查询数量");
+		Assert.isTrue(sql.getOrderBy().length()==0, "扫描查询语句按主键排序，不能设置其他排序");
+		String primaryKey = TableCacheUtil.getTableCache(sql.getTableCls()).getPrimaryKey();
+		if ( sql.getFields()!=null && sql.getFields().length>0 && !Arrays.asList(sql.getFields()).contains(primaryKey) )
+			throw new IllegalArgumentException("扫描查询语句指定查询属性时需要包含主键" + primaryKey);
+	}
+	
+	/**
+	 * 扫描一个范围，需要时在只读可重复读事务中扫描
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月20日
+	 * @param sql 数据查询语句
+	 * @param range 扫描范围
+	 * @param batchSize 每批查询数量
+	 * @param consumer 数据处理
+	 * @param checkpoint 每批处理完后的回调
+	 * @param consistentSnapshot 是否在一致性快照中扫描
+	 * @return 
+	 */
+	private long scanRange(MySqlSelect<T> sql, ScanRange range, int batchSize, Consumer<T> consumer, Consumer<ScanRange> checkpoint, boolean consistentSnapshot) {
+		// 不需要快照或未配置事务管理器时每批自动提交
+		if ( !consistentSnapshot || transactionManager==null )
+			return doScanRange(sql, range, batchSize, consumer, checkpoint);
+		
+		// 在只读可重复读事务中扫描，第一次查询时建立快照
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+		transactionTemplate.setReadOnly(true);
+		
+		return transactionTemplate.execute(status -> doScanRange(sql, range, batchSize, consumer, checkpoint));
+	}
+	
+	/**
+	 * 按主键顺序分批扫描一个范围，从lastKey（或lowerKey）之后开始
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月20日
+	 * @param sql 数据查询语句
+	 * @param range 扫描范围
+	 * @param batchSize 每批查询数量
+	 * @param consumer 数据处理
+	 * @param checkpoint 每批处理完后的回调
+	 * @return 
+	 */
+	private long doScanRange(MySqlSelect<T> sql, ScanRange range, int batchSize, Consumer<T> consumer, Consumer<ScanRange> checkpoint) {
+		String primaryKey = TableCacheUtil.getTableCache(sql.getTableCls()).getPrimaryKey();
+		long count = 0;
+		while ( true ) {
+			// 主键范围条件
+			Object lowerKey = range.getLastKey()!=null ? range.getLastKey() : range.getLowerKey();
+			Object upperKey = range.getUpperKey();
+			StringBuilder condition = new StringBuilder();
+			Map<String, Object> paramMap = new HashMap<>();
+			if ( lowerKey!=null ) {
+				condition.append(" "+primaryKey+" &gt; #{scanLower}");
+				paramMap.put("scanLower", lowerKey);
+			}
+			if ( upperKey!=null ) {
+				condition.append(condition.length()>0 ? " and " : "");
+				condition.append(" "+primaryKey+" &lt;= #{scanUpper}");
+				paramMap.put("scanUpper", upperKey);
+			}
+			// 查询本批数据
+			MySqlSelect<T> batchSql = sql.copy();
+			if ( condition.length()>0 )
+				batchSql.and(condition.toString(), new String[] {primaryKey}, paramMap);
+			batchSql.orderBy(primaryKey).limit(0, batchSize);
+			List<T> dataList = this.select(batchSql);
+			// 处理数据
+			for ( T data : dataList ) {
+				consumer.accept(data);
+			}
+			count += dataList.size();
+			// 记录进度
+			synchronized ( range ) {
+				if ( !dataList.isEmpty() )
+					range.setLastKey(ReflectUtil.getFieldValue(dataList.get(dataList.size()-1), primaryKey));
+				range.setCount(range.getCount() + dataList.size());
+				range.setFinished(dataList.size()<batchSize);
+			}
+			if ( checkpoint!=null ) {
+				synchronized ( checkpoint ) {
+					checkpoint.accept(range);
+				}
+			}
+			if ( range.isFinished() )
+				return count;
+		}
+	}
+	
 	/**
 	 * 分页查询
 	 * @author 林运昌（linyunchang）
@@ -115,100 +651,1542 @@ public class MySqlService<T> {
 	}
 	
 	/**
-	 * 批量新增数据
+	 * 分页查询，数据总数统计与数据列表查询并发执行，见{@link #selectPageConcurrent(MySqlSelect, Integer, Integer, boolean)}，存在事务时依次执行
 	 * @author 林运昌（linyunchang）
-	 * @since 2020年6月20日
-	 * @param sql 新增语句
+	 * @since 2020年7月18日
+	 * @param sql 数据查询语句
+	 * @param pageNo 页码
+	 * @param limit 查询数量
 	 * @return 
 	 */
-	@Transactional
-	public int insert(MySqlInsert<T> sql) {
-		return insert(sql, 2000);
+	public Page<T> selectPageConcurrent(MySqlSelect<T> sql, Integer pageNo, Integer limit) {
+		return selectPageConcurrent(sql, pageNo, limit, false);
 	}
 	
 	/**
-	 * 新增数据
+	 * 分页查询，数据总数统计在独立线程中使用连接池中的另一个连接执行，与数据列表查询并发，响应时间约为两者中较长的一个。
+	 * 请求的页码超出范围时按修正后的页码重新查询数据列表。
+	 * 统计使用的连接不在当前事务中，看不到当前事务未提交的数据，因此存在事务时默认依次执行，allowInTransaction为true时仍然并发
 	 * @author 林运昌（linyunchang）
-	 * @since 2020年6月20日
-	 * @param sql 数据新增语句
-	 * @param maxCount 每次最大新增数据数量
+	 * @since 2020年7月18日
+	 * @param sql 数据查询语句
+	 * @param pageNo 页码
+	 * @param limit 查询数量
+	 * @param allowInTransaction 存在事务时是否仍然并发
 	 * @return 
 	 */
-	@Transactional
-	public int insert(MySqlInsert<T> sql, int maxCount) {
-		Assert.notNull(sql, "新增语句不能为空");
-		Assert.isTrue(maxCount>0, "每次最大新增数据数量需要大于0");
+	public Page<T> selectPageConcurrent(MySqlSelect<T> sql, Integer pageNo, Integer limit, boolean allowInTransaction) {
+		Assert.notNull(sql, "查询语句不能为空");
 		
-		// 获取新增数据列表
-		List<T> dataList = sql.getDataList();
-		if ( CollectionUtils.isEmpty(dataList) )
-			return 0;
-		// 批量新增成功条数
-		int count = 0;
-		// 待批量新增数据条数
-		int listSize = dataList.size();
-		// 如果待批量新增数据条数小于等于maxCount，则直接插入
-		if ( listSize<=maxCount ) {
-			// 数据新增
-			count += mysqlMapper.insert(sql);
-		} else { // 如果待批量新增数据条数大于maxCount，则拆分多次插入
-			// 分批次插入数据，每次插入maxCount条
-			int currentIndex = 0;
-			// 循环拆分数据并新增
-			List<T> dataListPart = null;
-			while ( currentIndex+maxCount<listSize ) {
-				// 拆分数据
-				dataListPart = dataList.subList(currentIndex, currentIndex+maxCount);
-				// 设置数据
-				sql.values(dataListPart, true);
-				// 数据新增
-				count += mysqlMapper.insert(sql);
-				// 索引处理
-				currentIndex += maxCount;
-			}
-			// 拆分剩余的数据
-			dataListPart = dataList.subList(currentIndex, listSize);
-			// 设置数据
-			sql.values(dataListPart, true);
-			// 数据新增
-			count += mysqlMapper.insert(sql);
+		// 存在事务且不允许并发时依次执行
+		if ( !allowInTransaction && TransactionSynchronizationManager.isActualTransactionActive() ) {
+			Page<T> page = selectPage(sql, pageNo, limit);
+			page.setHasNext(page.getPageNo()<page.getTotalPage());
+			return page;
 		}
 		
-		return count;
+		// 创建分页查询数据，偏移量按请求的页码计算
+		Page<T> page = new Page<T>(pageNo, limit);
+		int requestPageNo = Math.max(pageNo==null ? 1 : pageNo, 1);
+		// 使用复制的查询语句并发统计数据总数
+		MySqlSelect<T> countSql = sql.copy();
+		Future<Integer> countFuture = PAGE_COUNT_EXECUTOR.submit(() -> this.count(countSql));
+		// 查询数据列表
+		List<T> dataList;
+		try {
+			sql.limit((requestPageNo-1) * page.getLimit(), page.getLimit());
+			dataList = this.select(sql);
+			page.setTotalRecord(countFuture.get());
+		} catch (ExecutionException e) {
+			if ( e.getCause() instanceof RuntimeException )
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException("统计数据总数失败", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("分页查询被中断", e);
+		} finally {
+			// 查询失败时取消统计
+			countFuture.cancel(true);
+		}
+		// 请求的页码超出范围时按修正后的页码重新查询
+		if ( page.getPageNo()!=requestPageNo ) {
+			sql.limit(page.getOffset(), page.getLimit());
+			dataList = this.select(sql);
+		}
+		// 设置数据结果
+		page.setDataList(dataList);
+		page.setHasNext(page.getPageNo()<page.getTotalPage());
+		
+		return page;
 	}
 	
 	/**
-	 * 数据更新
+	 * 创建分页查询并发统计数据总数的线程池，空闲线程60秒后回收，线程已满时在调用线程中执行
 	 * @author 林运昌（linyunchang）
-	 * @since 2020年6月20日
-	 * @param sql 数据更新语句
+	 * @since 2020年7月18日
 	 * @return 
 	 */
-	@Transactional
-	public int update(MySqlUpdate<T> sql) {
-		Assert.notNull(sql, "更新语句不能为空");
+	private static ExecutorService createPageCountExecutor() {
+		return new ThreadPoolExecutor(0, MAX_PAGE_COUNT_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), MybatisUtil.newDaemonThreadFactory("mysql-page-count"), new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+	
+	/**
+	 * 分页查询，按countType统计数据总数：<br>
+	 * NONE：不统计，多查询一条数据判断是否有下一页；<br>
+	 * CAPPED：最多统计到上限（至少到当前页的下一条数据）为止，超过上限时数据总数为上限；<br>
+	 * ESTIMATED：使用执行计划（explain）估算的行数，误差可能较大，适合只显示大致数量；<br>
+	 * CACHED：相同查询语句及参数在缓存时间内使用缓存的数据总数；<br>
+	 * EXACT：精确统计，同{@link #selectPage(MySqlSelect, Integer, Integer)}。<br>
+	 * 非精确统计时数据总数至少包含当前页及是否有下一页，页码不会因为统计值偏小被修正；统计方式见{@link Page#getCountType()}
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月17日
+	 * @param sql 数据查询语句
+	 * @param pageNo 页码
+	 * @param limit 查询数量
+	 * @param countType 数据总数统计方式
+	 * @return 
+	 */
+	public Page<T> selectPage(MySqlSelect<T> sql, Integer pageNo, Integer limit, CountType countType) {
+		Assert.notNull(sql, "查询语句不能为空");
+		Assert.notNull(countType, "数据总数统计方式不能为空");
 		
-		// 数据更新
-		int count = mysqlMapper.update(sql);
+		// 精确统计
+		if ( countType==CountType.EXACT ) {
+			Page<T> page = selectPage(sql, pageNo, limit);
+			page.setHasNext(page.getPageNo()<page.getTotalPage());
+			return page;
+		}
 		
-		return count;
+		// 创建分页查询数据，偏移量按请求的页码计算，不按统计值修正
+		Page<T> page = new Page<T>(pageNo, limit);
+		page.setCountType(countType);
+		int offset = (Math.max(pageNo==null ? 1 : pageNo, 1) - 1) * page.getLimit();
+		// 统计数据总数
+		int count = countByType(sql, countType, offset + page.getLimit() + 1);
+		// 多查询一条判断是否有下一页
+		sql.limit(offset, page.getLimit()+1);
+		List<T> dataList = this.select(sql);
+		boolean hasNext = dataList.size()>page.getLimit();
+		if ( hasNext )
+			dataList = new ArrayList<>(dataList.subList(0, page.getLimit()));
+		// 设置数据结果，数据总数至少包含已查询到的数据
+		page.setTotalRecord(Math.max(count, offset + dataList.size() + (hasNext ? 1 : 0)));
+		page.setDataList(dataList);
+		page.setHasNext(hasNext);
+		
+		return page;
 	}
 	
 	/**
-	 * 数据删除
+	 * 按统计方式统计数据总数
 	 * @author 林运昌（linyunchang）
-	 * @since 2020年6月20日
-	 * @param sql 数据删除语句
+	 * @since 2020年7月17日
+	 * @param sql 数据查询语句
+	 * @param countType 数据总数统计方式
+	 * @param minCap 统计上限的最小值（当前页的下一条数据）
 	 * @return 
 	 */
-	@Transactional
-	public int delete(MySqlDelete<T> sql) {
-		Assert.notNull(sql, "删除语句不能为空");
+	private int countByType(MySqlSelect<T> sql, CountType countType, int minCap) {
+		switch ( countType ) {
+			case NONE:
+				return 0;
+			case CAPPED:
+				// 以limit作为统计上限
+				int offset = sql.getOffset();
+				int limit = sql.getLimit();
+				try {
+					sql.limit(0, Math.max(countCap, minCap));
+					return mysqlMapper.countCapped(sql);
+				} finally {
+					sql.limit(offset, limit);
+				}
+			case ESTIMATED:
+				// 驱动表的估算行数 * 条件过滤比例
+				List<Map<String, Object>> planList = mysqlMapper.explain(sql);
+				if ( planList.isEmpty() )
+					return 0;
+				Map<String, Object> plan = planList.get(0);
+				double rows = plan.get("rows") instanceof Number ? ((Number) plan.get("rows")).doubleValue() : 0;
+				double filtered = plan.get("filtered") instanceof Number ? ((Number) plan.get("filtered")).doubleValue() : 100;
+				return (int) Math.min(Integer.MAX_VALUE, Math.round(rows * filtered / 100));
+			case CACHED:
+				return countCached(sql);
+			default:
+				return this.count(sql);
+		}
+	}
+	
+	/**
+	 * 统计数据总数，相同查询语句及参数在缓存时间内使用缓存的结果
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月17日
+	 * @param sql 数据查询语句
+	 * @return 
+	 */
+	private int countCached(MySqlSelect<T> sql) {
+		// 缓存key：不含数量限制的查询语句及参数
+		int offset = sql.getOffset();
+		int limit = sql.getLimit();
+		String key;
+		try {
+			key = sql.limit(-1, -1).toString() + "|" + toCacheKey(sql.getParamMap());
+		} finally {
+			sql.limit(offset, limit);
+		}
+		// 读取缓存
+		long now = System.currentTimeMillis();
+		long[] cached = countCacheMap.get(key);
+		if ( cached!=null && cached[1]>now )
+			return (int) cached[0];
 		
-		// 数据删除
-		int count = mysqlMapper.delete(sql);
+		// 统计并缓存，缓存过多时清除过期的缓存，仍然过多则全部清除
+		int count = this.count(sql);
+		if ( countCacheMap.size()>=MAX_COUNT_CACHE_SIZE ) {
+			countCacheMap.values().removeIf(value -> value[1]<=now);
+			if ( countCacheMap.size()>=MAX_COUNT_CACHE_SIZE )
+				countCacheMap.clear();
+		}
+		countCacheMap.put(key, new long[] {count, now + countCacheTtl});
 		
 		return count;
 	}
 	
+	/**
+	 * 将查询参数转换为缓存key，数组按内容转换
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月17日
+	 * @param paramMap 查询参数
+	 * @return 
+	 */
+	private static String toCacheKey(Map<String, Object> paramMap) {
+		StringBuilder key = new StringBuilder();
+		for ( Map.Entry<String, Object> entry : new TreeMap<>(paramMap).entrySet() ) {
+			key.append(entry.getKey());
+			key.append("=");
+			Object value = entry.getValue();
+			key.append(value instanceof Object[] ? Arrays.deepToString((Object[]) value) : String.valueOf(value));
+			key.append(";");
+		}
+		
+		return key.toString();
+	}
+	
+	/**
+	 * 设置数据总数统计上限（CountType.CAPPED），默认10000
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月17日
+	 * @param countCap 统计上限
+	 */
+	public void setCountCap(int countCap) {
+		Assert.isTrue(countCap>0, "统计上限需要大于0");
+		
+		this.countCap = countCap;
+	}
+	
+	/**
+	 * 设置数据总数缓存时间（CountType.CACHED），默认60秒
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月17日
+	 * @param countCacheTtl 缓存时间（毫秒）
+	 */
+	public void setCountCacheTtl(long countCacheTtl) {
+		Assert.isTrue(countCacheTtl>0, "缓存时间需要大于0");
+		
+		this.countCacheTtl = countCacheTtl;
+	}
+	
+	/**
+	 * seek分页查询（keyset分页），按上一页最后一条数据的排序属性值定位下一页，不使用 limit offset，深度翻页与第一页的查询代价相同。
+	 * 排序属性中没有主键时自动追加主键排序保证顺序唯一；排序属性值不能为空。
+	 * 查询limit+1条数据判断是否有下一页，不统计数据总数，下一页的游标见{@link Page#getCursor()}
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月16日
+	 * @param sql 数据查询语句（条件、排序），不会被修改
+	 * @param cursor 上一页返回的游标，为空时查询第一页
+	 * @param limit 查询数量
+	 * @return 
+	 */
+	public Page<T> selectSeek(MySqlSelect<T> sql, String cursor, Integer limit) {
+		Assert.notNull(sql, "查询语句不能为空");
+		
+		// 创建分页查询数据
+		Page<T> page = new Page<T>(1, limit);
+		// 复制查询语句，排序属性中没有主键时追加主键排序，方向与最后一个排序属性相同
+		MySqlSelect<T> seekSql = sql.copy();
+		String primaryKey = TableCacheUtil.getTableCache(sql.getTableCls()).getPrimaryKey();
+		if ( !seekSql.getOrderFieldMap().containsKey(primaryKey) ) {
+			boolean desc = false;
+			for ( Boolean orderDesc : seekSql.getOrderFieldMap().values() ) {
+				desc = orderDesc;
+			}
+			seekSql.orderBy(primaryKey, desc);
+		}
+		// 排序属性
+		String[] orderFields = seekSql.getOrderFieldMap().keySet().toArray(new String[0]);
+		// 从游标位置继续查询
+		if ( cursor!=null && !cursor.isEmpty() ) {
+			Class<?>[] types = new Class<?>[orderFields.length];
+			for ( int i=0; i<orderFields.length; i++ ) {
+				types[i] = ReflectUtil.getField(sql.getTableCls(), orderFields[i]).getType();
+			}
+			seekSql.seek(MybatisUtil.decodeCursor(cursor, types));
+		}
+		// 多查询一条判断是否有下一页
+		seekSql.limit(0, page.getLimit()+1);
+		List<T> dataList = this.select(seekSql);
+		boolean hasNext = dataList.size()>page.getLimit();
+		if ( hasNext )
+			dataList = new ArrayList<>(dataList.subList(0, page.getLimit()));
+		// 设置数据结果及下一页游标
+		page.setDataList(dataList);
+		page.setHasNext(hasNext);
+		if ( hasNext ) {
+			T last = dataList.get(dataList.size()-1);
+			Object[] values = new Object[orderFields.length];
+			for ( int i=0; i<orderFields.length; i++ ) {
+				values[i] = ReflectUtil.getFieldValue(last, orderFields[i]);
+			}
+			page.setCursor(MybatisUtil.encodeCursor(values));
+		}
+		
+		return page;
+	}
+	
+	/**
+	 * 按主键批量查询，见{@link #selectByIds(MySqlSelect, Collection, int, int)}
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月15日
+	 * @param sql 数据查询语句（查询属性、其他条件），不会被修改
+	 * @param ids 主键集合
+	 * @return 
+	 */
+	public List<T> selectByIds(MySqlSelect<T> sql, Collection<?> ids) {
+		return selectByIds(sql, ids, DEFAULT_SELECT_COUNT, 1);
+	}
+	
+	/**
+	 * 按主键批量查询，主键按chunkSize拆分成多条 in 查询，parallelism大于1时使用连接池中的多个连接并发查询（存在事务时在当前事务中依次查询）。
+	 * 返回结果与主键集合顺序一致，不存在的主键对应位置为null，重复的主键对应同一个数据对象。
+	 * 查询语句不能有or条件，指定查询属性时需要包含主键
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月15日
+	 * @param sql 数据查询语句（查询属性、其他条件），不会被修改
+	 * @param ids 主键集合
+	 * @param chunkSize 每次查询的主键数量
+	 * @param parallelism 并发线程数
+	 * @return 
+	 */
+	public List<T> selectByIds(MySqlSelect<T> sql, Collection<?> ids, int chunkSize, int parallelism) {
+		// 按主键查询
+		Map<Object, T> dataMap = selectMapByIds(sql, ids, chunkSize, parallelism);
+		// 按主键集合顺序返回
+		String primaryKey = TableCacheUtil.getTableCache(sql.getTableCls()).getPrimaryKey();
+		Class<?> primaryKeyType = getFieldType(sql.getTableCls(), primaryKey);
+		List<T> dataList = new ArrayList<>(ids.size());
+		for ( Object id : ids ) {
+			dataList.add(dataMap.get(Convert.convert(primaryKeyType, id)));
+		}
+		
+		return dataList;
+	}
+	
+	/**
+	 * 按主键批量查询，返回主键-数据map，见{@link #selectMapByIds(MySqlSelect, Collection, int, int)}
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月15日
+	 * @param sql 数据查询语句（查询属性、其他条件），不会被修改
+	 * @param ids 主键集合
+	 * @return 
+	 */
+	public Map<Object, T> selectMapByIds(MySqlSelect<T> sql, Collection<?> ids) {
+		return selectMapByIds(sql, ids, DEFAULT_SELECT_COUNT, 1);
+	}
+	
+	/**
+	 * 按主键批量查询，返回主键-数据map，map按主键集合顺序排列，只包含存在的数据。
+	 * 主键统一转换为主键属性的类型，如Long主键传入Integer也能匹配，其余同{@link #selectByIds(MySqlSelect, Collection, int, int)}
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月15日
+	 * @param sql 数据查询语句（查询属性、其他条件），不会被修改
+	 * @param ids 主键集合
+	 * @param chunkSize 每次查询的主键数量
+	 * @param parallelism 并发线程数
+	 * @return 
+	 */
+	public Map<Object, T> selectMapByIds(MySqlSelect<T> sql, Collection<?> ids, int chunkSize, int parallelism) {
+		Assert.notNull(sql, "查询语句不能为空");
+		Assert.notNull(ids, "主键集合不能为空");
+		
+		// 获取主键属性
+		String primaryKey = TableCacheUtil.getTableCache(sql.getTableCls()).getPrimaryKey();
+		Class<?> primaryKeyType = getFieldType(sql.getTableCls(), primaryKey);
+		// 主键去重并统一类型
+		Set<Object> idSet = new LinkedHashSet<>();
+		for ( Object id : ids ) {
+			Assert.notNull(id, "主键不能为空");
+			idSet.add(Convert.convert(primaryKeyType, id));
+		}
+		if ( idSet.isEmpty() )
+			return new LinkedHashMap<>();
+		// 按主键拆分查询语句
+		List<Object> idList = new ArrayList<>(idSet);
+		List<MySqlSelect<T>> chunkSqlList = new ArrayList<>();
+		for ( List<Object> subList : splitKeys(sql, Collections.singletonList(primaryKey), idList, chunkSize) ) {
+			MySqlSelect<T> chunkSql = sql.copy();
+			andChunkIn(chunkSql, primaryKey, new ArrayList<>(subList));
+			chunkSqlList.add(chunkSql);
+		}
+		// 查询并按主键索引
+		Map<Object, T> resultMap = new HashMap<>();
+		for ( T data : selectChunks(chunkSqlList, parallelism) ) {
+			resultMap.put(ReflectUtil.getFieldValue(data, primaryKey), data);
+		}
+		// 按主键集合顺序返回
+		Map<Object, T> dataMap = new LinkedHashMap<>();
+		for ( Object id : idList ) {
+			T data = resultMap.get(id);
+			if ( data!=null )
+				dataMap.put(id, data);
+		}
+		
+		return dataMap;
+	}
+	
+	/**
+	 * 按多个属性的组合值（如联合唯一键）批量查询，使用 (field1, field2) in ((?, ?), ...) 条件，返回结果与组合值列表顺序一致，不存在的位置为null。
+	 * 查询语句不能有or条件，指定查询属性时需要包含这些属性；组合值需要能唯一确定一条数据，否则同一组合值只返回其中一条
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月15日
+	 * @param sql 数据查询语句（查询属性、其他条件），不会被修改
+	 * @param fields 属性数组
+	 * @param keys 组合值列表，每个数组按属性顺序对应一组值
+	 * @param chunkSize 每次查询的组合值数量
+	 * @param parallelism 并发线程数
+	 * @return 
+	 */
+	public List<T> selectByKeys(MySqlSelect<T> sql, String[] fields, List<Object[]> keys, int chunkSize, int parallelism) {
+		Assert.notNull(sql, "查询语句不能为空");
+		Assert.notEmpty(fields, "属性数组不能为空");
+		Assert.notNull(keys, "组合值列表不能为空");
+		
+		// 统一组合值类型，转换为可以比较的列表
+		Class<?>[] fieldTypes = new Class<?>[fields.length];
+		for ( int i=0; i<fields.length; i++ ) {
+			fieldTypes[i] = getFieldType(sql.getTableCls(), fields[i]);
+		}
+		Map<List<Object>, Object[]> keyMap = new LinkedHashMap<>();
+		List<List<Object>> keyList = new ArrayList<>(keys.size());
+		for ( Object[] key : keys ) {
+			Assert.isTrue(key!=null && key.length==fields.length, "每组值的数量需要和属性数量一致");
+			Object[] values = new Object[fields.length];
+			for ( int i=0; i<fields.length; i++ ) {
+				values[i] = Convert.convert(fieldTypes[i], key[i]);
+			}
+			List<Object> valueList = Arrays.asList(values);
+			keyMap.putIfAbsent(valueList, values);
+			keyList.add(valueList);
+		}
+		if ( keyMap.isEmpty() )
+			return new ArrayList<>();
+		// 按组合值拆分查询语句
+		List<MySqlSelect<T>> chunkSqlList = new ArrayList<>();
+		for ( List<Object[]> subList : splitKeys(sql, Arrays.asList(fields), new ArrayList<>(keyMap.values()), chunkSize) ) {
+			MySqlSelect<T> chunkSql = sql.copy();
+			chunkSql.andTupleIn(fields, new ArrayList<>(subList));
+			chunkSqlList.add(chunkSql);
+		}
+		// 查询并按组合值索引
+		Map<List<Object>, T> resultMap = new HashMap<>();
+		for ( T data : selectChunks(chunkSqlList, parallelism) ) {
+			Object[] values = new Object[fields.length];
+			for ( int i=0; i<fields.length; i++ ) {
+				values[i] = ReflectUtil.getFieldValue(data, fields[i]);
+			}
+			resultMap.putIfAbsent(Arrays.asList(values), data);
+		}
+		// 按组合值列表顺序返回
+		List<T> dataList = new ArrayList<>(keyList.size());
+		for ( List<Object> key : keyList ) {
+			dataList.add(resultMap.get(key));
+		}
+		
+		return dataList;
+	}
+	
+	/**
+	 * 批量判断数据是否存在，见{@link #existsAll(MySqlSelect, String, List, int)}
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月25日
+	 * @param sql 数据查询语句（其他条件），不会被修改
+	 * @param field 属性，需要是主键或单属性唯一键
+	 * @param keys 属性值列表
+	 * @return 
+	 */
+	public BitSet existsAll(MySqlSelect<T> sql, String field, List<?> keys) {
+		return existsAll(sql, field, keys, DEFAULT_SELECT_COUNT);
+	}
+	
+	/**
+	 * 批量判断数据是否存在，按chunkSize分批执行 select field ... where field in (...)，只查询该属性。
+	 * 返回结果与属性值列表位置对应，存在时该位置为true，空值为false；属性值统一转换为属性类型后按数据库返回值比较。
+	 * 字符串属性改为每个值一条 exists 判断语句，由数据库按字段的排序规则匹配（大小写、重音、末尾空格等），结果与 field in (...) 一致
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月25日
+	 * @param sql 数据查询语句（其他条件），不会被修改
+	 * @param field 属性，需要是主键或单属性唯一键
+	 * @param keys 属性值列表
+	 * @param chunkSize 每次查询的属性值数量
+	 * @return 
+	 */
+	public BitSet existsAll(MySqlSelect<T> sql, String field, List<?> keys, int chunkSize) {
+		Assert.notNull(sql, "查询语句不能为空");
+		Assert.hasLength(field, "属性不能为空");
+		Assert.notNull(keys, "属性值列表不能为空");
+		
+		// 校验属性是否为主键或单属性唯一键
+		TableCache tableCache = TableCacheUtil.getTableCache(sql.getTableCls());
+		boolean unique = field.equals(tableCache.getPrimaryKey());
+		for ( String uniqueKey : tableCache.getTable().uniqueKeys() ) {
+			if ( field.equals(uniqueKey.trim()) )
+				unique = true;
+		}
+		if ( !unique )
+			throw new IllegalArgumentException("属性"+field+"不是主键或单属性唯一键");
+		// 统一属性值类型并去重
+		Class<?> fieldType = getFieldType(sql.getTableCls(), field);
+		Object[] values = new Object[keys.size()];
+		OpenHashSet keySet = new OpenHashSet(keys.size());
+		List<Object> keyList = new ArrayList<>();
+		for ( int i=0; i<values.length; i++ ) {
+			Object key = keys.get(i);
+			if ( key==null )
+				continue;
+			values[i] = Convert.convert(fieldType, key);
+			if ( keySet.add(values[i]) )
+				keyList.add(values[i]);
+		}
+		BitSet bitSet = new BitSet(values.length);
+		if ( keyList.isEmpty() )
+			return bitSet;
+		// 按属性值分批查询存在的值
+		OpenHashSet existSet = new OpenHashSet(keyList.size());
+		if ( String.class==fieldType ) {
+			// 字符串由数据库按字段排序规则逐个匹配，每个值一条判断语句，其他条件的参数随之重复
+			MySqlSelect<T> matchSql = sql.copy();
+			matchSql.and(" " + field + " = #{" + MySqlSelectSqlProvider.MATCHED_KEY + "}", new String[] { field }, null);
+			int paramCount = 1;
+			for ( Object param : sql.getParamMap().values() ) {
+				if ( param instanceof Collection )
+					paramCount += ((Collection<?>) param).size();
+				else if ( param!=null && param.getClass().isArray() )
+					paramCount += Array.getLength(param);
+				else
+					paramCount++;
+			}
+			for ( List<Object> subList : splitKeys(matchSql, Collections.singletonList(field), keyList, Math.max(1, Math.min(chunkSize, MAX_PLACEHOLDER_COUNT / paramCount))) ) {
+				MySqlSelect<T> chunkSql = matchSql.copy();
+				chunkSql.getParamMap().put(MySqlSelectSqlProvider.MATCHED_KEYS, new ArrayList<>(subList));
+				for ( Integer index : mysqlMapper.selectMatchedIndex(chunkSql) ) {
+					existSet.add(subList.get(index));
+				}
+			}
+		} else {
+			MySqlSelect<T> columnSql = sql.copy().field(field);
+			for ( List<Object> subList : splitKeys(columnSql, Collections.singletonList(field), keyList, chunkSize) ) {
+				MySqlSelect<T> chunkSql = columnSql.copy();
+				andChunkIn(chunkSql, field, new ArrayList<>(subList));
+				for ( Object value : selectColumn(chunkSql) ) {
+					if ( value!=null )
+						existSet.add(Convert.convert(fieldType, value));
+				}
+			}
+		}
+		// 按属性值列表位置设置结果
+		for ( int i=0; i<values.length; i++ ) {
+			if ( values[i]!=null && existSet.contains(values[i]) )
+				bitSet.set(i);
+		}
+		
+		return bitSet;
+	}
+	
+	/**
+	 * 校验批量查询语句并拆分查询值，每批数量受单条语句参数数量限制
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月15日
+	 * @param sql 数据查询语句
+	 * @param keyFieldList 查询值对应的属性
+	 * @param keyList 查询值列表
+	 * @param chunkSize 每批数量
+	 * @return 
+	 */
+	private <K> List<List<K>> splitKeys(MySqlSelect<T> sql, List<String> keyFieldList, List<K> keyList, int chunkSize) {
+		Assert.isTrue(chunkSize>0, "每次查询数量需要大于0");
+		Assert.isTrue(!sql.hasOr(), "批量查询语句不能有or条件");
+		Assert.isTrue(sql.getLimit()<=0, "批量查询语句不能限制查询数量");
+		if ( sql.getFields()!=null && sql.getFields().length>0 && !Arrays.asList(sql.getFields()).containsAll(keyFieldList) )
+			throw new IllegalArgumentException("批量查询语句指定查询属性时需要包含" + keyFieldList);
+		
+		// 受单条语句参数数量限制的最大数量
+		chunkSize = Math.max(1, Math.min(chunkSize, MAX_PLACEHOLDER_COUNT / keyFieldList.size()));
+		// 拆分
+		List<List<K>> chunkList = new ArrayList<>();
+		for ( int i=0; i<keyList.size(); i+=chunkSize ) {
+			chunkList.add(keyList.subList(i, Math.min(i+chunkSize, keyList.size())));
+		}
+		
+		return chunkList;
+	}
+	
+	/**
+	 * 添加本批查询值的 field in (...) 条件，参数使用单独的名称，不覆盖查询语句中该属性已有条件的参数
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月15日
+	 * @param chunkSql 本批查询语句
+	 * @param field 属性
+	 * @param values 本批查询值
+	 */
+	private static void andChunkIn(MySqlSelect<?> chunkSql, String field, List<Object> values) {
+		String paramName = "chunk_" + field;
+		chunkSql.and(" " + field + " in <foreach>" + paramName + "</foreach>", new String[] { field }, Collections.singletonMap(paramName, values));
+	}
+	
+	/**
+	 * 执行多条查询语句并合并结果，parallelism大于1且不在事务中时并发查询
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月15日
+	 * @param chunkSqlList 查询语句列表
+	 * @param parallelism 并发线程数
+	 * @return 
+	 */
+	private List<T> selectChunks(List<MySqlSelect<T>> chunkSqlList, int parallelism) {
+		Assert.isTrue(parallelism>0, "并发线程数需要大于0");
+		
+		List<T> dataList = new ArrayList<>();
+		// 只有一批、不并发或存在事务时依次查询，事务中的查询需要使用当前事务的连接
+		if ( chunkSqlList.size()==1 || parallelism==1 || TransactionSynchronizationManager.isActualTransactionActive() ) {
+			for ( MySqlSelect<T> chunkSql : chunkSqlList ) {
+				dataList.addAll(select(chunkSql));
+			}
+			return dataList;
+		}
+		
+		// 创建线程池
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, chunkSqlList.size()), MybatisUtil.newDaemonThreadFactory("mysql-select"));
+		try {
+			// 提交每批查询
+			List<Future<List<T>>> futureList = new ArrayList<>(chunkSqlList.size());
+			for ( MySqlSelect<T> chunkSql : chunkSqlList ) {
+				futureList.add(executor.submit(() -> select(chunkSql)));
+			}
+			// 按批次顺序合并结果
+			for ( Future<List<T>> future : futureList ) {
+				try {
+					dataList.addAll(future.get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("批量查询失败", e.getCause());
+				}
+			}
+			
+			return dataList;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("批量查询被中断", e);
+		} finally {
+			// 关闭线程池，失败时取消未执行的批次
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * 获取属性类型
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月15日
+	 * @param tableCls 表实体类型
+	 * @param field 属性
+	 * @return 
+	 */
+	private static Class<?> getFieldType(Class<?> tableCls, String field) {
+		ColumnCache columnCache = TableCacheUtil.getTableCache(tableCls).getColumnCacheMap().get(field);
+		if ( columnCache==null )
+			throw new IllegalArgumentException("属性"+field+"不存在");
+		
+		return columnCache.getField().getType();
+	}
+	
+	/**
+	 * 批量新增数据，根据字段宽度、数据实际大小及数据库max_allowed_packet自动计算每批新增数量，并根据每批执行耗时动态调整
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年6月20日
+	 * @param sql 新增语句
+	 * @return 
+	 */
+	@Transactional
+	public int insert(MySqlInsert<T> sql) {
+		Assert.notNull(sql, "新增语句不能为空");
+		
+		// 获取新增数据列表
+		List<T> dataList = sql.getDataList();
+		if ( CollectionUtils.isEmpty(dataList) )
+			return 0;
+		// 复制数据列表，避免切换批次数据时修改原数据列表
+		dataList = new ArrayList<>(dataList);
+		// 每批数据的最大字节数，预留部分空间给语句本身
+		long maxBatchBytes = getMaxAllowedPacket() * 9 / 10;
+		// 获取自适应批次数量
+		AdaptiveBatchSize batchSize = getInsertBatchSize(sql, maxBatchBytes);
+		// 批量新增成功条数
+		int count = 0;
+		// 待批量新增数据条数
+		int listSize = dataList.size();
+		// 分批插入数据
+		int currentIndex = 0;
+		try {
+			while ( currentIndex<listSize ) {
+				// 本批次最大数据条数
+				int maxCount = batchSize.getSize();
+				// 累加数据大小，超过数据包大小限制则截断本批次
+				long batchBytes = 0;
+				int endIndex = currentIndex;
+				while ( endIndex<listSize && endIndex-currentIndex<maxCount ) {
+					long rowSize = sql.getRowSize(dataList.get(endIndex));
+					if ( endIndex>currentIndex && batchBytes+rowSize>maxBatchBytes )
+						break;
+					batchBytes += rowSize;
+					endIndex++;
+				}
+				// 设置本批次数据
+				sql.batch(dataList.subList(currentIndex, endIndex));
+				// 数据新增，记录执行耗时
+				long startTime = System.nanoTime();
+				count += mysqlMapper.insert(sql);
+				batchSize.feedback(endIndex-currentIndex, System.nanoTime()-startTime);
+				// 索引处理
+				currentIndex = endIndex;
+			}
+		} finally {
+			// 恢复数据列表
+			sql.batch(dataList);
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * 新增数据
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年6月20日
+	 * @param sql 数据新增语句
+	 * @param maxCount 每次最大新增数据数量
+	 * @return 
+	 */
+	@Transactional
+	public int insert(MySqlInsert<T> sql, int maxCount) {
+		Assert.notNull(sql, "新增语句不能为空");
+		Assert.isTrue(maxCount>0, "每次最大新增数据数量需要大于0");
+		
+		// 获取新增数据列表
+		List<T> dataList = sql.getDataList();
+		if ( CollectionUtils.isEmpty(dataList) )
+			return 0;
+		// 批量新增成功条数
+		int count = 0;
+		// 待批量新增数据条数
+		int listSize = dataList.size();
+		// 如果待批量新增数据条数小于等于maxCount，则直接插入
+		if ( listSize<=maxCount ) {
+			// 数据新增
+			count += mysqlMapper.insert(sql);
+		} else { // 如果待批量新增数据条数大于maxCount，则拆分多次插入
+			// 复制数据列表，避免切换批次数据时修改原数据列表
+			dataList = new ArrayList<>(dataList);
+			// 分批次插入数据，每次插入maxCount条
+			int currentIndex = 0;
+			try {
+				// 循环拆分数据并新增
+				while ( currentIndex<listSize ) {
+					// 拆分数据
+					sql.batch(dataList.subList(currentIndex, Math.min(currentIndex+maxCount, listSize)));
+					// 数据新增
+					count += mysqlMapper.insert(sql);
+					// 索引处理
+					currentIndex += maxCount;
+				}
+			} finally {
+				// 恢复数据列表
+				sql.batch(dataList);
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * 批量新增或更新数据（insert ... on duplicate key update），主键或唯一键重复时更新数据，和insert一样自动分批执行。
+	 * 新增语句未设置更新字段时，默认更新除主键、自增字段、唯一键字段以外的所有字段。返回值为数据库影响行数（新增1行计1，更新1行计2）
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月5日
+	 * @param sql 新增语句
+	 * @return 
+	 */
+	@Transactional
+	public int upsert(MySqlInsert<T> sql) {
+		Assert.notNull(sql, "新增语句不能为空");
+		Assert.isTrue(!sql.isIgnore(), "upsert不能和ignore一起使用");
+		
+		// 未设置更新字段则更新所有非键字段
+		if ( sql.getDuplicateKeyUpdateMap().isEmpty() )
+			sql.onDuplicateKeyUpdate();
+		
+		return insert(sql);
+	}
+	
+	/**
+	 * 流式批量新增数据，从迭代器中逐条读取数据，每满chunkSize条执行一次新增，内存占用只和chunkSize相关，所有数据在同一事务中新增
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月2日
+	 * @param sql 数据新增语句，数据列表作为批次缓冲区，已添加的数据会随第一批一起新增
+	 * @param iterator 数据迭代器
+	 * @param chunkSize 每批新增数据数量
+	 * @return 
+	 */
+	public int insertAll(MySqlInsert<T> sql, Iterator<T> iterator, int chunkSize) {
+		return insertAll(sql, iterator, chunkSize, false);
+	}
+	
+	/**
+	 * 流式批量新增数据，从数据流中逐条读取数据，每满chunkSize条执行一次新增，内存占用只和chunkSize相关，所有数据在同一事务中新增。
+	 * 新增完成或失败后关闭数据流
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月2日
+	 * @param sql 数据新增语句，数据列表作为批次缓冲区，已添加的数据会随第一批一起新增
+	 * @param stream 数据流
+	 * @param chunkSize 每批新增数据数量
+	 * @return 
+	 */
+	public int insertAll(MySqlInsert<T> sql, Stream<T> stream, int chunkSize) {
+		return insertAll(sql, stream, chunkSize, false);
+	}
+	
+	/**
+	 * 流式批量新增数据，从数据流中逐条读取数据，见{@link #insertAll(MySqlInsert, Iterator, int, boolean)}。
+	 * 新增完成或失败后关闭数据流（如文件、游标数据流）
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月2日
+	 * @param sql 数据新增语句，数据列表作为批次缓冲区，已添加的数据会随第一批一起新增
+	 * @param stream 数据流
+	 * @param chunkSize 每批新增数据数量
+	 * @param commitPerChunk 是否每批单独提交
+	 * @return 
+	 */
+	public int insertAll(MySqlInsert<T> sql, Stream<T> stream, int chunkSize, boolean commitPerChunk) {
+		Assert.notNull(stream, "数据流不能为空");
+		
+		try ( Stream<T> closeableStream = stream ) {
+			return insertAll(sql, closeableStream.iterator(), chunkSize, commitPerChunk);
+		}
+	}
+	
+	/**
+	 * 流式批量新增数据，从迭代器中逐条读取数据，每满chunkSize条执行一次新增，内存占用只和chunkSize相关
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月2日
+	 * @param sql 数据新增语句，数据列表作为批次缓冲区，已添加的数据会随第一批一起新增
+	 * @param iterator 数据迭代器
+	 * @param chunkSize 每批新增数据数量
+	 * @param commitPerChunk 是否每批单独提交（true：每批在独立事务中新增并提交，失败时已提交的批次不回滚；false：所有数据在同一事务中新增）
+	 * @return 
+	 */
+	public int insertAll(MySqlInsert<T> sql, Iterator<T> iterator, int chunkSize, boolean commitPerChunk) {
+		Assert.notNull(sql, "新增语句不能为空");
+		Assert.notNull(iterator, "数据迭代器不能为空");
+		Assert.isTrue(chunkSize>0, "每批新增数据数量需要大于0");
+		
+		// 所有数据在同一事务中新增
+		if ( !commitPerChunk )
+			return executeInTransaction(TransactionDefinition.PROPAGATION_REQUIRED, () -> doInsertAll(sql, iterator, chunkSize, false));
+		
+		return doInsertAll(sql, iterator, chunkSize, true);
+	}
+	
+	/**
+	 * 流式批量新增数据
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月2日
+	 * @param sql 数据新增语句
+	 * @param iterator 数据迭代器
+	 * @param chunkSize 每批新增数据数量
+	 * @param commitPerChunk 是否每批单独提交
+	 * @return 
+	 */
+	private int doInsertAll(MySqlInsert<T> sql, Iterator<T> iterator, int chunkSize, boolean commitPerChunk) {
+		// 批次缓冲区，每批新增后清空重复使用
+		List<T> buffer = sql.getDataList();
+		// 批量新增成功条数
+		int count = 0;
+		// 逐条读取数据，缓冲区满则新增
+		while ( iterator.hasNext() ) {
+			// 添加数据（设置默认值）
+			sql.value(iterator.next());
+			// 缓冲区已满则新增
+			if ( buffer.size()>=chunkSize ) {
+				count += insertChunk(sql, commitPerChunk);
+				buffer.clear();
+			}
+		}
+		// 新增剩余数据
+		if ( !buffer.isEmpty() ) {
+			count += insertChunk(sql, commitPerChunk);
+			buffer.clear();
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * 多线程并发批量新增数据，数据按chunkSize拆分成多批，由parallelism个线程分别使用连接池中的连接并发新增，每批在独立事务中提交。
+	 * 适用于不要求整体原子性的初始化导入，失败时已提交的批次不回滚
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月3日
+	 * @param sql 数据新增语句
+	 * @param chunkSize 每批新增数据数量
+	 * @param parallelism 并发线程数
+	 * @return 
+	 */
+	public int insertParallel(MySqlInsert<T> sql, int chunkSize, int parallelism) {
+		return insertParallel(sql, chunkSize, parallelism, DEFAULT_MAX_RETRIES, null);
+	}
+	
+	/**
+	 * 多线程并发批量新增数据，数据按chunkSize拆分成多批，由parallelism个线程分别使用连接池中的连接并发新增，每批在独立事务中提交。
+	 * 适用于不要求整体原子性的初始化导入，失败时已提交的批次不回滚
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月3日
+	 * @param sql 数据新增语句
+	 * @param chunkSize 每批新增数据数量
+	 * @param parallelism 并发线程数
+	 * @param maxRetries 每批失败后的最大重试次数
+	 * @param progress 进度回调，参数为已完成新增的连续数据条数（数据列表中该位置之前的数据均已提交），按数据顺序回调，可用于失败后从该位置继续导入
+	 * @return 
+	 */
+	public int insertParallel(MySqlInsert<T> sql, int chunkSize, int parallelism, int maxRetries, LongConsumer progress) {
+		Assert.notNull(sql, "新增语句不能为空");
+		Assert.isTrue(chunkSize>0, "每批新增数据数量需要大于0");
+		Assert.isTrue(parallelism>0, "并发线程数需要大于0");
+		Assert.isTrue(maxRetries>=0, "最大重试次数不能小于0");
+		
+		// 获取新增数据列表
+		List<T> dataList = sql.getDataList();
+		if ( CollectionUtils.isEmpty(dataList) )
+			return 0;
+		// 复制数据列表，避免调用方修改数据列表影响并发新增
+		dataList = new ArrayList<>(dataList);
+		// 批次数量
+		int listSize = dataList.size();
+		int chunkCount = (listSize + chunkSize - 1) / chunkSize;
+		// 创建线程池
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, chunkCount), MybatisUtil.newDaemonThreadFactory("mysql-insert"));
+		try {
+			// 提交每批数据的新增任务，每批使用独立的新增语句
+			List<Future<Integer>> futureList = new ArrayList<>(chunkCount);
+			for ( int i=0; i<chunkCount; i++ ) {
+				MySqlInsert<T> chunkSql = sql.copy(dataList.subList(i*chunkSize, Math.min((i+1)*chunkSize, listSize)));
+				futureList.add(executor.submit(() -> insertChunkWithRetry(chunkSql, maxRetries)));
+			}
+			// 按批次顺序等待结果，回调连续完成的数据条数
+			int count = 0;
+			long finishedCount = 0;
+			for ( int i=0; i<chunkCount; i++ ) {
+				try {
+					count += futureList.get(i).get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("第" + (i+1) + "批数据新增失败，已连续完成新增" + finishedCount + "条数据", e.getCause());
+				}
+				finishedCount = Math.min((long) (i+1)*chunkSize, listSize);
+				if ( progress!=null )
+					progress.accept(finishedCount);
+			}
+			
+			return count;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("批量新增数据被中断", e);
+		} finally {
+			// 关闭线程池，失败时取消未执行的批次
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * 在独立事务中新增一批数据，死锁、锁等待超时、连接中断等暂时性失败后重试，其他失败（如唯一键冲突、数据错误）直接抛出
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月3日
+	 * @param sql 本批次数据新增语句
+	 * @param maxRetries 最大重试次数
+	 * @return 
+	 * @throws InterruptedException 
+	 */
+	private int insertChunkWithRetry(MySqlInsert<T> sql, int maxRetries) throws InterruptedException {
+		for ( int retries=0; ; retries++ ) {
+			try {
+				return insertChunk(sql, true);
+			} catch (RuntimeException e) {
+				// 非暂时性失败或超过最大重试次数则抛出异常
+				if ( !isTransient(e) || retries>=maxRetries )
+					throw e;
+				// 等待一段时间后重试，等待时间逐次增加
+				Thread.sleep(RETRY_INTERVAL * (retries+1));
+			}
+		}
+	}
+	
+	/**
+	 * 是否为重试后可能成功的暂时性失败，如死锁、锁等待超时、查询超时、连接中断
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月3日
+	 * @param e 异常
+	 * @return 
+	 */
+	static boolean isTransient(RuntimeException e) {
+		return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException;
+	}
+	
+	/**
+	 * 使用load data local infile导入数据，数据从迭代器中逐条读取并编码成制表符分隔格式，通过驱动的本地文件输入流直接发送，不落地到磁盘。
+	 * 导入前按新增语句的规则设置默认值和字符串主键，需要在数据库连接地址中开启allowLoadLocalInfile=true，数据库开启local_infile。<br>
+	 * 数据库对local导入按ignore处理：主键或唯一键重复的数据被跳过，类型转换失败、超长的值被截断，都只产生警告。
+	 * 导入条数与读取的数据条数不一致或产生警告时抛出DataIntegrityViolationException（含前几条警告信息），事务回滚
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月4日
+	 * @param sql 数据新增语句，用于指定表实体类型和自定义表名
+	 * @param iterator 数据迭代器
+	 * @return 
+	 */
+	@Transactional
+	public int load(MySqlInsert<T> sql, Iterator<T> iterator) {
+		Assert.notNull(sql, "新增语句不能为空");
+		Assert.notNull(iterator, "数据迭代器不能为空");
+		
+		// 生成导入语句
+		String loadSql = sql.toLoadDataString();
+		// 获取数据库连接，存在事务时使用事务中的连接
+		DataSource dataSource = getDataSource();
+		Connection connection = DataSourceUtils.getConnection(dataSource);
+		try (Statement statement = connection.createStatement()) {
+			// 设置驱动的本地文件输入流
+			MySqlLoadDataInputStream<T> inputStream = new MySqlLoadDataInputStream<T>(sql, iterator);
+			statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(inputStream);
+			// 导入数据
+			int count = statement.executeUpdate(loadSql);
+			// 重复数据被跳过或数据被截断时只有警告，按失败处理
+			SQLWarning warning = statement.getWarnings();
+			if ( count!=inputStream.getCount() || warning!=null ) {
+				StringBuilder message = new StringBuilder("导入数据" + inputStream.getCount() + "条，成功" + count + "条");
+				for ( int i=0; warning!=null && i<MAX_LOAD_WARNINGS; i++, warning=warning.getNextWarning() ) {
+					message.append(i==0 ? "：" : "；");
+					message.append(warning.getMessage());
+				}
+				throw new DataIntegrityViolationException(message.toString());
+			}
+			
+			return count;
+		} catch (SQLException e) {
+			throw new SQLErrorCodeSQLExceptionTranslator(dataSource).translate("load data", loadSql, e);
+		} finally {
+			DataSourceUtils.releaseConnection(connection, dataSource);
+		}
+	}
+	
+	/**
+	 * 使用load data local infile导入数据，数据从数据流中逐条读取，导入结束后关闭数据流，见{@link #load(MySqlInsert, Iterator)}
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月4日
+	 * @param sql 数据新增语句，用于指定表实体类型和自定义表名
+	 * @param stream 数据流
+	 * @return 
+	 */
+	@Transactional
+	public int load(MySqlInsert<T> sql, Stream<T> stream) {
+		Assert.notNull(stream, "数据流不能为空");
+		
+		try ( Stream<T> closeableStream = stream ) {
+			return load(sql, closeableStream.iterator());
+		}
+	}
+	
+	/**
+	 * 新增一批数据
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月2日
+	 * @param sql 数据新增语句
+	 * @param commitPerChunk 是否单独提交
+	 * @return 
+	 */
+	private int insertChunk(MySqlInsert<T> sql, boolean commitPerChunk) {
+		// 在独立事务中新增并提交
+		if ( commitPerChunk )
+			return executeInTransaction(TransactionDefinition.PROPAGATION_REQUIRES_NEW, () -> mysqlMapper.insert(sql));
+		
+		return mysqlMapper.insert(sql);
+	}
+	
+	/**
+	 * 在事务中执行操作，未配置事务管理器时直接执行
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月2日
+	 * @param propagation 事务传播行为，取值见TransactionDefinition
+	 * @param action 要执行的操作
+	 * @return 
+	 */
+	private <R> R executeInTransaction(int propagation, Supplier<R> action) {
+		// 未配置事务管理器则直接执行
+		if ( transactionManager==null )
+			return action.get();
+		
+		// 创建事务模板
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setPropagationBehavior(propagation);
+		
+		return transactionTemplate.execute(status -> action.get());
+	}
+	
+	/**
+	 * 获取按主键排序的比较器
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月6日
+	 * @param primaryKey 主键属性
+	 * @return 
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static <D> Comparator<D> primaryKeyComparator(String primaryKey) {
+		return (a, b) -> {
+			Comparable valueA = (Comparable) ReflectUtil.getFieldValue(a, primaryKey);
+			Comparable valueB = (Comparable) ReflectUtil.getFieldValue(b, primaryKey);
+			return valueA.compareTo(valueB);
+		};
+	}
+	
+	/**
+	 * 数据对象的乐观锁版本号加1
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月10日
+	 * @param data 数据对象
+	 * @param versionKey 版本号属性
+	 */
+	static void setNextVersion(Object data, String versionKey) {
+		Object version = ReflectUtil.getFieldValue(data, versionKey);
+		if ( version instanceof Long )
+			ReflectUtil.setFieldValue(data, versionKey, (Long) version + 1);
+		else
+			ReflectUtil.setFieldValue(data, versionKey, (Integer) version + 1);
+	}
+	
+	/**
+	 * 获取mybatis使用的数据源
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月4日
+	 * @return 
+	 */
+	private DataSource getDataSource() {
+		Assert.notNull(sqlSessionFactory, "未配置SqlSessionFactory");
+		
+		return sqlSessionFactory.getConfiguration().getEnvironment().getDataSource();
+	}
+	
+	/**
+	 * 获取数据库允许的最大数据包字节数，只查询一次
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月1日
+	 * @return 
+	 */
+	private long getMaxAllowedPacket() {
+		if ( maxAllowedPacket<=0 ) {
+			maxAllowedPacket = mysqlMapper.selectMaxAllowedPacket();
+		}
+		
+		return maxAllowedPacket;
+	}
+	
+	/**
+	 * 获取新增数据的自适应批次数量，初始值根据字段宽度及数据包大小计算
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月1日
+	 * @param sql 数据新增语句
+	 * @param maxBatchBytes 每批数据的最大字节数
+	 * @return 
+	 */
+	private AdaptiveBatchSize getInsertBatchSize(MySqlInsert<T> sql, long maxBatchBytes) {
+		if ( insertBatchSize==null ) {
+			synchronized (this) {
+				if ( insertBatchSize==null ) {
+					// 受单条语句参数数量限制的最大条数
+					int maxSize = Math.max(1, MAX_PLACEHOLDER_COUNT / Math.max(sql.getColumnCount(), 1));
+					// 按字段宽度估算的初始条数，不超过原默认值
+					long initSize = Math.min(DEFAULT_INSERT_COUNT, maxBatchBytes / sql.getRowWidth());
+					// 创建自适应批次数量
+					insertBatchSize = new AdaptiveBatchSize((int) initSize, Math.min(MIN_INSERT_COUNT, maxSize), maxSize);
+				}
+			}
+		}
+		
+		return insertBatchSize;
+	}
+	
+	/**
+	 * 数据更新。最新数据对象是通过记录快照的查询（{@link MySqlSelect#snapshot()}）查出来的时，
+	 * 只更新和快照相比发生变化的字段，没有字段变化时不执行更新并返回0。
+	 * 按数据对象更新且表存在乐观锁版本号（@Version）时，版本号不一致（数据已被他人修改或删除）抛出OptimisticLockingFailureException，更新成功后数据对象的版本号加1
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年6月20日
+	 * @param sql 数据更新语句
+	 * @return 
+	 */
+	@Transactional
+	public int update(MySqlUpdate<T> sql) {
+		Assert.notNull(sql, "更新语句不能为空");
+		
+		// 获取最新数据对象和快照相比发生变化的属性
+		T data = sql.getData();
+		Set<String> changedFieldSet = data==null ? null : SnapshotCacheUtil.getChangedFields(data);
+		// 移除未发生变化的属性
+		if ( changedFieldSet!=null ) {
+			for ( String fieldName : new ArrayList<>(sql.getDataFieldSet()) ) {
+				if ( !changedFieldSet.contains(fieldName) )
+					sql.removeDataField(fieldName);
+			}
+			// 没有需要更新的字段（版本号除外）则不执行更新
+			int expressionCount = sql.getExpressionMap().size();
+			if ( sql.getVersion()!=null )
+				expressionCount--;
+			if ( expressionCount<=0 )
+				return 0;
+		}
+		
+		// 数据更新
+		int count = mysqlMapper.update(sql);
+		// 乐观锁版本号处理
+		if ( sql.getVersion()!=null ) {
+			// 版本号不一致
+			if ( count==0 )
+				throw new OptimisticLockingFailureException("数据已被修改或删除，请刷新后重试");
+			// 数据对象版本号加1
+			setNextVersion(data, TableCacheUtil.getTableCache(sql.getTableCls()).getVersionKey());
+		}
+		// 更新成功后刷新快照，存在事务时在事务提交后刷新
+		if ( changedFieldSet!=null && count>0 ) {
+			if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+					@Override
+					public void afterCommit() {
+						SnapshotCacheUtil.put(data);
+					}
+				});
+			} else {
+				SnapshotCacheUtil.put(data);
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * 批量更新数据，按主键将多条不同的数据合并成一条语句更新，见{@link #updateBatch(MySqlBatchUpdate, int)}
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月6日
+	 * @param tableCls 表实体类型
+	 * @param dataList 数据列表，主键不能为空
+	 * @param fields 要更新的属性，未设置则更新除主键以外的所有字段，属性值为空时更新为空值
+	 * @return 
+	 */
+	@Transactional
+	public int updateBatch(Class<T> tableCls, List<T> dataList, String... fields) {
+		Assert.notNull(tableCls, "表实体类型不能为空");
+		Assert.notEmpty(dataList, "数据列表不能为空");
+		
+		// 创建批量更新语句
+		MySqlBatchUpdate<T> sql = new MySqlBatchUpdate<T>(tableCls);
+		sql.fields(fields).dataList(dataList);
+		
+		return updateBatch(sql, DEFAULT_UPDATE_COUNT);
+	}
+	
+	/**
+	 * 批量更新数据，按主键将多条不同的数据合并成一条语句更新，见{@link #updateBatch(MySqlBatchUpdate, int)}
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月6日
+	 * @param sql 数据批量更新语句
+	 * @return 
+	 */
+	@Transactional
+	public int updateBatch(MySqlBatchUpdate<T> sql) {
+		return updateBatch(sql, DEFAULT_UPDATE_COUNT);
+	}
+	
+	/**
+	 * 批量更新数据，按主键将多条不同的数据合并成一条语句更新，每条语句最多更新maxCount条数据。
+	 * 数据按主键排序后再分批更新，保证并发批量更新时按相同顺序加锁，避免死锁。
+	 * 数据列表中主键不能重复（添加数据时校验）。表存在乐观锁版本号（@Version）时任一数据版本号不一致抛出OptimisticLockingFailureException，全部更新成功后数据对象的版本号加1
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月6日
+	 * @param sql 数据批量更新语句
+	 * @param maxCount 每次最大更新数据数量
+	 * @return 
+	 */
+	@Transactional
+	public int updateBatch(MySqlBatchUpdate<T> sql, int maxCount) {
+		Assert.notNull(sql, "批量更新语句不能为空");
+		Assert.isTrue(maxCount>0, "每次最大更新数据数量需要大于0");
+		
+		// 获取更新数据列表
+		List<T> dataList = sql.getDataList();
+		if ( CollectionUtils.isEmpty(dataList) )
+			return 0;
+		// 获取表缓存信息
+		TableCache tableCache = TableCacheUtil.getTableCache(sql.getTableCls());
+		// 乐观锁版本号属性，累加模式不处理版本号
+		String versionKey = sql.isIncrement() ? null : tableCache.getVersionKey();
+		// 每条数据的参数数量：主键条件（及版本号条件）及每个字段的主键、值
+		int paramCount = sql.getUpdateColumnList().size() * 2 + (versionKey==null ? 1 : 2);
+		// 受单条语句参数数量限制的最大条数
+		maxCount = Math.max(1, Math.min(maxCount, MAX_PLACEHOLDER_COUNT / paramCount));
+		// 复制数据列表并按主键排序
+		String primaryKey = tableCache.getPrimaryKey();
+		List<T> sortedList = new ArrayList<>(dataList);
+		sortedList.sort(primaryKeyComparator(primaryKey));
+		// 批量更新成功条数
+		int count = 0;
+		// 待批量更新数据条数
+		int listSize = sortedList.size();
+		// 分批更新数据
+		int currentIndex = 0;
+		try {
+			while ( currentIndex<listSize ) {
+				// 拆分数据
+				List<T> subList = sortedList.subList(currentIndex, Math.min(currentIndex+maxCount, listSize));
+				sql.batch(subList);
+				// 数据更新
+				int subCount = mysqlMapper.updateBatch(sql);
+				// 存在版本号时，更新条数不一致说明有数据已被他人修改或删除
+				if ( versionKey!=null && subCount!=subList.size() )
+					throw new OptimisticLockingFailureException("批量更新的数据中有" + (subList.size()-subCount) + "条已被修改或删除，请刷新后重试");
+				count += subCount;
+				// 索引处理
+				currentIndex += maxCount;
+			}
+		} finally {
+			// 恢复数据列表
+			sql.batch(dataList);
+		}
+		// 全部更新成功后数据对象版本号加1
+		if ( versionKey!=null ) {
+			for ( T data : sortedList ) {
+				setNextVersion(data, versionKey);
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * 数据删除
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年6月20日
+	 * @param sql 数据删除语句
+	 * @return 
+	 */
+	@Transactional
+	public int delete(MySqlDelete<T> sql) {
+		Assert.notNull(sql, "删除语句不能为空");
+		
+		// 数据删除
+		int count = mysqlMapper.delete(sql);
+		
+		return count;
+	}
+	
+	/**
+	 * 分批删除数据，见{@link #deleteInChunks(MySqlDelete, int, long, int, LongConsumer)}
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月7日
+	 * @param sql 数据删除语句
+	 * @param chunkSize 每批删除数据数量
+	 * @param pause 每批删除后的暂停时间（毫秒）
+	 * @return 
+	 */
+	public int deleteInChunks(MySqlDelete<T> sql, int chunkSize, long pause) {
+		return deleteInChunks(sql, chunkSize, pause, 0, null);
+	}
+	
+	/**
+	 * 分批删除数据，每批在独立的短事务中删除并提交，避免大量删除长时间持有锁、产生大量undo日志及主从延迟。
+	 * 单表删除时按主键顺序使用limit删除；存在关联条件时（mysql多表删除不支持limit）先按主键顺序查询一批主键再按主键删除。
+	 * 失败时已提交的批次不回滚
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月7日
+	 * @param sql 数据删除语句
+	 * @param chunkSize 每批删除数据数量
+	 * @param pause 每批删除后的暂停时间（毫秒）
+	 * @param maxRowsPerSecond 每秒最多删除的数据条数，小于等于0则不限制
+	 * @param progress 进度回调，参数为已删除的数据条数
+	 * @return 
+	 */
+	public int deleteInChunks(MySqlDelete<T> sql, int chunkSize, long pause, int maxRowsPerSecond, LongConsumer progress) {
+		Assert.notNull(sql, "删除语句不能为空");
+		Assert.isTrue(chunkSize>0, "每批删除数据数量需要大于0");
+		Assert.isTrue(pause>=0, "暂停时间不能小于0");
+		
+		// 记录原有的限制条件，删除完成后恢复
+		Integer limit = sql.getLimit();
+		Collection<?> primaryKeys = sql.getPrimaryKeys();
+		// 开始时间
+		long startTime = System.nanoTime();
+		// 已删除数据条数
+		int count = 0;
+		try {
+			sql.limit(chunkSize);
+			while ( true ) {
+				// 在独立事务中删除一批数据，返回本批匹配的数据条数及删除的数据条数
+				int[] result = executeInTransaction(TransactionDefinition.PROPAGATION_REQUIRES_NEW, () -> deleteChunk(sql, primaryKeys));
+				count += result[1];
+				if ( progress!=null )
+					progress.accept(count);
+				// 不足一批则删除完毕
+				if ( result[0]<chunkSize )
+					break;
+				// 暂停，限速时等待到删除速度不超过限制
+				long sleepMillis = pause;
+				if ( maxRowsPerSecond>0 ) {
+					long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+					sleepMillis = Math.max(sleepMillis, count * 1000L / maxRowsPerSecond - elapsedMillis);
+				}
+				if ( sleepMillis>0 )
+					Thread.sleep(sleepMillis);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("分批删除数据被中断，已删除" + count + "条数据", e);
+		} finally {
+			// 恢复限制条件
+			sql.limit(limit);
+			sql.primaryKeys(primaryKeys);
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * 删除一批数据
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月7日
+	 * @param sql 数据删除语句，已设置limit
+	 * @param primaryKeys 原有限定的主键值集合
+	 * @return 本批匹配的数据条数及删除的数据条数
+	 */
+	private int[] deleteChunk(MySqlDelete<T> sql, Collection<?> primaryKeys) {
+		// 单表删除直接使用limit
+		if ( !sql.hasJoin() ) {
+			int count = mysqlMapper.delete(sql);
+			return new int[] { count, count };
+		}
+		
+		// 关联删除先查询一批主键
+		List<Object> primaryKeyList = mysqlMapper.selectDeletePrimaryKey(sql.primaryKeys(primaryKeys));
+		if ( primaryKeyList.isEmpty() )
+			return new int[] { 0, 0 };
+		// 按主键删除，同时保留原有条件
+		try {
+			int count = mysqlMapper.delete(sql.primaryKeys(primaryKeyList));
+			return new int[] { primaryKeyList.size(), count };
+		} finally {
+			sql.primaryKeys(primaryKeys);
+		}
+	}
+	
+	/**
+	 * 延迟新增数据，存在事务时登记到当前事务的工作单元中，事务提交前和同一张表的其他延迟新增合并成一条语句新增；没有事务时立即新增。
+	 * 延迟新增的数据在提交前查询不到，自增主键在提交前才回写，需要引用自增主键的关联数据请勿延迟新增
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月11日
+	 * @param tableCls 表实体类型
+	 * @param data 数据对象
+	 */
+	public void deferInsert(Class<T> tableCls, T data) {
+		Assert.notNull(tableCls, "表实体类型不能为空");
+		Assert.notNull(data, "数据不能为空");
+		
+		// 获取当前事务的工作单元
+		MySqlUnitOfWork unitOfWork = MySqlUnitOfWork.getCurrent();
+		if ( unitOfWork==null ) {
+			insert(new MySqlInsert<T>(tableCls).value(data));
+			return;
+		}
+		
+		unitOfWork.insert(this, tableCls, data);
+	}
+	
+	/**
+	 * 延迟更新数据，存在事务时登记到当前事务的工作单元中（记录登记时的字段值），同一主键的多次更新合并，
+	 * 事务提交前按更新字段分组批量更新，见{@link #updateBatch(MySqlBatchUpdate)}；没有事务时立即更新
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月11日
+	 * @param tableCls 表实体类型
+	 * @param data 数据对象，主键不能为空
+	 * @param fields 要更新的属性，未设置则更新除主键、版本号以外所有值不为空的属性
+	 */
+	public void deferUpdate(Class<T> tableCls, T data, String... fields) {
+		Assert.notNull(tableCls, "表实体类型不能为空");
+		Assert.notNull(data, "数据不能为空");
+		
+		// 获取当前事务的工作单元
+		MySqlUnitOfWork unitOfWork = MySqlUnitOfWork.getCurrent();
+		if ( unitOfWork==null ) {
+			if ( fields==null || fields.length==0 )
+				update(new MySqlUpdate<T>(tableCls).data(data));
+			else
+				updateBatch(tableCls, Collections.singletonList(data), fields);
+			return;
+		}
+		
+		unitOfWork.update(this, tableCls, data, fields);
+	}
+	
+	/**
+	 * 延迟删除数据，存在事务时登记到当前事务的工作单元中，事务提交前按主键in批量删除；没有事务时立即删除
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月11日
+	 * @param tableCls 表实体类型
+	 * @param data 数据对象，主键不能为空
+	 */
+	public void deferDelete(Class<T> tableCls, T data) {
+		Assert.notNull(tableCls, "表实体类型不能为空");
+		Assert.notNull(data, "数据不能为空");
+		
+		// 获取主键值
+		String primaryKey = TableCacheUtil.getTableCache(tableCls).getPrimaryKey();
+		Object primaryKeyValue = ReflectUtil.getFieldValue(data, primaryKey);
+		if ( primaryKeyValue==null )
+			throw new IllegalArgumentException(primaryKey + " 不能为空");
+		// 获取当前事务的工作单元
+		MySqlUnitOfWork unitOfWork = MySqlUnitOfWork.getCurrent();
+		if ( unitOfWork==null ) {
+			MySqlDelete<T> sql = new MySqlDelete<T>(tableCls);
+			sql.andEqualTo(primaryKey, primaryKeyValue);
+			delete(sql);
+			return;
+		}
+		
+		unitOfWork.delete(this, tableCls, primaryKeyValue);
+	}
+	
+	/**
+	 * 立即执行当前事务中已登记的延迟操作，用于提交前需要查询到延迟操作结果的场景
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月11日
+	 */
+	public void flushDeferred() {
+		MySqlUnitOfWork unitOfWork = MySqlUnitOfWork.getCurrent();
+		if ( unitOfWork!=null )
+			unitOfWork.flush();
+	}
+	
 }
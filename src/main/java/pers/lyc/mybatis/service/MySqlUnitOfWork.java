@@ -0,0 +1,360 @@
+package pers.lyc.mybatis.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import cn.hutool.core.util.ReflectUtil;
+import pers.lyc.mybatis.core.cache.ColumnCache;
+import pers.lyc.mybatis.core.cache.JoinCache;
+import pers.lyc.mybatis.core.cache.TableCache;
+import pers.lyc.mybatis.core.sql.mysql.MySqlBatchUpdate;
+import pers.lyc.mybatis.core.sql.mysql.MySqlDelete;
+import pers.lyc.mybatis.core.sql.mysql.MySqlInsert;
+import pers.lyc.mybatis.util.TableCacheUtil;
+
+/**
+ * 事务范围的工作单元，收集事务中延迟执行的新增、更新、删除操作，在事务提交前按表合并后批量执行：<br>
+ * 同一张表的新增合并成多条数据新增，同一主键的更新合并后按更新字段分组批量更新，删除合并成按主键in删除。<br>
+ * 执行顺序根据@Join关联关系确定：先按被关联表到关联表的顺序新增、更新，再按相反的顺序删除
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月11日
+ */
+public class MySqlUnitOfWork {
+	
+	/** 每条删除语句最多删除的主键数量 */
+	private static final int DELETE_COUNT = 1000;
+	
+	/** 各表的延迟操作，按首次登记顺序保存 */
+	private Map<Class<?>, TableOperation<?>> operationMap = new LinkedHashMap<>();
+	
+	private MySqlUnitOfWork() {
+		
+	}
+	
+	/**
+	 * 获取当前事务的工作单元，不存在则创建并绑定到当前事务
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月11日
+	 * @return 当前没有事务时返回null
+	 */
+	static MySqlUnitOfWork getCurrent() {
+		// 当前没有事务
+		if ( !TransactionSynchronizationManager.isActualTransactionActive() || !TransactionSynchronizationManager.isSynchronizationActive() )
+			return null;
+		
+		// 获取已绑定的工作单元
+		MySqlUnitOfWork unitOfWork = (MySqlUnitOfWork) TransactionSynchronizationManager.getResource(MySqlUnitOfWork.class);
+		if ( unitOfWork!=null )
+			return unitOfWork;
+		
+		// 创建工作单元并绑定到当前事务，事务提交前执行，挂起时解绑，恢复时重新绑定
+		MySqlUnitOfWork newUnitOfWork = new MySqlUnitOfWork();
+		TransactionSynchronizationManager.bindResource(MySqlUnitOfWork.class, newUnitOfWork);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void suspend() {
+				TransactionSynchronizationManager.unbindResourceIfPossible(MySqlUnitOfWork.class);
+			}
+			
+			@Override
+			public void resume() {
+				TransactionSynchronizationManager.bindResource(MySqlUnitOfWork.class, newUnitOfWork);
+			}
+			
+			@Override
+			public void beforeCommit(boolean readOnly) {
+				newUnitOfWork.flush();
+			}
+			
+			@Override
+			public void afterCompletion(int status) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(MySqlUnitOfWork.class);
+			}
+		});
+		
+		return newUnitOfWork;
+	}
+	
+	/**
+	 * 登记新增操作
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月11日
+	 * @param service 数据表对应的service
+	 * @param tableCls 表实体类型
+	 * @param data 数据对象
+	 */
+	<T> void insert(MySqlService<T> service, Class<T> tableCls, T data) {
+		TableOperation<T> operation = getOperation(service, tableCls);
+		// 同一主键已登记删除时，先执行已登记的操作，保证先删除后新增
+		Object primaryKey = ReflectUtil.getFieldValue(data, operation.tableCache.getPrimaryKey());
+		if ( primaryKey!=null && operation.deleteSet.contains(primaryKey) )
+			flush();
+		
+		// 执行后已登记的操作已清空，需重新获取
+		getOperation(service, tableCls).insertList.add(data);
+	}
+	
+	/**
+	 * 登记更新操作，同一主键的更新合并，后登记的字段值覆盖先登记的字段值
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月11日
+	 * @param service 数据表对应的service
+	 * @param tableCls 表实体类型
+	 * @param data 数据对象
+	 * @param fields 要更新的属性，未设置则更新除主键、版本号以外所有值不为空的属性
+	 */
+	<T> void update(MySqlService<T> service, Class<T> tableCls, T data, String[] fields) {
+		TableOperation<T> operation = getOperation(service, tableCls);
+		TableCache tableCache = operation.tableCache;
+		// 获取主键值
+		Object primaryKey = ReflectUtil.getFieldValue(data, tableCache.getPrimaryKey());
+		if ( primaryKey==null )
+			throw new IllegalArgumentException(tableCache.getPrimaryKey() + " 不能为空");
+		// 获取已登记的更新，不存在则创建
+		UpdateEntry<T> entry = operation.updateMap.get(primaryKey);
+		if ( entry==null ) {
+			entry = new UpdateEntry<>();
+			if ( tableCache.getVersionKey()!=null ) {
+				entry.version = ReflectUtil.getFieldValue(data, tableCache.getVersionKey());
+				if ( entry.version==null )
+					throw new IllegalArgumentException(tableCache.getVersionKey() + " 不能为空");
+			}
+			operation.updateMap.put(primaryKey, entry);
+		}
+		entry.sourceList.add(data);
+		// 记录登记时的字段值
+		if ( fields!=null && fields.length>0 ) {
+			for ( String field : fields ) {
+				if ( !tableCache.getColumnCacheMap().containsKey(field) )
+					throw new IllegalArgumentException("属性"+field+"不存在");
+				entry.valueMap.put(field, ReflectUtil.getFieldValue(data, field));
+			}
+		} else {
+			for ( ColumnCache columnCache : tableCache.getColumnCacheMap().values() ) {
+				String field = columnCache.getFieldName();
+				if ( field.equals(tableCache.getPrimaryKey()) || field.equals(tableCache.getVersionKey()) )
+					continue;
+				Object value = ReflectUtil.getFieldValue(data, field);
+				if ( value!=null )
+					entry.valueMap.put(field, value);
+			}
+		}
+	}
+	
+	/**
+	 * 登记删除操作，同时取消该主键已登记的更新
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月11日
+	 * @param service 数据表对应的service
+	 * @param tableCls 表实体类型
+	 * @param primaryKey 主键值
+	 */
+	<T> void delete(MySqlService<T> service, Class<T> tableCls, Object primaryKey) {
+		TableOperation<T> operation = getOperation(service, tableCls);
+		operation.updateMap.remove(primaryKey);
+		operation.deleteSet.add(primaryKey);
+	}
+	
+	/**
+	 * 执行已登记的操作：按关联关系顺序新增、更新，再按相反顺序删除
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月11日
+	 */
+	void flush() {
+		// 按关联关系排序
+		List<TableOperation<?>> operationList = sortByJoin();
+		// 清空已登记的操作，执行过程中登记的操作在下次执行
+		operationMap.clear();
+		// 被关联表先新增、更新
+		for ( TableOperation<?> operation : operationList ) {
+			operation.flushInsert();
+		}
+		for ( TableOperation<?> operation : operationList ) {
+			operation.flushUpdate();
+		}
+		// 关联表先删除
+		Collections.reverse(operationList);
+		for ( TableOperation<?> operation : operationList ) {
+			operation.flushDelete();
+		}
+	}
+	
+	/**
+	 * 获取表的延迟操作，不存在则创建
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月11日
+	 * @param service 数据表对应的service
+	 * @param tableCls 表实体类型
+	 * @return 
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> TableOperation<T> getOperation(MySqlService<T> service, Class<T> tableCls) {
+		return (TableOperation<T>) operationMap.computeIfAbsent(tableCls, cls -> new TableOperation<>(service, tableCls));
+	}
+	
+	/**
+	 * 按@Join关联关系排序，被关联表排在关联表之前
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月11日
+	 * @return 
+	 */
+	private List<TableOperation<?>> sortByJoin() {
+		List<TableOperation<?>> operationList = new ArrayList<>(operationMap.size());
+		Set<Class<?>> visitedSet = new HashSet<>();
+		for ( Class<?> tableCls : operationMap.keySet() ) {
+			visit(tableCls, visitedSet, operationList);
+		}
+		
+		return operationList;
+	}
+	
+	/**
+	 * 深度优先遍历，先添加被关联表，存在循环关联时按登记顺序
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月11日
+	 * @param tableCls 表实体类型
+	 * @param visitedSet 已遍历的表实体类型
+	 * @param operationList 排序结果
+	 */
+	private void visit(Class<?> tableCls, Set<Class<?>> visitedSet, List<TableOperation<?>> operationList) {
+		if ( !visitedSet.add(tableCls) )
+			return;
+		
+		// 先添加被关联表
+		for ( JoinCache joinCache : TableCacheUtil.getTableCache(tableCls).getJoinCacheMap().values() ) {
+			if ( operationMap.containsKey(joinCache.getJoinTableCls()) )
+				visit(joinCache.getJoinTableCls(), visitedSet, operationList);
+		}
+		operationList.add(operationMap.get(tableCls));
+	}
+	
+	/**
+	 * 单张表的延迟操作
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月11日
+	 */
+	private static class TableOperation<T> {
+		
+		/** 数据表对应的service */
+		private final MySqlService<T> service;
+		/** 表实体类型 */
+		private final Class<T> tableCls;
+		/** 表缓存信息 */
+		private final TableCache tableCache;
+		/** 待新增数据 */
+		private final List<T> insertList = new ArrayList<>();
+		/** 待更新数据（主键 -&gt; 合并后的更新） */
+		private final Map<Object, UpdateEntry<T>> updateMap = new LinkedHashMap<>();
+		/** 待删除数据的主键 */
+		private final Set<Object> deleteSet = new LinkedHashSet<>();
+		
+		private TableOperation(MySqlService<T> service, Class<T> tableCls) {
+			this.service = service;
+			this.tableCls = tableCls;
+			this.tableCache = TableCacheUtil.getTableCache(tableCls);
+		}
+		
+		/**
+		 * 多条数据合并新增
+		 * @author 林运昌（linyunchang）
+		 * @since 2020年7月11日
+		 */
+		private void flushInsert() {
+			if ( insertList.isEmpty() )
+				return;
+			
+			service.insert(new MySqlInsert<T>(tableCls).values(insertList));
+		}
+		
+		/**
+		 * 按更新字段分组批量更新
+		 * @author 林运昌（linyunchang）
+		 * @since 2020年7月11日
+		 */
+		private void flushUpdate() {
+			if ( updateMap.isEmpty() )
+				return;
+			
+			// 按更新字段分组
+			Map<Set<String>, List<Entry<Object, UpdateEntry<T>>>> groupMap = new LinkedHashMap<>();
+			for ( Entry<Object, UpdateEntry<T>> entry : updateMap.entrySet() ) {
+				// 没有要更新的字段
+				if ( entry.getValue().valueMap.isEmpty() )
+					continue;
+				groupMap.computeIfAbsent(new HashSet<>(entry.getValue().valueMap.keySet()), key -> new ArrayList<>()).add(entry);
+			}
+			// 每组批量更新
+			String versionKey = tableCache.getVersionKey();
+			for ( Entry<Set<String>, List<Entry<Object, UpdateEntry<T>>>> group : groupMap.entrySet() ) {
+				// 创建承载合并后字段值的数据对象
+				List<T> dataList = new ArrayList<>(group.getValue().size());
+				for ( Entry<Object, UpdateEntry<T>> entry : group.getValue() ) {
+					T data = ReflectUtil.newInstance(tableCls);
+					ReflectUtil.setFieldValue(data, tableCache.getPrimaryKey(), entry.getKey());
+					if ( versionKey!=null )
+						ReflectUtil.setFieldValue(data, versionKey, entry.getValue().version);
+					for ( Entry<String, Object> value : entry.getValue().valueMap.entrySet() ) {
+						ReflectUtil.setFieldValue(data, value.getKey(), value.getValue());
+					}
+					dataList.add(data);
+				}
+				// 批量更新
+				MySqlBatchUpdate<T> sql = new MySqlBatchUpdate<T>(tableCls);
+				sql.fields(group.getKey().toArray(new String[0])).dataList(dataList);
+				service.updateBatch(sql);
+				// 更新成功后原数据对象版本号加1
+				if ( versionKey!=null ) {
+					for ( Entry<Object, UpdateEntry<T>> entry : group.getValue() ) {
+						for ( T source : entry.getValue().sourceList ) {
+							if ( Objects.equals(ReflectUtil.getFieldValue(source, versionKey), entry.getValue().version) )
+								MySqlService.setNextVersion(source, versionKey);
+						}
+					}
+				}
+			}
+		}
+		
+		/**
+		 * 按主键in批量删除
+		 * @author 林运昌（linyunchang）
+		 * @since 2020年7月11日
+		 */
+		private void flushDelete() {
+			List<Object> primaryKeyList = new ArrayList<>(deleteSet);
+			for ( int i=0; i<primaryKeyList.size(); i+=DELETE_COUNT ) {
+				MySqlDelete<T> sql = new MySqlDelete<T>(tableCls);
+				sql.andIn(tableCache.getPrimaryKey(), primaryKeyList.subList(i, Math.min(i+DELETE_COUNT, primaryKeyList.size())));
+				service.delete(sql);
+			}
+		}
+		
+	}
+	
+	/**
+	 * 同一主键合并后的更新
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月11日
+	 */
+	private static class UpdateEntry<T> {
+		
+		/** 要更新的字段值 */
+		private final Map<String, Object> valueMap = new LinkedHashMap<>();
+		/** 首次登记时的版本号 */
+		private Object version;
+		/** 登记更新的原数据对象 */
+		private final List<T> sourceList = new ArrayList<>();
+		
+	}
+	
+}
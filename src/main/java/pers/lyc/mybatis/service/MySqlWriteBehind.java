@@ -0,0 +1,353 @@
+package pers.lyc.mybatis.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.springframework.util.Assert;
+
+import pers.lyc.mybatis.core.sql.mysql.MySqlInsert;
+import pers.lyc.mybatis.util.MybatisUtil;
+
+/**
+ * 只追加数据表的异步新增通道（write-behind），调用方写入数据后立即返回，不等待数据库，
+ * 数据先写入有界缓冲区及本地日志文件，由后台线程按批新增到数据库。<br>
+ * 缓冲区或日志文件已满时写入方等待（背压），等待期间不持有锁，通道关闭后等待的写入方失败返回；
+ * 进程崩溃后重启时重放日志文件中尚未新增的数据，因此数据可能重复新增，
+ * 适用于允许重复或有唯一约束去重的日志、流水类数据表。<br>
+ * 日志文件只提交已新增成功或已交给失败处理的数据：数据库暂时不可用（死锁、连接中断等）时一直重试，不提交；
+ * 非暂时性失败的数据逐条交给失败处理。日志文件不能被多个进程同时使用；不再使用时需要调用close
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月13日
+ */
+public class MySqlWriteBehind<T> implements AutoCloseable {
+	
+	/** 队列为空时的等待时间（毫秒） */
+	private static final long IDLE_WAIT = 100;
+	/** 关闭后暂时性失败的最大重试次数，超过后放弃，数据保留在日志文件中 */
+	private static final int MAX_RETRIES = 3;
+	/** 新增失败时的重试间隔（毫秒），逐次增加，最多增加到MAX_RETRIES倍 */
+	private static final long RETRY_INTERVAL = 1000;
+	
+	/** 数据表对应的service */
+	private final MySqlService<T> service;
+	/** 表实体类型 */
+	private final Class<T> tableCls;
+	/** 每批最多新增数据数量 */
+	private final int batchSize;
+	/** 非暂时性新增失败的数据处理 */
+	private final BiConsumer<T, RuntimeException> errorHandler;
+	/** 用于写入前设置默认值的新增语句 */
+	private final MySqlInsert<T> preparer;
+	/** 本地日志文件 */
+	private final MySqlWriteBehindJournal<T> journal;
+	/** 待新增数据缓冲区 */
+	private final BlockingQueue<WriteEntry<T>> queue;
+	/** 缓冲区剩余空间，写入前预留，新增线程取出数据后释放，持有写入锁时放入缓冲区不会阻塞 */
+	private final Semaphore permits;
+	/** 写入锁，保证缓冲区中的数据顺序与日志文件一致，持有期间不等待 */
+	private final Object writeLock = new Object();
+	/** 新增线程 */
+	private final Thread flushThread;
+	/** 是否已关闭 */
+	private volatile boolean closed;
+	
+	/**
+	 * 初始化，重放日志文件中尚未新增的数据并启动新增线程
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param service 数据表对应的service（spring容器中的对象）
+	 * @param tableCls 表实体类型
+	 * @param journalPath 日志文件路径
+	 * @param journalSize 日志文件大小（字节）
+	 * @param capacity 缓冲区容量
+	 * @param batchSize 每批最多新增数据数量
+	 * @param errorHandler 非暂时性新增失败（如违反约束）的数据处理，处理完成后该数据从日志文件中提交，抛出异常时等待后重新新增
+	 * @throws IOException
+	 */
+	public MySqlWriteBehind(MySqlService<T> service, Class<T> tableCls, Path journalPath, int journalSize, int capacity, int batchSize, BiConsumer<T, RuntimeException> errorHandler) throws IOException {
+		Assert.notNull(service, "service不能为空");
+		Assert.isTrue(capacity>0, "缓冲区容量需要大于0");
+		Assert.isTrue(batchSize>0, "每批最多新增数据数量需要大于0");
+		Assert.notNull(errorHandler, "新增失败的数据处理不能为空");
+		
+		this.service = service;
+		this.tableCls = tableCls;
+		this.batchSize = batchSize;
+		this.errorHandler = errorHandler;
+		this.preparer = new MySqlInsert<T>(tableCls);
+		this.journal = new MySqlWriteBehindJournal<>(tableCls, journalPath, journalSize);
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.permits = new Semaphore(capacity);
+		// 先启动新增线程，重放的数据超过缓冲区容量时可以边重放边新增
+		this.flushThread = MybatisUtil.newDaemonThreadFactory("mysql-write-behind-" + tableCls.getSimpleName()).newThread(this::run);
+		this.flushThread.start();
+		// 重放尚未新增的数据
+		journal.replay((data, offset) -> {
+			try {
+				permits.acquire();
+				queue.add(new WriteEntry<>(data, offset));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("重放日志文件被中断", e);
+			}
+		});
+	}
+	
+	/**
+	 * 写入一条数据，先设置默认值（含当前时间、字符串主键uuid）再写入日志文件，重放时新增的数据与写入时一致；缓冲区或日志文件已满时等待
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param data 数据对象
+	 * @throws InterruptedException
+	 * @throws IllegalStateException 通道已关闭（包括等待期间被关闭）
+	 */
+	public void write(T data) throws InterruptedException {
+		Assert.notNull(data, "数据不能为空");
+		
+		enqueue(data, false, 0);
+	}
+	
+	/**
+	 * 写入一条数据，先设置默认值再写入日志文件；缓冲区或日志文件已满时最多等待指定时间
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param data 数据对象
+	 * @param timeout 最长等待时间
+	 * @param unit 时间单位
+	 * @return 是否写入成功，等待超时返回false
+	 * @throws InterruptedException
+	 * @throws IllegalStateException 通道已关闭（包括等待期间被关闭）
+	 */
+	public boolean offer(T data, long timeout, TimeUnit unit) throws InterruptedException {
+		Assert.notNull(data, "数据不能为空");
+		
+		return enqueue(data, true, unit.toNanos(timeout));
+	}
+	
+	/**
+	 * 获取缓冲区中尚未新增的数据数量
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @return 
+	 */
+	public int getPendingCount() {
+		return queue.size();
+	}
+	
+	/**
+	 * 关闭通道，等待缓冲区中的数据新增完成后关闭日志文件；数据库暂时不可用且重试后仍然失败时不再等待，未新增的数据在下次启动时重放
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		// 不获取写入锁，等待缓冲区、日志文件空间的写入方在下次检查时失败返回
+		closed = true;
+		try {
+			flushThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// 持有写入锁关闭日志文件，关闭前已检查过关闭状态的写入先完成（写入锁持有期间不等待），其数据在下次启动时重放
+		synchronized ( writeLock ) {
+			journal.close();
+		}
+	}
+	
+	/**
+	 * 检查通道是否已关闭
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 */
+	private void checkOpen() {
+		if ( closed )
+			throw new IllegalStateException("异步新增通道已关闭");
+	}
+	
+	/**
+	 * 预留缓冲区空间后写入日志文件并放入缓冲区，等待期间不持有写入锁，每隔IDLE_WAIT检查一次通道是否已关闭
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param data 数据对象
+	 * @param timed 是否限制等待时间
+	 * @param nanos 最长等待时间（纳秒）
+	 * @return 是否写入成功，等待超时返回false
+	 * @throws InterruptedException
+	 */
+	private boolean enqueue(T data, boolean timed, long nanos) throws InterruptedException {
+		checkOpen();
+		long deadline = System.nanoTime() + nanos;
+		long idleNanos = TimeUnit.MILLISECONDS.toNanos(IDLE_WAIT);
+		// 预留缓冲区空间
+		while ( !permits.tryAcquire(timed ? Math.min(idleNanos, deadline - System.nanoTime()) : idleNanos, TimeUnit.NANOSECONDS) ) {
+			checkOpen();
+			if ( timed && deadline - System.nanoTime()<=0 )
+				return false;
+		}
+		boolean enqueued = false;
+		try {
+			preparer.prepare(data);
+			while ( true ) {
+				// 写入日志文件并放入缓冲区，空间已预留，不会阻塞
+				synchronized ( writeLock ) {
+					checkOpen();
+					long offset = journal.tryAppend(data);
+					if ( offset>=0 ) {
+						queue.add(new WriteEntry<>(data, offset));
+						enqueued = true;
+						return true;
+					}
+				}
+				// 日志文件已满，释放写入锁后等待提交
+				if ( timed && deadline - System.nanoTime()<=0 )
+					return false;
+				journal.awaitCommit(timed ? Math.min(idleNanos, deadline - System.nanoTime()) : idleNanos, TimeUnit.NANOSECONDS);
+			}
+		} finally {
+			if ( !enqueued )
+				permits.release();
+		}
+	}
+	
+	/**
+	 * 新增线程：取出一批数据新增到数据库，新增成功的部分提交日志文件；关闭后放弃新增时退出，不再处理剩余数据
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 */
+	private void run() {
+		List<WriteEntry<T>> batch = new ArrayList<>(batchSize);
+		while ( !closed || !queue.isEmpty() ) {
+			try {
+				// 等待第一条数据
+				WriteEntry<T> first = queue.poll(IDLE_WAIT, TimeUnit.MILLISECONDS);
+				if ( first==null )
+					continue;
+				batch.add(first);
+				queue.drainTo(batch, batchSize-1);
+				permits.release(batch.size());
+			} catch (InterruptedException e) {
+				// 被中断时新增已取出的数据后继续，由closed控制退出
+				Thread.interrupted();
+			}
+			// 新增并提交，放弃时剩余数据保留在日志文件中
+			if ( !batch.isEmpty() ) {
+				if ( !flush(batch) )
+					return;
+				batch.clear();
+			}
+		}
+	}
+	
+	/**
+	 * 新增一批数据并提交日志文件，非暂时性失败时逐条新增，每条新增成功或交给失败处理后提交到该条数据。
+	 * 数据写入时已设置默认值，不再重新设置，避免当前时间等字段与日志文件不一致
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param batch 本批数据
+	 * @return 是否全部处理完成，关闭后放弃新增时返回false
+	 */
+	private boolean flush(List<WriteEntry<T>> batch) {
+		List<T> dataList = new ArrayList<>(batch.size());
+		for ( WriteEntry<T> entry : batch ) {
+			dataList.add(entry.data);
+		}
+		// 批量新增，成功后提交整批
+		try {
+			if ( !insert(dataList) )
+				return false;
+			journal.commit(batch.get(batch.size()-1).offset);
+			return true;
+		} catch (RuntimeException e) {
+			// 非暂时性失败，逐条新增找出无法新增的数据
+		}
+		// 逐条新增，按顺序提交
+		for ( int retries=0; ; ) {
+			WriteEntry<T> entry = batch.get(0);
+			try {
+				if ( !insert(Collections.singletonList(entry.data)) )
+					return false;
+			} catch (RuntimeException e) {
+				try {
+					errorHandler.accept(entry.data, e);
+				} catch (RuntimeException he) {
+					// 失败处理异常时该数据视为未处理，不提交，关闭后重试次数用完则放弃
+					if ( closed && retries>=MAX_RETRIES )
+						return false;
+					pause(++retries);
+					continue;
+				}
+			}
+			journal.commit(entry.offset);
+			batch.remove(0);
+			if ( batch.isEmpty() )
+				return true;
+			retries = 0;
+		}
+	}
+	
+	/**
+	 * 新增数据，暂时性失败（死锁、锁等待超时、连接中断等）时等待后一直重试；通道关闭后重试MAX_RETRIES次仍然失败则放弃
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param dataList 数据列表
+	 * @return 是否新增成功，放弃时返回false
+	 * @throws RuntimeException 非暂时性失败
+	 */
+	private boolean insert(List<T> dataList) {
+		for ( int retries=0; ; retries++ ) {
+			try {
+				service.insert(new MySqlInsert<T>(tableCls).batch(dataList));
+				return true;
+			} catch (RuntimeException e) {
+				if ( !MySqlService.isTransient(e) )
+					throw e;
+				if ( closed && retries>=MAX_RETRIES )
+					return false;
+				pause(retries+1);
+			}
+		}
+	}
+	
+	/**
+	 * 重试前等待，等待时间随重试次数增加，最多为MAX_RETRIES倍重试间隔；被中断时不再等待，由closed控制退出
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param retries 第几次重试
+	 */
+	private void pause(int retries) {
+		try {
+			TimeUnit.MILLISECONDS.sleep(RETRY_INTERVAL * Math.min(retries, MAX_RETRIES));
+		} catch (InterruptedException e) {
+			Thread.interrupted();
+		}
+	}
+	
+	/**
+	 * 缓冲区中的数据及其在日志文件中的结束位置
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 */
+	private static class WriteEntry<T> {
+		
+		/** 数据对象 */
+		private final T data;
+		/** 该记录在日志文件中结束的逻辑位置 */
+		private final long offset;
+		
+		private WriteEntry(T data, long offset) {
+			this.data = data;
+			this.offset = offset;
+		}
+		
+	}
+	
+}
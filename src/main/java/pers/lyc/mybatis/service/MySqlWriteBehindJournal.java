@@ -0,0 +1,351 @@
+package pers.lyc.mybatis.service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjLongConsumer;
+
+import org.springframework.util.Assert;
+
+import cn.hutool.core.util.ReflectUtil;
+import pers.lyc.mybatis.core.cache.ColumnCache;
+import pers.lyc.mybatis.core.cache.TableCache;
+import pers.lyc.mybatis.util.TableCacheUtil;
+
+/**
+ * 异步新增的本地日志文件，使用内存映射文件保存尚未新增到数据库的数据，进程崩溃后重启时重放。<br>
+ * 文件头保存写入位置和已提交位置，之后是按顺序追加的数据记录（记录长度 + 按字段顺序编码的字段值）。
+ * 文件头两个位置合并成一个long一次写入，记录和压缩后的数据都先写入再更新文件头，崩溃时文件头总是指向完整的数据。
+ * 数据写入内存映射区域后即可在进程崩溃后保留，操作系统崩溃或断电时可能丢失尚未刷盘的数据
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月13日
+ */
+public class MySqlWriteBehindJournal<T> implements AutoCloseable {
+	
+	/** 文件头长度：写入位置（int，高32位）+ 已提交位置（int，低32位），合并为一个long */
+	private static final int HEADER_SIZE = 8;
+	/** 空间不足时的等待时间（毫秒） */
+	private static final long FULL_WAIT = 100;
+	
+	/** 字段值类型标识 */
+	private static final byte TYPE_NULL = 0;
+	private static final byte TYPE_STRING = 1;
+	private static final byte TYPE_INTEGER = 2;
+	private static final byte TYPE_LONG = 3;
+	private static final byte TYPE_BOOLEAN = 4;
+	private static final byte TYPE_BIG_DECIMAL = 5;
+	private static final byte TYPE_DATE = 6;
+	
+	/** 表实体类型 */
+	private final Class<T> tableCls;
+	/** 要记录的字段（不包含自增字段） */
+	private final List<ColumnCache> columnCacheList = new ArrayList<>();
+	/** 文件通道 */
+	private final FileChannel channel;
+	/** 内存映射区域 */
+	private final MappedByteBuffer buffer;
+	/** 物理位置HEADER_SIZE对应的逻辑位置，逻辑位置只增不减，压缩文件时物理位置变化 */
+	private long logicalBase;
+	/** 写入位置（物理） */
+	private int writeOffset;
+	/** 已提交位置（物理） */
+	private int commitOffset;
+	
+	/**
+	 * 打开日志文件，文件不存在则创建
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param tableCls 表实体类型
+	 * @param path 日志文件路径
+	 * @param size 日志文件大小（字节），需要能容纳缓冲区中的全部数据
+	 * @throws IOException
+	 */
+	public MySqlWriteBehindJournal(Class<T> tableCls, Path path, int size) throws IOException {
+		Assert.notNull(tableCls, "表实体类型不能为空");
+		Assert.notNull(path, "日志文件路径不能为空");
+		Assert.isTrue(size>HEADER_SIZE, "日志文件大小需要大于" + HEADER_SIZE);
+		
+		this.tableCls = tableCls;
+		// 获取要记录的字段，只支持可以编码的属性类型
+		TableCache tableCache = TableCacheUtil.getTableCache(tableCls);
+		for ( ColumnCache columnCache : tableCache.getColumnCacheMap().values() ) {
+			if ( columnCache.isAutoIncrement() )
+				continue;
+			String fieldType = columnCache.getFieldType();
+			if ( !"String".equals(fieldType) && !"Integer".equals(fieldType) && !"Long".equals(fieldType)
+					&& !"Boolean".equals(fieldType) && !"BigDecimal".equals(fieldType) && !"Date".equals(fieldType) )
+				throw new IllegalArgumentException("属性" + columnCache.getFieldName() + "的类型" + fieldType + "不支持写入日志文件");
+			columnCacheList.add(columnCache);
+		}
+		// 映射日志文件，已有文件大小不同时按已有文件大小映射
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		long fileSize = channel.size();
+		boolean isNew = fileSize<HEADER_SIZE;
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, isNew ? size : fileSize);
+		// 读取文件头
+		if ( isNew ) {
+			writeOffset = HEADER_SIZE;
+			commitOffset = HEADER_SIZE;
+			writeHeader();
+		} else {
+			long header = buffer.getLong(0);
+			writeOffset = (int) (header>>>32);
+			commitOffset = (int) header;
+			if ( writeOffset<HEADER_SIZE || writeOffset>buffer.capacity() || commitOffset<HEADER_SIZE || commitOffset>writeOffset )
+				throw new IllegalStateException("日志文件" + path + "已损坏");
+		}
+		logicalBase = 0;
+	}
+	
+	/**
+	 * 读取尚未提交的数据，用于启动时重放，需要在追加数据之前调用。
+	 * 重放过程中不持有锁，consumer可以等待其他线程提交
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param consumer 数据处理，参数为数据对象及该记录结束的逻辑位置
+	 */
+	public void replay(ObjLongConsumer<T> consumer) {
+		// 记录重放范围，重放期间没有追加，提交不会覆盖记录内容
+		int position;
+		int end;
+		long base;
+		synchronized ( this ) {
+			position = commitOffset;
+			end = writeOffset;
+			base = logicalBase;
+		}
+		while ( position<end ) {
+			// 读取记录
+			int length = buffer.getInt(position);
+			ByteBuffer record = buffer.duplicate();
+			record.position(position + 4).limit(position + 4 + length);
+			position += 4 + length;
+			consumer.accept(decode(record.slice()), base + position - HEADER_SIZE);
+		}
+	}
+	
+	/**
+	 * 追加一条数据，空间不足时等待已提交的数据释放空间，见{@link #tryAppend(Object)}
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param data 数据对象
+	 * @return 该记录结束的逻辑位置
+	 * @throws InterruptedException
+	 */
+	public synchronized long append(T data) throws InterruptedException {
+		while ( true ) {
+			long offset = tryAppend(data);
+			if ( offset>=0 )
+				return offset;
+			wait(FULL_WAIT);
+		}
+	}
+	
+	/**
+	 * 追加一条数据，不等待；空间不足时先压缩文件（已提交的空间不小于未提交的数据时），仍然不足则返回-1
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param data 数据对象
+	 * @return 该记录结束的逻辑位置，空间不足时返回-1
+	 */
+	public synchronized long tryAppend(T data) {
+		// 编码数据
+		byte[] record = encode(data);
+		int recordSize = 4 + record.length;
+		Assert.isTrue(HEADER_SIZE + recordSize<=buffer.capacity(), "数据大小超过日志文件大小");
+		// 空间不足
+		if ( writeOffset + recordSize>buffer.capacity() ) {
+			// 压缩文件，已提交的数据不再保留；未提交的数据复制到已提交的空间，不覆盖自身，复制过程中崩溃时原数据仍然完整
+			if ( commitOffset>HEADER_SIZE && commitOffset - HEADER_SIZE>=writeOffset - commitOffset )
+				compact();
+			if ( writeOffset + recordSize>buffer.capacity() )
+				return -1;
+		}
+		// 先写记录，再更新写入位置，保证崩溃时不会读到不完整的记录
+		ByteBuffer target = buffer.duplicate();
+		target.position(writeOffset);
+		target.putInt(record.length).put(record);
+		writeOffset += recordSize;
+		writeHeader();
+		
+		return toLogical(writeOffset);
+	}
+	
+	/**
+	 * 等待提交释放空间，有提交或超时后返回，用于{@link #tryAppend(Object)}空间不足后在不持有其他锁的情况下等待
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param timeout 最长等待时间
+	 * @param unit 时间单位
+	 * @throws InterruptedException
+	 */
+	public synchronized void awaitCommit(long timeout, TimeUnit unit) throws InterruptedException {
+		unit.timedWait(this, timeout);
+	}
+	
+	/**
+	 * 提交到指定逻辑位置，该位置之前的数据已新增到数据库
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param logicalOffset 逻辑位置
+	 */
+	public synchronized void commit(long logicalOffset) {
+		int offset = (int) (logicalOffset - logicalBase) + HEADER_SIZE;
+		if ( offset<=commitOffset )
+			return;
+		
+		commitOffset = offset;
+		// 数据已全部提交则从头写入
+		if ( commitOffset==writeOffset ) {
+			logicalBase += writeOffset - HEADER_SIZE;
+			writeOffset = HEADER_SIZE;
+			commitOffset = HEADER_SIZE;
+		}
+		writeHeader();
+		notifyAll();
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		buffer.force();
+		channel.close();
+	}
+	
+	/**
+	 * 将未提交的数据复制到文件开头，调用方保证目标区域与未提交的数据不重叠。
+	 * 复制期间文件头仍指向原数据，复制完成并刷盘后一次写入新的文件头，任何时刻崩溃都能重放完整的未提交数据
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 */
+	private void compact() {
+		// 复制未提交的数据，刷盘后再切换文件头
+		int length = writeOffset - commitOffset;
+		ByteBuffer source = buffer.duplicate();
+		source.position(commitOffset).limit(writeOffset);
+		ByteBuffer target = buffer.duplicate();
+		target.position(HEADER_SIZE);
+		target.put(source);
+		buffer.force();
+		// 调整位置
+		logicalBase += commitOffset - HEADER_SIZE;
+		writeOffset = HEADER_SIZE + length;
+		commitOffset = HEADER_SIZE;
+		writeHeader();
+	}
+	
+	/**
+	 * 写入文件头，写入位置和已提交位置合并为一个long一次写入，崩溃时不会只更新其中一个
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 */
+	private void writeHeader() {
+		buffer.putLong(0, (long) writeOffset<<32 | commitOffset);
+	}
+	
+	/**
+	 * 物理位置转换为逻辑位置
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param offset 物理位置
+	 * @return 
+	 */
+	private long toLogical(int offset) {
+		return logicalBase + offset - HEADER_SIZE;
+	}
+	
+	/**
+	 * 按字段顺序编码数据
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param data 数据对象
+	 * @return 
+	 */
+	private byte[] encode(T data) {
+		// 计算记录长度
+		List<byte[]> stringList = new ArrayList<>();
+		int size = 0;
+		for ( ColumnCache columnCache : columnCacheList ) {
+			Object value = ReflectUtil.getFieldValue(data, columnCache.getFieldName());
+			size += 1;
+			if ( value==null )
+				continue;
+			if ( value instanceof String || value instanceof BigDecimal ) {
+				String str = value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : (String) value;
+				byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+				stringList.add(bytes);
+				size += 4 + bytes.length;
+			} else if ( value instanceof Integer ) {
+				size += 4;
+			} else if ( value instanceof Boolean ) {
+				size += 1;
+			} else {
+				size += 8;
+			}
+		}
+		// 编码字段值
+		ByteBuffer record = ByteBuffer.allocate(size);
+		int stringIndex = 0;
+		for ( ColumnCache columnCache : columnCacheList ) {
+			Object value = ReflectUtil.getFieldValue(data, columnCache.getFieldName());
+			if ( value==null ) {
+				record.put(TYPE_NULL);
+			} else if ( value instanceof String || value instanceof BigDecimal ) {
+				byte[] bytes = stringList.get(stringIndex++);
+				record.put(value instanceof String ? TYPE_STRING : TYPE_BIG_DECIMAL).putInt(bytes.length).put(bytes);
+			} else if ( value instanceof Integer ) {
+				record.put(TYPE_INTEGER).putInt((Integer) value);
+			} else if ( value instanceof Long ) {
+				record.put(TYPE_LONG).putLong((Long) value);
+			} else if ( value instanceof Boolean ) {
+				record.put(TYPE_BOOLEAN).put((byte) ((Boolean) value ? 1 : 0));
+			} else {
+				record.put(TYPE_DATE).putLong(((Date) value).getTime());
+			}
+		}
+		
+		return record.array();
+	}
+	
+	/**
+	 * 按字段顺序解码数据
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月13日
+	 * @param record 记录内容
+	 * @return 
+	 */
+	private T decode(ByteBuffer record) {
+		T data = ReflectUtil.newInstance(tableCls);
+		for ( ColumnCache columnCache : columnCacheList ) {
+			Object value;
+			byte type = record.get();
+			switch ( type ) {
+				case TYPE_NULL: value = null; break;
+				case TYPE_INTEGER: value = record.getInt(); break;
+				case TYPE_LONG: value = record.getLong(); break;
+				case TYPE_BOOLEAN: value = record.get()==1; break;
+				case TYPE_DATE: value = new Date(record.getLong()); break;
+				case TYPE_STRING:
+				case TYPE_BIG_DECIMAL:
+					byte[] bytes = new byte[record.getInt()];
+					record.get(bytes);
+					String str = new String(bytes, StandardCharsets.UTF_8);
+					value = type==TYPE_STRING ? str : new BigDecimal(str);
+					break;
+				default: throw new IllegalStateException("日志文件记录已损坏");
+			}
+			ReflectUtil.setFieldValue(data, columnCache.getFieldName(), value);
+		}
+		
+		return data;
+	}
+	
+}
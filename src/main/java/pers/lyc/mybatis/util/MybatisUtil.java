@@ -1,15 +1,24 @@
 package pers.lyc.mybatis.util;
 
 import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.util.Assert;
 
+import cn.hutool.core.convert.Convert;
 import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONUtil;
 import pers.lyc.mybatis.core.annotation.Column;
 import pers.lyc.mybatis.core.annotation.Table;
 
@@ -278,6 +287,60 @@ public class MybatisUtil {
 		return String.valueOf(chars);
 	}
 	
+	/**
+	 * 将seek分页的排序属性值编码为游标字符串（JSON数组的Base64URL编码），日期编码为时间戳，BigDecimal编码为字符串避免丢失精度
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月16日
+	 * @param values 排序属性值
+	 * @return 
+	 */
+	public static String encodeCursor(Object[] values) {
+		Assert.notNull(values, "排序属性值不能为空");
+		
+		// 转换为JSON可以无损表示的值
+		JSONArray array = new JSONArray();
+		for ( Object value : values ) {
+			if ( value instanceof Date )
+				array.add(((Date) value).getTime());
+			else if ( value instanceof BigDecimal )
+				array.add(((BigDecimal) value).toPlainString());
+			else
+				array.add(value);
+		}
+		
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(array.toString().getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * 将游标字符串解码为排序属性值，并转换为对应的属性类型
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月16日
+	 * @param cursor 游标字符串
+	 * @param types 排序属性类型
+	 * @return 
+	 */
+	public static Object[] decodeCursor(String cursor, Class<?>[] types) {
+		Assert.hasLength(cursor, "游标不能为空");
+		Assert.notNull(types, "排序属性类型不能为空");
+		
+		// 解码
+		JSONArray array;
+		try {
+			array = JSONUtil.parseArray(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("游标格式不正确", e);
+		}
+		if ( array.size()!=types.length )
+			throw new IllegalArgumentException("游标与排序属性不一致");
+		// 转换类型
+		Object[] values = new Object[types.length];
+		for ( int i=0; i<types.length; i++ ) {
+			values[i] = Convert.convert(types[i], array.get(i));
+		}
+		
+		return values;
+	}
+	
 	/**
 	 * javaBean转换成map
 	 * @author 林运昌（linyunchang）
@@ -320,4 +383,22 @@ public class MybatisUtil {
 		return valueMap;
 	}
 	
+	/**
+	 * 创建守护线程工厂，线程名称为 前缀-序号（从1开始），用于后台并发查询、新增等线程池，不阻止进程退出
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月20日
+	 * @param namePrefix 线程名称前缀，如：mysql-scan
+	 * @return 
+	 */
+	public static ThreadFactory newDaemonThreadFactory(String namePrefix) {
+		Assert.hasLength(namePrefix, "线程名称前缀不能为空");
+		
+		AtomicInteger threadIndex = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, namePrefix + "-" + threadIndex.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+	
 }
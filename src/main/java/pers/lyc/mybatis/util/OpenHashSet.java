@@ -0,0 +1,125 @@
+package pers.lyc.mybatis.util;
+
+/**
+ * 开放寻址（线性探测）的哈希集合，元素直接存放在数组中，不为每个元素创建节点对象，用于大量查询值的去重和存在判断。
+ * 不支持null元素和删除，非线程安全
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月25日
+ */
+public class OpenHashSet {
+	
+	/** 最大装载比例，超过时扩容 */
+	private static final double MAX_LOAD_FACTOR = 0.5;
+	/** 最小容量 */
+	private static final int MIN_CAPACITY = 16;
+	
+	/** 元素数组，长度为2的幂，空位为null */
+	private Object[] table;
+	/** 元素数量 */
+	private int size;
+	
+	/**
+	 * 初始化
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月25日
+	 * @param expectedSize 预计元素数量
+	 */
+	public OpenHashSet(int expectedSize) {
+		if ( expectedSize<0 )
+			throw new IllegalArgumentException("预计元素数量不能小于0");
+		
+		this.table = new Object[tableSize(expectedSize)];
+	}
+	
+	/**
+	 * 添加元素
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月25日
+	 * @param element 元素
+	 * @return 元素不存在并已添加时返回true
+	 */
+	public boolean add(Object element) {
+		if ( element==null )
+			throw new IllegalArgumentException("元素不能为空");
+		
+		// 查找元素或空位
+		int index = indexOf(table, element);
+		if ( table[index]!=null )
+			return false;
+		// 添加元素，超过装载比例时扩容
+		table[index] = element;
+		size++;
+		if ( size>table.length * MAX_LOAD_FACTOR )
+			resize();
+		
+		return true;
+	}
+	
+	/**
+	 * 是否包含元素
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月25日
+	 * @param element 元素
+	 * @return 
+	 */
+	public boolean contains(Object element) {
+		if ( element==null )
+			return false;
+		
+		return table[indexOf(table, element)]!=null;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * 容量扩大一倍，重新放置元素
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月25日
+	 */
+	private void resize() {
+		Object[] newTable = new Object[table.length * 2];
+		for ( Object element : table ) {
+			if ( element!=null )
+				newTable[indexOf(newTable, element)] = element;
+		}
+		table = newTable;
+	}
+	
+	/**
+	 * 线性探测查找元素所在位置，不存在时返回第一个空位
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月25日
+	 * @param table 元素数组
+	 * @param element 元素
+	 * @return 
+	 */
+	private static int indexOf(Object[] table, Object element) {
+		int mask = table.length - 1;
+		// 打散哈希值，避免连续整数聚集
+		int hash = element.hashCode() * 0x9E3779B9;
+		int index = (hash ^ hash>>>16) & mask;
+		while ( table[index]!=null && !table[index].equals(element) ) {
+			index = (index+1) & mask;
+		}
+		
+		return index;
+	}
+	
+	/**
+	 * 计算数组长度：不小于预计元素数量除以最大装载比例的2的幂
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月25日
+	 * @param expectedSize 预计元素数量
+	 * @return 
+	 */
+	private static int tableSize(int expectedSize) {
+		long minSize = Math.max(MIN_CAPACITY, (long) Math.ceil(expectedSize / MAX_LOAD_FACTOR) + 1);
+		if ( minSize>1<<30 )
+			throw new IllegalArgumentException("预计元素数量过大");
+		
+		return Integer.highestOneBit((int) minSize - 1) << 1;
+	}
+	
+}
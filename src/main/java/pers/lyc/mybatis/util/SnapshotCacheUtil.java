@@ -0,0 +1,201 @@
+package pers.lyc.mybatis.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.Assert;
+
+import pers.lyc.mybatis.core.cache.ColumnCache;
+
+/**
+ * 数据快照缓存工具类，记录查询出来的数据对象的字段值，更新时用于判断哪些字段发生了变化。
+ * 数据对象按引用（而不是equals）识别，使用弱引用，数据对象被回收后快照自动清除
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月9日
+ */
+public class SnapshotCacheUtil {
+	
+	/** 快照缓存（数据对象弱引用 -&gt; 按字段顺序保存的字段值） */
+	private static Map<IdentityWeakReference, Object[]> snapshotMap = new ConcurrentHashMap<>();
+	
+	/** 已回收的数据对象引用队列 */
+	private static ReferenceQueue<Object> referenceQueue = new ReferenceQueue<>();
+	
+	/**
+	 * 记录数据快照
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月9日
+	 * @param data 数据对象
+	 */
+	public static void put(Object data) {
+		Assert.notNull(data, "数据对象不能为空");
+		
+		// 清除已回收数据对象的快照
+		expunge();
+		// 获取字段缓存信息
+		ColumnCache[] columnCaches = getColumnCaches(data);
+		// 按字段顺序记录字段值
+		Object[] values = new Object[columnCaches.length];
+		for ( int i=0; i<columnCaches.length; i++ ) {
+			values[i] = copyValue(getValue(data, columnCaches[i].getField()));
+		}
+		snapshotMap.put(new IdentityWeakReference(data, referenceQueue), values);
+	}
+	
+	/**
+	 * 清除数据快照
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月9日
+	 * @param data 数据对象
+	 */
+	public static void remove(Object data) {
+		Assert.notNull(data, "数据对象不能为空");
+		
+		snapshotMap.remove(new IdentityWeakReference(data, null));
+	}
+	
+	/**
+	 * 获取和快照相比发生变化的属性
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月9日
+	 * @param data 数据对象
+	 * @return 发生变化的属性集合，数据对象没有快照时返回null
+	 */
+	public static Set<String> getChangedFields(Object data) {
+		Assert.notNull(data, "数据对象不能为空");
+		
+		// 获取快照
+		Object[] values = snapshotMap.get(new IdentityWeakReference(data, null));
+		if ( values==null )
+			return null;
+		
+		// 逐个字段比较
+		Set<String> changedFieldSet = new HashSet<>();
+		ColumnCache[] columnCaches = getColumnCaches(data);
+		for ( int i=0; i<columnCaches.length; i++ ) {
+			if ( !isEqual(values[i], getValue(data, columnCaches[i].getField())) )
+				changedFieldSet.add(columnCaches[i].getFieldName());
+		}
+		
+		return changedFieldSet;
+	}
+	
+	/**
+	 * 获取数据对象的字段缓存信息
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月9日
+	 * @param data 数据对象
+	 * @return 
+	 */
+	private static ColumnCache[] getColumnCaches(Object data) {
+		return TableCacheUtil.getTableCache(data.getClass()).getColumnCacheMap().values().toArray(new ColumnCache[0]);
+	}
+	
+	/**
+	 * 获取属性值
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月9日
+	 * @param data 数据对象
+	 * @param field 属性
+	 * @return 
+	 */
+	private static Object getValue(Object data, Field field) {
+		try {
+			return field.get(data);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("获取属性" + field.getName() + "的值失败", e);
+		}
+	}
+	
+	/**
+	 * 复制可变的字段值，避免数据对象原地修改后快照随之变化
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月9日
+	 * @param value 字段值
+	 * @return 
+	 */
+	private static Object copyValue(Object value) {
+		if ( value instanceof Date )
+			return ((Date) value).clone();
+		if ( value instanceof byte[] )
+			return ((byte[]) value).clone();
+		
+		return value;
+	}
+	
+	/**
+	 * 判断字段值是否相同，BigDecimal忽略精度比较
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月9日
+	 * @param oldValue 快照值
+	 * @param newValue 当前值
+	 * @return 
+	 */
+	private static boolean isEqual(Object oldValue, Object newValue) {
+		if ( oldValue instanceof BigDecimal && newValue instanceof BigDecimal )
+			return ((BigDecimal) oldValue).compareTo((BigDecimal) newValue)==0;
+		if ( oldValue instanceof Date && newValue instanceof Date )
+			return ((Date) oldValue).getTime()==((Date) newValue).getTime();
+		if ( oldValue instanceof byte[] && newValue instanceof byte[] )
+			return Arrays.equals((byte[]) oldValue, (byte[]) newValue);
+		
+		return Objects.equals(oldValue, newValue);
+	}
+	
+	/**
+	 * 清除已回收数据对象的快照
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月9日
+	 */
+	private static void expunge() {
+		Reference<?> reference;
+		while ( (reference = referenceQueue.poll())!=null ) {
+			snapshotMap.remove(reference);
+		}
+	}
+	
+	/**
+	 * 按引用比较的弱引用，作为快照缓存的key
+	 * @author 林运昌（linyunchang）
+	 * @since 2020年7月9日
+	 */
+	private static class IdentityWeakReference extends WeakReference<Object> {
+		
+		/** 数据对象的identityHashCode */
+		private final int hashCode;
+		
+		public IdentityWeakReference(Object referent, ReferenceQueue<Object> queue) {
+			super(referent, queue);
+			this.hashCode = System.identityHashCode(referent);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if ( this==obj )
+				return true;
+			if ( !(obj instanceof IdentityWeakReference) )
+				return false;
+			
+			// 已回收的引用只和自身相同
+			Object referent = get();
+			return referent!=null && referent==((IdentityWeakReference) obj).get();
+		}
+		
+	}
+	
+}
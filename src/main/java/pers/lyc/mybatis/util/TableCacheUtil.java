@@ -17,6 +17,7 @@ import pers.lyc.mybatis.core.annotation.EnumClass;
 import pers.lyc.mybatis.core.annotation.Join;
 import pers.lyc.mybatis.core.annotation.Related;
 import pers.lyc.mybatis.core.annotation.Table;
+import pers.lyc.mybatis.core.annotation.Version;
 import pers.lyc.mybatis.core.cache.ColumnCache;
 import pers.lyc.mybatis.core.cache.JoinCache;
 import pers.lyc.mybatis.core.cache.RelatedCache;
@@ -115,6 +116,12 @@ public class TableCacheUtil {
 				// 判断是否主键，如果是主键则设置主键类型
 				if ( tableCache.getPrimaryKey().equals(columnCache.getFieldName()) )
 					tableCache.setPrimaryKeyType(columnCache.getFieldType());
+				// 判断是否乐观锁版本号
+				if ( null!=field.getAnnotation(Version.class) ) {
+					Assert.isNull(tableCache.getVersionKey(), cls.getName() + " 只能有一个版本号属性");
+					Assert.isTrue("Integer".equals(columnCache.getFieldType()) || "Long".equals(columnCache.getFieldType()), cls.getName() + " 版本号属性类型需要为Integer或Long");
+					tableCache.setVersionKey(columnCache.getFieldName());
+				}
 				// 添加字段信息
 				columnCacheMap.put(field.getName(), columnCache);
 				// 修正关联表别名，添加关联信息
@@ -179,6 +186,7 @@ public class TableCacheUtil {
 		columnCache.setTableAliasName(tableAliasName);
 		columnCache.setColumnName(MybatisUtil.getColumnName(field, column));
 		columnCache.setFieldName(field.getName());
+		columnCache.setField(ReflectUtil.setAccessible(field));
 		columnCache.setKebabName(MybatisUtil.camelToKebab(field.getName()));
 		columnCache.setAliasName(field.getName());
 		columnCache.setCnName(column.cnName());
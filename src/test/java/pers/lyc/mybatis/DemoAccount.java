@@ -0,0 +1,64 @@
+package pers.lyc.mybatis;
+
+import pers.lyc.mybatis.core.annotation.Column;
+import pers.lyc.mybatis.core.annotation.Table;
+import pers.lyc.mybatis.core.annotation.Version;
+
+/**
+ * 测试用带版本号的表实体
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月26日
+ */
+@Table(cnName="示例账户")
+public class DemoAccount {
+	
+	@Column(cnName="主键")
+	private Long id;
+	@Column(cnName="名称", length=20, required=false)
+	private String name;
+	@Column(cnName="余额", required=false)
+	private Long balance;
+	@Column(cnName="次数", required=false)
+	private Integer times;
+	@Version
+	@Column(cnName="版本号")
+	private Integer version;
+	
+	public DemoAccount() {
+	}
+	public DemoAccount(Long id) {
+		this.id = id;
+	}
+	
+	public Long getId() {
+		return id;
+	}
+	public void setId(Long id) {
+		this.id = id;
+	}
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+	public Long getBalance() {
+		return balance;
+	}
+	public void setBalance(Long balance) {
+		this.balance = balance;
+	}
+	public Integer getTimes() {
+		return times;
+	}
+	public void setTimes(Integer times) {
+		this.times = times;
+	}
+	public Integer getVersion() {
+		return version;
+	}
+	public void setVersion(Integer version) {
+		this.version = version;
+	}
+	
+}
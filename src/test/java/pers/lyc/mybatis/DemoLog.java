@@ -0,0 +1,75 @@
+package pers.lyc.mybatis;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import pers.lyc.mybatis.core.annotation.Column;
+import pers.lyc.mybatis.core.annotation.Table;
+
+/**
+ * 测试用表实体
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月26日
+ */
+@Table(cnName="示例日志")
+public class DemoLog {
+	
+	@Column(cnName="主键")
+	private Long id;
+	@Column(cnName="序号", required=false)
+	private Long seq;
+	@Column(cnName="名称", length=20)
+	private String name;
+	@Column(cnName="年龄", required=false)
+	private Integer age;
+	@Column(cnName="金额", required=false)
+	private BigDecimal amount;
+	@Column(cnName="是否启用", required=false)
+	private Boolean enabled;
+	@Column(cnName="创建时间", required=false)
+	private Date createTime;
+	
+	public Long getId() {
+		return id;
+	}
+	public void setId(Long id) {
+		this.id = id;
+	}
+	public Long getSeq() {
+		return seq;
+	}
+	public void setSeq(Long seq) {
+		this.seq = seq;
+	}
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+	public Integer getAge() {
+		return age;
+	}
+	public void setAge(Integer age) {
+		this.age = age;
+	}
+	public BigDecimal getAmount() {
+		return amount;
+	}
+	public void setAmount(BigDecimal amount) {
+		this.amount = amount;
+	}
+	public Boolean getEnabled() {
+		return enabled;
+	}
+	public void setEnabled(Boolean enabled) {
+		this.enabled = enabled;
+	}
+	public Date getCreateTime() {
+		return createTime;
+	}
+	public void setCreateTime(Date createTime) {
+		this.createTime = createTime;
+	}
+	
+}
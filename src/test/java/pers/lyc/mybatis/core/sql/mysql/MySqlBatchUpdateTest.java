@@ -0,0 +1,73 @@
+package pers.lyc.mybatis.core.sql.mysql;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import pers.lyc.mybatis.DemoAccount;
+
+/**
+ * MySqlBatchUpdate测试
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月26日
+ */
+public class MySqlBatchUpdateTest {
+	
+	/** 按主键生成的case语句 */
+	private static final String CASE = "case id<foreach collection=\"dataList\" item=\"data\"> when #{data.id} then ";
+	
+	@Test
+	public void updateWithVersion() {
+		MySqlBatchUpdate<DemoAccount> sql = new MySqlBatchUpdate<DemoAccount>(DemoAccount.class).fields("name", "balance").data(newAccount(1L));
+		
+		assertEquals("update demo_account set name=" + CASE + "#{data.name}</foreach> end,balance=" + CASE + "#{data.balance}</foreach> end,version=version+1"
+				+ " where (id,version) in <foreach collection=\"dataList\" item=\"data\" open=\"(\" separator=\",\" close=\")\">(#{data.id},#{data.version})</foreach>", sql.toString());
+	}
+	
+	@Test
+	public void updateAllFieldsOfCustomTable() {
+		MySqlBatchUpdate<DemoAccount> sql = new MySqlBatchUpdate<DemoAccount>(DemoAccount.class).update("demo_account_2020").data(newAccount(1L));
+		
+		// 未指定属性时更新除主键、版本号以外的所有字段
+		assertEquals("update demo_account_2020 set name=" + CASE + "#{data.name}</foreach> end,balance=" + CASE + "#{data.balance}</foreach> end,times=" + CASE + "#{data.times}</foreach> end,version=version+1"
+				+ " where (id,version) in <foreach collection=\"dataList\" item=\"data\" open=\"(\" separator=\",\" close=\")\">(#{data.id},#{data.version})</foreach>", sql.toString());
+	}
+	
+	@Test
+	public void increment() {
+		// 累加模式不处理版本号，数据不需要版本号
+		MySqlBatchUpdate<DemoAccount> sql = new MySqlBatchUpdate<DemoAccount>(DemoAccount.class).increment("balance", "times").data(new DemoAccount(1L));
+		
+		assertEquals("update demo_account set balance=balance+" + CASE + "#{data.balance}</foreach> else 0 end,times=times+" + CASE + "#{data.times}</foreach> else 0 end"
+				+ " where id in <foreach collection=\"dataList\" item=\"data\" open=\"(\" separator=\",\" close=\")\">#{data.id}</foreach>", sql.toString());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectDuplicatePrimaryKey() {
+		new MySqlBatchUpdate<DemoAccount>(DemoAccount.class).dataList(Arrays.asList(newAccount(1L), newAccount(2L), newAccount(1L)));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectDuplicatePrimaryKeyAcrossCalls() {
+		new MySqlBatchUpdate<DemoAccount>(DemoAccount.class).increment("balance").data(new DemoAccount(1L)).data(new DemoAccount(1L));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectMissingVersion() {
+		new MySqlBatchUpdate<DemoAccount>(DemoAccount.class).data(new DemoAccount(1L));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectPrimaryKeyField() {
+		new MySqlBatchUpdate<DemoAccount>(DemoAccount.class).fields("id");
+	}
+	
+	private static DemoAccount newAccount(Long id) {
+		DemoAccount data = new DemoAccount(id);
+		data.setVersion(1);
+		return data;
+	}
+	
+}
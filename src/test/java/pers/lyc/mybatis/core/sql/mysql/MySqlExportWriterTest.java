@@ -0,0 +1,115 @@
+package pers.lyc.mybatis.core.sql.mysql;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import org.junit.Test;
+
+import pers.lyc.mybatis.DemoLog;
+import pers.lyc.mybatis.core.cache.ColumnCache;
+import pers.lyc.mybatis.core.enums.ExportFormat;
+import pers.lyc.mybatis.util.TableCacheUtil;
+
+/**
+ * MySqlExportWriter测试
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月26日
+ */
+public class MySqlExportWriterTest {
+	
+	/** 导出的属性 */
+	private static final String[] FIELDS = { "seq", "name", "amount", "enabled", "createTime" };
+	
+	@Test
+	public void csvQuoting() throws Exception {
+		String output = export(ExportFormat.CSV, 64,
+				new Object[] { 1L, "plain", new BigDecimal("1.50"), true, Timestamp.valueOf(LocalDateTime.of(2020, 7, 26, 8, 5, 9)) },
+				new Object[] { -2L, "a,b \"q\"\r\nline", null, false, null },
+				new Object[] { null, "", null, null, null });
+		
+		assertEquals("seq,name,amount,enabled,createTime\n"
+				+ "1,plain,1.50,true,2020-07-26 08:05:09\n"
+				+ "-2,\"a,b \"\"q\"\"\r\nline\",,false,\n"
+				+ ",,,,\n", output);
+	}
+	
+	@Test
+	public void jsonEscaping() throws Exception {
+		String output = export(ExportFormat.NDJSON, 64,
+				new Object[] { Long.MIN_VALUE, "引号\"反斜杠\\换行\n制表\t控制\u0001", new BigDecimal("1E+3"), true, Timestamp.valueOf(LocalDateTime.of(2020, 1, 2, 3, 4, 5)) },
+				new Object[] { null, null, null, null, null });
+		
+		assertEquals("{\"seq\":-9223372036854775808,\"name\":\"引号\\\"反斜杠\\\\换行\\n制表\\t控制\\u0001\",\"amount\":1000,\"enabled\":true,\"createTime\":\"2020-01-02 03:04:05\"}\n"
+				+ "{\"seq\":null,\"name\":null,\"amount\":null,\"enabled\":null,\"createTime\":null}\n", output);
+	}
+	
+	@Test
+	public void utf8Encoding() throws Exception {
+		// 2、3、4字节字符及不成对的代理字符，缓冲区很小时跨越多次写入
+		String name = "é中😀\uD800x";
+		String output = export(ExportFormat.CSV, 12, new Object[] { 1L, name, null, null, null });
+		
+		assertEquals("seq,name,amount,enabled,createTime\n1,é中😀?x,,,\n", output);
+	}
+	
+	/**
+	 * 导出数据行，返回按UTF-8解码的输出内容
+	 */
+	private static String export(ExportFormat format, int bufferSize, Object[]... rows) throws Exception {
+		Map<String, ColumnCache> columnCacheMap = TableCacheUtil.getTableCache(DemoLog.class).getColumnCacheMap();
+		String[] labels = new String[FIELDS.length];
+		for ( int i=0; i<FIELDS.length; i++ ) {
+			labels[i] = columnCacheMap.get(FIELDS[i]).getAliasName();
+		}
+		ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class<?>[] { ResultSetMetaData.class }, (proxy, method, args) -> {
+			switch ( method.getName() ) {
+				case "getColumnCount": return labels.length;
+				case "getColumnLabel": return labels[(Integer) args[0] - 1];
+				default: throw new UnsupportedOperationException(method.getName());
+			}
+		});
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MySqlExportWriter writer = new MySqlExportWriter(DemoLog.class, metaData, Channels.newChannel(out), format, bufferSize, null);
+		writer.writeHeader();
+		for ( Object[] row : rows ) {
+			writer.writeRow(resultSet(row));
+		}
+		writer.flush();
+		assertEquals(rows.length, writer.getCount());
+		
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * 只有一行数据的结果集，按列序号读取
+	 */
+	private static ResultSet resultSet(Object[] row) {
+		boolean[] wasNull = new boolean[1];
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, (proxy, method, args) -> {
+			if ( "wasNull".equals(method.getName()) )
+				return wasNull[0];
+			Object value = row[(Integer) args[0] - 1];
+			wasNull[0] = value==null;
+			switch ( method.getName() ) {
+				case "getString": return value==null ? null : value.toString();
+				case "getLong": return value==null ? 0L : ((Number) value).longValue();
+				case "getBoolean": return value!=null && (Boolean) value;
+				case "getBigDecimal":
+				case "getTimestamp": return value;
+				default: throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+	
+}
@@ -0,0 +1,42 @@
+package pers.lyc.mybatis.provider.mysql;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import pers.lyc.mybatis.DemoAccount;
+import pers.lyc.mybatis.core.sql.mysql.MySqlSelect;
+
+/**
+ * MySqlSelectSqlProvider测试
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月26日
+ */
+public class MySqlSelectSqlProviderTest {
+	
+	@Test
+	public void selectMatchedIndex() {
+		MySqlSelect<DemoAccount> sql = new MySqlSelect<DemoAccount>(DemoAccount.class).field("name");
+		sql.andEqualTo("times", 3);
+		sql.and(" name = #{" + MySqlSelectSqlProvider.MATCHED_KEY + "}", new String[] { "name" }, null);
+		sql.getParamMap().put(MySqlSelectSqlProvider.MATCHED_KEYS, Arrays.asList("café", "b"));
+		
+		// 每个匹配值一条判断语句，其他条件参数共用
+		String exists = "select 1 from demo_account da where ( da.name = #{paramMap.matchedKeys[%d]}) and ( da.times = #{paramMap.times})";
+		assertEquals("<script>select 0 from dual where exists (" + String.format(exists, 0) + ") union all select 1 from dual where exists (" + String.format(exists, 1) + ")</script>",
+				MySqlSelectSqlProvider.selectMatchedIndex(null, sql));
+		// 查询语句恢复原样
+		assertEquals("select da.name name from demo_account da where ( da.name = #{paramMap.matchedKey}) and ( da.times = #{paramMap.times})", sql.toString());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void selectMatchedIndexWithoutKeyCondition() {
+		MySqlSelect<DemoAccount> sql = new MySqlSelect<DemoAccount>(DemoAccount.class);
+		sql.getParamMap().put(MySqlSelectSqlProvider.MATCHED_KEYS, Arrays.asList("a"));
+		
+		MySqlSelectSqlProvider.selectMatchedIndex(null, sql);
+	}
+	
+}
@@ -0,0 +1,202 @@
+package pers.lyc.mybatis.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import pers.lyc.mybatis.DemoAccount;
+import pers.lyc.mybatis.core.sql.mysql.MySqlBatchUpdate;
+
+/**
+ * MySqlCounter测试，使用在内存中累加的service
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月26日
+ */
+public class MySqlCounterTest {
+	
+	/** 刷新间隔足够长，测试中手动刷新 */
+	private static final long INTERVAL = TimeUnit.HOURS.toMillis(1);
+	
+	private final AccumulatingService service = new AccumulatingService();
+	/** 失败处理收到的增量及失败原因 */
+	private final List<Map<Object, Map<String, Long>>> droppedList = Collections.synchronizedList(new ArrayList<>());
+	private final List<RuntimeException> errorList = Collections.synchronizedList(new ArrayList<>());
+	
+	@Test
+	public void concurrentAdd() throws Exception {
+		try ( MySqlCounter<DemoAccount> counter = newCounter() ) {
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			for ( int t=0; t<4; t++ ) {
+				executor.execute(() -> {
+					for ( int i=0; i<1000; i++ ) {
+						counter.increment(i % 3, "times");
+						counter.add(1L, "balance", 2);
+						// 刷新与累加并发进行
+						if ( i % 100==0 )
+							counter.flush();
+					}
+				});
+			}
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+			counter.flush();
+			assertEquals(0, counter.flush());
+		}
+		
+		assertEquals(Long.valueOf(334 * 4), service.total(0L, "times"));
+		assertEquals(Long.valueOf(333 * 4), service.total(1L, "times"));
+		assertEquals(Long.valueOf(8000), service.total(1L, "balance"));
+		assertTrue(droppedList.isEmpty());
+	}
+	
+	@Test
+	public void isolateFailedKey() {
+		service.poisonSet.add(2L);
+		try ( MySqlCounter<DemoAccount> counter = newCounter() ) {
+			for ( long id=1; id<=5; id++ ) {
+				counter.add(id, "balance", id);
+			}
+			// 其他主键正常更新，失败的主键保留到下一次刷新
+			assertEquals(4, counter.flush());
+			assertEquals(Long.valueOf(5), service.total(5L, "balance"));
+			assertEquals(0, counter.flush());
+			assertTrue(droppedList.isEmpty());
+			// 连续失败达到上限后放弃并交给失败处理
+			counter.add(1L, "balance", 10);
+			assertEquals(1, counter.flush());
+			assertEquals(Collections.singletonMap(2L, Collections.singletonMap("balance", 2L)), droppedList.get(0));
+			assertTrue(errorList.get(0) instanceof DataIntegrityViolationException);
+			assertEquals(0, counter.flush());
+		}
+		
+		assertEquals(Long.valueOf(11), service.total(1L, "balance"));
+		assertNull(service.total(2L, "balance"));
+		assertEquals(1, droppedList.size());
+	}
+	
+	@Test
+	public void dropOverflowingDelta() {
+		try ( MySqlCounter<DemoAccount> counter = newCounter() ) {
+			// 增量超出Integer范围，无法转换
+			counter.add(1L, "times", Integer.MAX_VALUE + 1L);
+			counter.add(2L, "times", 1);
+			assertEquals(1, counter.flush());
+			counter.flush();
+			counter.flush();
+		}
+		
+		assertEquals(Long.valueOf(1), service.total(2L, "times"));
+		assertEquals(Collections.singletonMap(1L, Collections.singletonMap("times", Integer.MAX_VALUE + 1L)), droppedList.get(0));
+		assertTrue(errorList.get(0) instanceof ArithmeticException);
+	}
+	
+	@Test
+	public void keepDeltasOnTransientFailure() {
+		try ( MySqlCounter<DemoAccount> counter = newCounter() ) {
+			counter.add(1L, "balance", 3);
+			service.failing = true;
+			// 暂时性失败不计入失败次数，增量一直保留
+			for ( int i=0; i<5; i++ ) {
+				try {
+					counter.flush();
+					fail();
+				} catch (TransientDataAccessResourceException e) {
+					// 数据库不可用
+				}
+				counter.add(1L, "balance", 1);
+			}
+			service.failing = false;
+			assertEquals(1, counter.flush());
+		}
+		
+		assertEquals(Long.valueOf(8), service.total(1L, "balance"));
+		assertTrue(droppedList.isEmpty());
+	}
+	
+	@Test
+	public void closeFlushesAndRejectsAdd() {
+		MySqlCounter<DemoAccount> counter = newCounter();
+		counter.add(1L, "balance", 3);
+		counter.close();
+		assertEquals(Long.valueOf(3), service.total(1L, "balance"));
+		
+		try {
+			counter.add(1L, "balance", 1);
+			fail();
+		} catch (IllegalStateException e) {
+			// 已关闭
+		}
+	}
+	
+	@Test
+	public void closeReportsUnflushedDeltas() {
+		MySqlCounter<DemoAccount> counter = newCounter();
+		counter.add(1L, "balance", 3);
+		service.failing = true;
+		counter.close();
+		
+		// 关闭时刷新失败，剩余增量交给失败处理
+		assertEquals(Collections.singletonMap(1L, Collections.singletonMap("balance", 3L)), droppedList.get(0));
+		assertTrue(errorList.get(0) instanceof TransientDataAccessResourceException);
+	}
+	
+	private MySqlCounter<DemoAccount> newCounter() {
+		return new MySqlCounter<>(service, DemoAccount.class, INTERVAL, (deltaMap, e) -> {
+			droppedList.add(deltaMap);
+			errorList.add(e);
+		});
+	}
+	
+	/**
+	 * 在内存中累加的service，failing时模拟数据库不可用，批次中含有poisonSet中的主键时违反约束
+	 */
+	private static class AccumulatingService extends MySqlService<DemoAccount> {
+		
+		/** 累加结果（主键.属性 -&gt; 值） */
+		private final Map<String, Long> valueMap = new HashMap<>();
+		/** 更新失败的主键 */
+		private final Set<Long> poisonSet = new HashSet<>();
+		/** 数据库是否不可用 */
+		private volatile boolean failing;
+		
+		@Override
+		public synchronized int updateBatch(MySqlBatchUpdate<DemoAccount> sql) {
+			if ( failing )
+				throw new TransientDataAccessResourceException("数据库不可用");
+			for ( DemoAccount data : sql.getDataList() ) {
+				if ( poisonSet.contains(data.getId()) )
+					throw new DataIntegrityViolationException("超出字段范围");
+			}
+			for ( DemoAccount data : sql.getDataList() ) {
+				for ( String field : sql.getFields() ) {
+					long delta = ((Number) ("balance".equals(field) ? data.getBalance() : data.getTimes())).longValue();
+					if ( delta!=0 )
+						valueMap.merge(data.getId() + "." + field, delta, Long::sum);
+				}
+			}
+			return sql.getDataList().size();
+		}
+		
+		private synchronized Long total(Long id, String field) {
+			return valueMap.get(id + "." + field);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,116 @@
+package pers.lyc.mybatis.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pers.lyc.mybatis.DemoLog;
+import pers.lyc.mybatis.core.pojo.ImportResult;
+import pers.lyc.mybatis.core.sql.mysql.MySqlInsert;
+
+/**
+ * MySqlImport测试
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月26日
+ */
+public class MySqlImportTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void splitPlainLine() {
+		assertEquals(Arrays.asList("1", "a", "b"), MySqlImport.splitLine("1,a,b"));
+	}
+	
+	@Test
+	public void splitEmptyFieldsAsNull() {
+		assertEquals(Arrays.asList(null, "a", null), MySqlImport.splitLine(",a,"));
+		assertEquals(Collections.singletonList(null), MySqlImport.splitLine(""));
+	}
+	
+	@Test
+	public void splitQuotedFields() {
+		// 引号内的逗号不拆分，两个引号表示一个引号
+		assertEquals(Arrays.asList("a,b", "say \"hi\"", "c"), MySqlImport.splitLine("\"a,b\",\"say \"\"hi\"\"\",c"));
+		assertEquals(Arrays.asList("x", "\""), MySqlImport.splitLine("x,\"\"\"\""));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void splitUnclosedQuote() {
+		MySqlImport.splitLine("a,\"b");
+	}
+	
+	@Test
+	public void importAcrossBlocks() throws Exception {
+		// 超过一个数据块（1M）的文件，含BOM表头、CRLF、引号字段、空行及错误数据
+		int rowCount = 80000;
+		StringBuilder csv = new StringBuilder("\uFEFFseq,name,age\r\n");
+		for ( int i=1; i<=rowCount; i++ ) {
+			csv.append(i).append(",\"名称,").append(i%100).append("\",").append(i%7==0 ? "" : String.valueOf(i%50)).append("\r\n");
+		}
+		csv.append("\n");
+		csv.append("x,坏序号,1\n");
+		csv.append("80001,名称超过二十个字符的名称超过二十个字符的名称,2\n");
+		csv.append("80002,字段数量不对\n");
+		csv.append("80003,\"a\"\"b\",3");
+		Path file = folder.newFile("import.csv").toPath();
+		Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+		
+		// 新增到内存，序号为5000的批次新增失败
+		Map<Long, DemoLog> insertedMap = Collections.synchronizedMap(new TreeMap<>());
+		List<Integer> failedSizeList = new ArrayList<>();
+		MySqlService<DemoLog> service = new MySqlService<DemoLog>() {
+			@Override
+			public int insert(MySqlInsert<DemoLog> sql) {
+				List<DemoLog> dataList = sql.getDataList();
+				for ( DemoLog data : dataList ) {
+					if ( data.getSeq()==5000L ) {
+						failedSizeList.add(dataList.size());
+						throw new IllegalStateException("新增失败");
+					}
+				}
+				for ( DemoLog data : dataList ) {
+					assertNull(insertedMap.put(data.getSeq(), data));
+				}
+				return dataList.size();
+			}
+		};
+		ImportResult result = new MySqlImport<DemoLog>(service, new MySqlInsert<DemoLog>(DemoLog.class), null, 4, 1000, 4).execute(file, true);
+		
+		assertEquals(Files.size(file) - "\uFEFFseq,name,age\r\n".getBytes(StandardCharsets.UTF_8).length, result.getReadBytes());
+		assertEquals(rowCount + 5, result.getReadLines());
+		assertEquals(rowCount + 1, result.getParsedRows());
+		assertEquals(3, result.getParseErrors());
+		assertEquals(1, failedSizeList.size());
+		assertEquals((long) failedSizeList.get(0), result.getInsertErrors());
+		assertEquals(rowCount + 1 - failedSizeList.get(0), result.getInsertedRows());
+		assertEquals(result.getInsertedRows(), insertedMap.size());
+		// 每行只解析一次，内容完整
+		DemoLog first = insertedMap.get(1L);
+		assertEquals("名称,1", first.getName());
+		assertEquals(Integer.valueOf(1), first.getAge());
+		assertNull(insertedMap.get(7L).getAge());
+		assertEquals("a\"b", insertedMap.get(80003L).getName());
+		// 失败信息中的行号从文件第一行开始计算
+		String errors = String.join("\n", result.getErrors());
+		assertTrue(errors, errors.contains("第" + (rowCount + 3) + "行"));
+		assertTrue(errors, errors.contains("第" + (rowCount + 4) + "行"));
+		assertTrue(errors, errors.contains("第" + (rowCount + 5) + "行"));
+	}
+	
+}
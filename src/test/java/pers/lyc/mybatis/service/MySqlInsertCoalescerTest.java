@@ -0,0 +1,160 @@
+package pers.lyc.mybatis.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import pers.lyc.mybatis.DemoLog;
+import pers.lyc.mybatis.core.sql.mysql.MySqlInsert;
+
+/**
+ * MySqlInsertCoalescer测试，使用记录新增批次的service
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月26日
+ */
+public class MySqlInsertCoalescerTest {
+	
+	@Test
+	public void mergeConcurrentSubmits() throws Exception {
+		RecordingService service = new RecordingService();
+		List<CompletableFuture<DemoLog>> futureList = new ArrayList<>();
+		// 等待时间足够长，10条数据合并成最多4条一批
+		try ( MySqlInsertCoalescer<DemoLog> coalescer = new MySqlInsertCoalescer<>(service, DemoLog.class, 200000, 4, 100) ) {
+			for ( int i=0; i<10; i++ ) {
+				futureList.add(coalescer.submit(newData("数据" + i)));
+			}
+			for ( int i=0; i<10; i++ ) {
+				assertEquals("数据" + i, futureList.get(i).get(10, TimeUnit.SECONDS).getName());
+			}
+		}
+		
+		assertEquals(10, service.batchSizeList.stream().mapToInt(Integer::intValue).sum());
+		assertTrue(service.batchSizeList.stream().allMatch(size -> size<=4));
+		assertTrue(service.batchSizeList.size()<10);
+	}
+	
+	@Test
+	public void failedBatchRetriesEachRow() throws Exception {
+		RecordingService service = new RecordingService();
+		service.blocked = new CountDownLatch(1);
+		try ( MySqlInsertCoalescer<DemoLog> coalescer = new MySqlInsertCoalescer<>(service, DemoLog.class, 0, 10, 100) ) {
+			// 第一条数据新增期间提交的数据合并成一批，其中一条失败
+			CompletableFuture<DemoLog> first = coalescer.submit(newData("第一条"));
+			service.entered.await(10, TimeUnit.SECONDS);
+			CompletableFuture<DemoLog> good = coalescer.submit(newData("正常"));
+			CompletableFuture<DemoLog> bad = coalescer.submit(newData("失败"));
+			service.blocked.countDown();
+			
+			first.get(10, TimeUnit.SECONDS);
+			good.get(10, TimeUnit.SECONDS);
+			try {
+				bad.get(10, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof DataIntegrityViolationException);
+			}
+		}
+		
+		// 合并新增失败后逐条新增
+		assertEquals(Integer.valueOf(2), service.batchSizeList.get(1));
+		assertEquals(Integer.valueOf(1), service.batchSizeList.get(2));
+		assertEquals(Integer.valueOf(1), service.batchSizeList.get(3));
+	}
+	
+	@Test
+	public void rejectWhenQueueFull() throws Exception {
+		RecordingService service = new RecordingService();
+		service.blocked = new CountDownLatch(1);
+		try ( MySqlInsertCoalescer<DemoLog> coalescer = new MySqlInsertCoalescer<>(service, DemoLog.class, 0, 10, 2) ) {
+			// 新增线程阻塞在第一条数据上，队列只能再容纳两条
+			CompletableFuture<DemoLog> first = coalescer.submit(newData("第一条"));
+			service.entered.await(10, TimeUnit.SECONDS);
+			coalescer.submit(newData("第二条"));
+			CompletableFuture<DemoLog> third = coalescer.submit(newData("第三条"));
+			try {
+				coalescer.submit(newData("第四条"));
+				fail();
+			} catch (RejectedExecutionException e) {
+				// 队列已满
+			}
+			service.blocked.countDown();
+			
+			first.get(10, TimeUnit.SECONDS);
+			third.get(10, TimeUnit.SECONDS);
+			// 队列有空间后可以继续提交
+			coalescer.submit(newData("第五条")).get(10, TimeUnit.SECONDS);
+		}
+	}
+	
+	@Test
+	public void rejectAfterClose() throws Exception {
+		RecordingService service = new RecordingService();
+		MySqlInsertCoalescer<DemoLog> coalescer = new MySqlInsertCoalescer<>(service, DemoLog.class, 0, 10, 10);
+		DemoLog data = newData("关闭前");
+		CompletableFuture<DemoLog> future = coalescer.submit(data);
+		coalescer.close();
+		
+		// 关闭前提交的数据新增完成
+		assertSame(data, future.get(0, TimeUnit.SECONDS));
+		try {
+			coalescer.submit(newData("关闭后"));
+			fail();
+		} catch (IllegalStateException e) {
+			// 已关闭
+		}
+	}
+	
+	private static DemoLog newData(String name) {
+		DemoLog data = new DemoLog();
+		data.setName(name);
+		return data;
+	}
+	
+	/**
+	 * 记录每次新增数据数量的service，名称为"失败"的数据违反约束；设置blocked时第一次新增等待放行
+	 */
+	private static class RecordingService extends MySqlService<DemoLog> {
+		
+		/** 每次新增的数据数量 */
+		private final List<Integer> batchSizeList = Collections.synchronizedList(new ArrayList<>());
+		/** 第一次新增已开始 */
+		private final CountDownLatch entered = new CountDownLatch(1);
+		/** 第一次新增等待放行 */
+		private volatile CountDownLatch blocked;
+		
+		@Override
+		public int insert(MySqlInsert<DemoLog> sql) {
+			List<DemoLog> dataList = sql.getDataList();
+			batchSizeList.add(dataList.size());
+			if ( entered.getCount()>0 ) {
+				entered.countDown();
+				try {
+					if ( blocked!=null )
+						blocked.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			for ( DemoLog data : dataList ) {
+				if ( "失败".equals(data.getName()) )
+					throw new DataIntegrityViolationException("违反约束");
+			}
+			return dataList.size();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,51 @@
+package pers.lyc.mybatis.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * MySqlService中不访问数据库的方法测试
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月26日
+ */
+public class MySqlServiceTest {
+	
+	@Test
+	public void splitKeyRange() {
+		assertEquals(Arrays.asList(25L, 50L, 75L), MySqlService.splitKeyRange(1, 100, 4));
+		// 主键数量少于范围数量
+		assertEquals(Arrays.asList(0L, 1L), MySqlService.splitKeyRange(0, 2, 10));
+		assertEquals(Collections.emptyList(), MySqlService.splitKeyRange(5, 5, 4));
+		assertEquals(Collections.emptyList(), MySqlService.splitKeyRange(1, 100, 1));
+	}
+	
+	@Test
+	public void splitWideKeyRange() {
+		// 跨度超过long范围
+		assertEquals(Arrays.asList(-(1L<<62) - 1, -1L, (1L<<62) - 1), MySqlService.splitKeyRange(Long.MIN_VALUE, Long.MAX_VALUE, 4));
+		assertAscending(MySqlService.splitKeyRange(-10, Long.MAX_VALUE, 7), -10, Long.MAX_VALUE, 6);
+		assertAscending(MySqlService.splitKeyRange(Long.MIN_VALUE, 10, 3), Long.MIN_VALUE, 10, 2);
+		assertAscending(MySqlService.splitKeyRange(Long.MAX_VALUE - 5, Long.MAX_VALUE, 3), Long.MAX_VALUE - 5, Long.MAX_VALUE, 2);
+	}
+	
+	/**
+	 * 上限数量正确，从小到大排列且都在[minKey, maxKey)之间
+	 */
+	private static void assertAscending(List<Long> boundaryList, long minKey, long maxKey, int size) {
+		assertEquals(size, boundaryList.size());
+		long previous = minKey;
+		for ( int i=0; i<boundaryList.size(); i++ ) {
+			long boundary = boundaryList.get(i);
+			assertTrue(i==0 ? boundary>=minKey : boundary>previous);
+			assertTrue(boundary<maxKey);
+			previous = boundary;
+		}
+	}
+	
+}
@@ -0,0 +1,167 @@
+package pers.lyc.mybatis.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import pers.lyc.mybatis.DemoAccount;
+import pers.lyc.mybatis.core.sql.mysql.MySqlBatchUpdate;
+import pers.lyc.mybatis.core.sql.mysql.MySqlDelete;
+import pers.lyc.mybatis.core.sql.mysql.MySqlInsert;
+
+/**
+ * MySqlUnitOfWork测试，使用记录执行语句的service，手动开启事务同步模拟事务
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月26日
+ */
+public class MySqlUnitOfWorkTest {
+	
+	private final RecordingService service = new RecordingService();
+	
+	@After
+	public void tearDown() {
+		if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+			for ( TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations() ) {
+				synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+			}
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		TransactionSynchronizationManager.setActualTransactionActive(false);
+	}
+	
+	@Test
+	public void withoutTransaction() {
+		service.deferInsert(DemoAccount.class, newAccount(1L));
+		service.deferDelete(DemoAccount.class, newAccount(2L));
+		
+		assertEquals(Arrays.asList("insert [1]", "delete [2]"), service.log);
+	}
+	
+	@Test
+	public void mergeBeforeCommit() {
+		begin();
+		service.deferInsert(DemoAccount.class, newAccount(1L));
+		service.deferInsert(DemoAccount.class, newAccount(2L));
+		DemoAccount first = newAccount(3L);
+		first.setName("名称");
+		service.deferUpdate(DemoAccount.class, first, "name");
+		DemoAccount second = newAccount(3L);
+		second.setBalance(5L);
+		service.deferUpdate(DemoAccount.class, second, "balance");
+		DemoAccount other = newAccount(4L);
+		other.setName("其他");
+		service.deferUpdate(DemoAccount.class, other, "name");
+		assertTrue(service.log.isEmpty());
+		
+		commit();
+		// 新增合并成一条语句，同一主键的更新合并，按更新字段分组
+		assertEquals(Arrays.asList("insert [1, 2]", "update [balance, name] [3]", "update [name] [4]"), service.log);
+		// 更新成功后原数据对象版本号加1
+		assertEquals(Integer.valueOf(2), first.getVersion());
+		assertEquals(Integer.valueOf(2), second.getVersion());
+		assertEquals(Integer.valueOf(2), other.getVersion());
+	}
+	
+	@Test
+	public void deleteCancelsUpdate() {
+		begin();
+		service.deferUpdate(DemoAccount.class, newAccount(1L), "name");
+		service.deferDelete(DemoAccount.class, newAccount(1L));
+		service.deferDelete(DemoAccount.class, newAccount(2L));
+		
+		commit();
+		assertEquals(Arrays.asList("delete [1, 2]"), service.log);
+	}
+	
+	@Test
+	public void insertAfterDeleteOfSameKey() {
+		begin();
+		service.deferDelete(DemoAccount.class, newAccount(1L));
+		// 先执行已登记的删除，再登记新增
+		service.deferInsert(DemoAccount.class, newAccount(1L));
+		assertEquals(Arrays.asList("delete [1]"), service.log);
+		
+		commit();
+		assertEquals(Arrays.asList("delete [1]", "insert [1]"), service.log);
+	}
+	
+	@Test
+	public void flushDeferred() {
+		begin();
+		service.deferInsert(DemoAccount.class, newAccount(1L));
+		service.flushDeferred();
+		assertEquals(Arrays.asList("insert [1]"), service.log);
+		
+		// 执行后登记的操作在提交前执行
+		service.deferInsert(DemoAccount.class, newAccount(2L));
+		commit();
+		assertEquals(Arrays.asList("insert [1]", "insert [2]"), service.log);
+	}
+	
+	private static void begin() {
+		TransactionSynchronizationManager.initSynchronization();
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+	}
+	
+	private static void commit() {
+		for ( TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations() ) {
+			synchronization.beforeCommit(false);
+		}
+	}
+	
+	private static DemoAccount newAccount(Long id) {
+		DemoAccount data = new DemoAccount(id);
+		data.setVersion(1);
+		return data;
+	}
+	
+	/**
+	 * 只记录执行语句的service
+	 */
+	private static class RecordingService extends MySqlService<DemoAccount> {
+		
+		/** 执行的语句：操作、（更新的属性）、主键 */
+		private final List<String> log = new ArrayList<>();
+		
+		@Override
+		public int insert(MySqlInsert<DemoAccount> sql) {
+			log.add("insert " + ids(sql.getDataList()));
+			return sql.getDataList().size();
+		}
+		
+		@Override
+		public int updateBatch(MySqlBatchUpdate<DemoAccount> sql) {
+			log.add("update " + new TreeSet<>(Arrays.asList(sql.getFields())) + " " + ids(sql.getDataList()));
+			return sql.getDataList().size();
+		}
+		
+		@Override
+		public int delete(MySqlDelete<DemoAccount> sql) {
+			List<Object> primaryKeyList = new ArrayList<>();
+			for ( Object value : sql.getParamMap().values() ) {
+				if ( value instanceof List )
+					primaryKeyList.addAll((List<?>) value);
+				else
+					primaryKeyList.add(value);
+			}
+			log.add("delete " + primaryKeyList);
+			return primaryKeyList.size();
+		}
+		
+		private static List<Long> ids(List<DemoAccount> dataList) {
+			return dataList.stream().map(DemoAccount::getId).collect(Collectors.toList());
+		}
+		
+	}
+	
+}
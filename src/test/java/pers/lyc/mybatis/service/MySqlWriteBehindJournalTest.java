@@ -0,0 +1,160 @@
+package pers.lyc.mybatis.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pers.lyc.mybatis.DemoLog;
+
+/**
+ * MySqlWriteBehindJournal测试
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月26日
+ */
+public class MySqlWriteBehindJournalTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void appendAndReplay() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("journal");
+		DemoLog data = newData(1);
+		data.setId(99L);
+		data.setAge(18);
+		data.setAmount(new BigDecimal("-12.3400"));
+		data.setEnabled(true);
+		data.setCreateTime(new Date(1595721600123L));
+		try ( MySqlWriteBehindJournal<DemoLog> journal = new MySqlWriteBehindJournal<>(DemoLog.class, path, 4096) ) {
+			journal.append(data);
+			journal.append(newData(2));
+		}
+		
+		// 重新打开后重放全部未提交数据，自增主键不记录
+		List<DemoLog> replayed = replay(path, 4096);
+		assertEquals(2, replayed.size());
+		DemoLog first = replayed.get(0);
+		assertNull(first.getId());
+		assertEquals(Long.valueOf(1), first.getSeq());
+		assertEquals("名称1", first.getName());
+		assertEquals(Integer.valueOf(18), first.getAge());
+		assertEquals(new BigDecimal("-12.3400"), first.getAmount());
+		assertEquals(Boolean.TRUE, first.getEnabled());
+		assertEquals(new Date(1595721600123L), first.getCreateTime());
+		DemoLog second = replayed.get(1);
+		assertEquals(Long.valueOf(2), second.getSeq());
+		assertNull(second.getAge());
+		assertNull(second.getAmount());
+	}
+	
+	@Test
+	public void commitSkipsReplay() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("journal");
+		try ( MySqlWriteBehindJournal<DemoLog> journal = new MySqlWriteBehindJournal<>(DemoLog.class, path, 4096) ) {
+			long offset1 = journal.append(newData(1));
+			long offset2 = journal.append(newData(2));
+			journal.append(newData(3));
+			assertTrue(offset1<offset2);
+			journal.commit(offset2);
+			// 提交到更早的位置不回退
+			journal.commit(offset1);
+		}
+		
+		List<DemoLog> replayed = replay(path, 4096);
+		assertEquals(1, replayed.size());
+		assertEquals(Long.valueOf(3), replayed.get(0).getSeq());
+	}
+	
+	@Test
+	public void commitAllRestartsFromHeader() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("journal");
+		try ( MySqlWriteBehindJournal<DemoLog> journal = new MySqlWriteBehindJournal<>(DemoLog.class, path, 4096) ) {
+			long offset = journal.append(newData(1));
+			journal.commit(offset);
+			// 全部提交后从头写入，逻辑位置继续增加
+			long next = journal.append(newData(2));
+			assertTrue(next>offset);
+			journal.commit(next);
+		}
+		
+		assertEquals(0, replay(path, 4096).size());
+	}
+	
+	@Test
+	public void compactKeepsUncommitted() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("journal");
+		// 日志文件只能容纳少量记录，写入过程中多次压缩
+		int size = 400;
+		List<Long> offsetList = new ArrayList<>();
+		try ( MySqlWriteBehindJournal<DemoLog> journal = new MySqlWriteBehindJournal<>(DemoLog.class, path, size) ) {
+			for ( int i=0; i<200; i++ ) {
+				long offset = journal.append(newData(i));
+				assertTrue(offsetList.isEmpty() || offset>offsetList.get(offsetList.size()-1));
+				offsetList.add(offset);
+				// 保留最近两条未提交
+				if ( i>=2 )
+					journal.commit(offsetList.get(i-2));
+			}
+		}
+		
+		List<DemoLog> replayed = replay(path, size);
+		assertEquals(2, replayed.size());
+		assertEquals(Long.valueOf(198), replayed.get(0).getSeq());
+		assertEquals(Long.valueOf(199), replayed.get(1).getSeq());
+	}
+	
+	@Test
+	public void replayOffsetsCommitInNewSession() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("journal");
+		try ( MySqlWriteBehindJournal<DemoLog> journal = new MySqlWriteBehindJournal<>(DemoLog.class, path, 4096) ) {
+			journal.append(newData(1));
+			journal.append(newData(2));
+		}
+		
+		// 重放返回的位置可以直接提交
+		try ( MySqlWriteBehindJournal<DemoLog> journal = new MySqlWriteBehindJournal<>(DemoLog.class, path, 4096) ) {
+			List<Long> offsetList = new ArrayList<>();
+			journal.replay((data, offset) -> offsetList.add(offset));
+			assertEquals(2, offsetList.size());
+			journal.commit(offsetList.get(0));
+		}
+		
+		List<DemoLog> replayed = replay(path, 4096);
+		assertEquals(1, replayed.size());
+		assertEquals(Long.valueOf(2), replayed.get(0).getSeq());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectOversizedRecord() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("journal");
+		try ( MySqlWriteBehindJournal<DemoLog> journal = new MySqlWriteBehindJournal<>(DemoLog.class, path, 32) ) {
+			journal.append(newData(1));
+		}
+	}
+	
+	private static DemoLog newData(long seq) {
+		DemoLog data = new DemoLog();
+		data.setSeq(seq);
+		data.setName("名称" + seq);
+		return data;
+	}
+	
+	private static List<DemoLog> replay(Path path, int size) throws Exception {
+		List<DemoLog> dataList = new ArrayList<>();
+		try ( MySqlWriteBehindJournal<DemoLog> journal = new MySqlWriteBehindJournal<>(DemoLog.class, path, size) ) {
+			journal.replay((data, offset) -> dataList.add(data));
+		}
+		return dataList;
+	}
+	
+}
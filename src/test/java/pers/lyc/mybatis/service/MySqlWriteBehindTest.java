@@ -0,0 +1,200 @@
+package pers.lyc.mybatis.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import pers.lyc.mybatis.DemoLog;
+import pers.lyc.mybatis.core.sql.mysql.MySqlInsert;
+
+/**
+ * MySqlWriteBehind测试，使用可以模拟数据库不可用的service
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月26日
+ */
+public class MySqlWriteBehindTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void writeAndClose() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("journal");
+		RecordingService service = new RecordingService();
+		List<String> errorList = Collections.synchronizedList(new ArrayList<>());
+		try ( MySqlWriteBehind<DemoLog> writeBehind = new MySqlWriteBehind<>(service, DemoLog.class, path, 4096, 4, 3, (data, e) -> errorList.add(data.getName())) ) {
+			for ( int i=0; i<10; i++ ) {
+				writeBehind.write(newData(i==5 ? "失败" : "名称" + i));
+			}
+		}
+		
+		// 关闭时新增完成，非暂时性失败的数据交给失败处理，日志文件全部提交
+		assertEquals(9, service.nameList.size());
+		assertEquals(Collections.singletonList("失败"), errorList);
+		assertEquals(0, replay(path).size());
+	}
+	
+	@Test(timeout = 30000)
+	public void closeWhileDatabaseFailingAndBufferFull() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("journal");
+		RecordingService service = new RecordingService();
+		service.failing = true;
+		MySqlWriteBehind<DemoLog> writeBehind = new MySqlWriteBehind<>(service, DemoLog.class, path, 4096, 2, 1, (data, e) -> {});
+		// 第一条数据被新增线程取出后一直重试，缓冲区再写入两条后已满
+		writeBehind.write(newData("名称1"));
+		while ( service.attempts.get()==0 ) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		writeBehind.write(newData("名称2"));
+		writeBehind.write(newData("名称3"));
+		assertEquals(2, writeBehind.getPendingCount());
+		// 缓冲区已满时写入等待
+		CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> {
+			try {
+				writeBehind.write(newData("名称4"));
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		try {
+			blocked.get(300, TimeUnit.MILLISECONDS);
+			throw new AssertionError("缓冲区已满时写入没有等待");
+		} catch (TimeoutException e) {
+			// 等待中
+		}
+		
+		// 数据库仍然不可用时关闭不会一直等待，等待中的写入失败返回
+		writeBehind.close();
+		try {
+			blocked.get(5, TimeUnit.SECONDS);
+			throw new AssertionError("关闭后等待中的写入没有失败");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertTrue(service.nameList.isEmpty());
+		// 已写入的数据保留在日志文件中，下次启动时重放
+		List<DemoLog> replayed = replay(path);
+		assertEquals(3, replayed.size());
+		assertEquals("名称1", replayed.get(0).getName());
+		assertEquals("名称3", replayed.get(2).getName());
+	}
+	
+	@Test(timeout = 30000)
+	public void offerTimesOutWhenJournalFull() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("journal");
+		// 日志文件只能容纳两条记录，缓冲区还有空间
+		int recordSize = recordSize(newData("名称1"));
+		RecordingService service = new RecordingService();
+		service.failing = true;
+		try ( MySqlWriteBehind<DemoLog> writeBehind = new MySqlWriteBehind<>(service, DemoLog.class, path, 8 + 2 * recordSize, 10, 1, (data, e) -> {}) ) {
+			assertTrue(writeBehind.offer(newData("名称1"), 1, TimeUnit.SECONDS));
+			assertTrue(writeBehind.offer(newData("名称2"), 1, TimeUnit.SECONDS));
+			// 日志文件空间不足时按时返回
+			long start = System.nanoTime();
+			assertFalse(writeBehind.offer(newData("名称3"), 200, TimeUnit.MILLISECONDS));
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			assertTrue("等待了" + elapsed + "毫秒", elapsed>=200 && elapsed<2000);
+			
+			// 数据库恢复后提交释放空间，可以继续写入
+			service.failing = false;
+			assertTrue(writeBehind.offer(newData("名称3"), 10, TimeUnit.SECONDS));
+		}
+		
+		assertEquals(3, service.nameList.size());
+		assertEquals(0, replay(path).size());
+	}
+	
+	@Test
+	public void replayOnStart() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("journal");
+		try ( MySqlWriteBehindJournal<DemoLog> journal = new MySqlWriteBehindJournal<>(DemoLog.class, path, 4096) ) {
+			journal.append(newData("名称1"));
+			journal.append(newData("名称2"));
+		}
+		
+		// 启动时重放尚未新增的数据
+		RecordingService service = new RecordingService();
+		try ( MySqlWriteBehind<DemoLog> writeBehind = new MySqlWriteBehind<>(service, DemoLog.class, path, 4096, 1, 10, (data, e) -> {}) ) {
+			writeBehind.write(newData("名称3"));
+		}
+		
+		assertEquals(3, service.nameList.size());
+		assertEquals("名称1", service.nameList.get(0));
+		assertEquals(0, replay(path).size());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void rejectAfterClose() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("journal");
+		MySqlWriteBehind<DemoLog> writeBehind = new MySqlWriteBehind<>(new RecordingService(), DemoLog.class, path, 4096, 1, 1, (data, e) -> {});
+		writeBehind.close();
+		writeBehind.write(newData("名称1"));
+	}
+	
+	private int recordSize(DemoLog data) throws Exception {
+		Path path = folder.getRoot().toPath().resolve("record");
+		try ( MySqlWriteBehindJournal<DemoLog> journal = new MySqlWriteBehindJournal<>(DemoLog.class, path, 4096) ) {
+			return (int) journal.append(data);
+		}
+	}
+	
+	private static DemoLog newData(String name) {
+		DemoLog data = new DemoLog();
+		data.setName(name);
+		return data;
+	}
+	
+	private static List<DemoLog> replay(Path path) throws Exception {
+		List<DemoLog> dataList = new ArrayList<>();
+		try ( MySqlWriteBehindJournal<DemoLog> journal = new MySqlWriteBehindJournal<>(DemoLog.class, path, 4096) ) {
+			journal.replay((data, offset) -> dataList.add(data));
+		}
+		return dataList;
+	}
+	
+	/**
+	 * 记录新增数据名称的service，failing时模拟数据库不可用，名称为"失败"的数据违反约束
+	 */
+	private static class RecordingService extends MySqlService<DemoLog> {
+		
+		/** 已新增的数据名称 */
+		private final List<String> nameList = Collections.synchronizedList(new ArrayList<>());
+		/** 新增次数 */
+		private final AtomicInteger attempts = new AtomicInteger();
+		/** 数据库是否不可用 */
+		private volatile boolean failing;
+		
+		@Override
+		public int insert(MySqlInsert<DemoLog> sql) {
+			attempts.incrementAndGet();
+			if ( failing )
+				throw new TransientDataAccessResourceException("数据库不可用");
+			for ( DemoLog data : sql.getDataList() ) {
+				if ( "失败".equals(data.getName()) )
+					throw new DataIntegrityViolationException("违反约束");
+			}
+			for ( DemoLog data : sql.getDataList() ) {
+				nameList.add(data.getName());
+			}
+			return sql.getDataList().size();
+		}
+		
+	}
+	
+}
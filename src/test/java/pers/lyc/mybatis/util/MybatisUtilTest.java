@@ -0,0 +1,52 @@
+package pers.lyc.mybatis.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import org.junit.Test;
+
+/**
+ * MybatisUtil测试
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月26日
+ */
+public class MybatisUtilTest {
+	
+	@Test
+	public void cursorRoundTrip() {
+		Date date = new Date(1595721600123L);
+		BigDecimal amount = new BigDecimal("12345678901234567890.000123");
+		Object[] values = { 42L, 7, "名称, \"引号\"/+=", date, amount };
+		Class<?>[] types = { Long.class, Integer.class, String.class, Date.class, BigDecimal.class };
+		
+		String cursor = MybatisUtil.encodeCursor(values);
+		// url安全，不含填充字符
+		assertFalse(cursor.contains("+") || cursor.contains("/") || cursor.contains("="));
+		assertArrayEquals(values, MybatisUtil.decodeCursor(cursor, types));
+	}
+	
+	@Test
+	public void cursorConvertsToFieldType() {
+		String cursor = MybatisUtil.encodeCursor(new Object[] { 1 });
+		
+		Object[] values = MybatisUtil.decodeCursor(cursor, new Class<?>[] { Long.class });
+		assertEquals(1L, values[0]);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void cursorTypeCountMismatch() {
+		String cursor = MybatisUtil.encodeCursor(new Object[] { 1L, "a" });
+		
+		MybatisUtil.decodeCursor(cursor, new Class<?>[] { Long.class });
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void cursorMalformed() {
+		MybatisUtil.decodeCursor("不是游标", new Class<?>[] { Long.class });
+	}
+	
+}
@@ -0,0 +1,73 @@
+package pers.lyc.mybatis.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * OpenHashSet测试
+ * @author 林运昌（linyunchang）
+ * @since 2020年7月26日
+ */
+public class OpenHashSetTest {
+	
+	@Test
+	public void addAndContains() {
+		OpenHashSet set = new OpenHashSet(2);
+		assertTrue(set.add("a"));
+		assertTrue(set.add(1L));
+		assertFalse(set.add("a"));
+		assertFalse(set.add(1L));
+		assertTrue(set.contains("a"));
+		assertTrue(set.contains(1L));
+		assertFalse(set.contains(1));
+		assertFalse(set.contains(null));
+		assertEquals(2, set.size());
+	}
+	
+	@Test
+	public void resizeKeepsElements() {
+		// 从最小容量开始扩容多次，结果与HashSet一致
+		OpenHashSet set = new OpenHashSet(0);
+		Set<Object> expected = new HashSet<>();
+		Random random = new Random(1);
+		for ( int i=0; i<100000; i++ ) {
+			Long value = (long) random.nextInt(50000);
+			assertEquals(expected.add(value), set.add(value));
+		}
+		assertEquals(expected.size(), set.size());
+		for ( long i=-10; i<50010; i++ ) {
+			assertEquals(expected.contains(i), set.contains(i));
+		}
+	}
+	
+	@Test
+	public void consecutiveIntegers() {
+		// 连续整数不聚集到同一段
+		OpenHashSet set = new OpenHashSet(1000);
+		for ( int i=0; i<1000; i++ ) {
+			assertTrue(set.add(i));
+		}
+		for ( int i=0; i<1000; i++ ) {
+			assertTrue(set.contains(i));
+		}
+		assertFalse(set.contains(1000));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectNull() {
+		new OpenHashSet(1).add(null);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectNegativeSize() {
+		new OpenHashSet(-1);
+	}
+	
+}